@@ -0,0 +1,33 @@
+package com.rolin.orangesmart.controller.bench;
+
+import org.example.agent.benchmark.BenchApi;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 合成的被测 Controller
+ * 包名和注解与 AgentMain* 中的匹配规则一致，因此会被各个探针按各自的方式增强
+ */
+@RestController
+public class BenchController implements BenchApi {
+
+    private final Map<String, Object> data = new HashMap<>();
+
+    public BenchController() {
+        for (int i = 0; i < 16; i++) {
+            data.put("key-" + i, "value-" + i);
+        }
+    }
+
+    @Override
+    public long compute(long value) {
+        return value * 31 + 7;
+    }
+
+    @Override
+    public Object lookup(String key) {
+        return data.get(key);
+    }
+}
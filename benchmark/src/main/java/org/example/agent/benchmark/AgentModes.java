@@ -0,0 +1,81 @@
+package org.example.agent.benchmark;
+
+import net.bytebuddy.agent.ByteBuddyAgent;
+import org.example.agent.AgentMain;
+import org.example.agent.AgentMain2;
+import org.example.agent.AgentMain3;
+import org.example.agent.AgentMain4;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.instrument.Instrumentation;
+
+/**
+ * 按名称安装各个 AgentMain 的探针配置，然后加载被测 Controller
+ * 直接调用各 AgentMain 的 premain，保证与 -javaagent 启动时的 AgentBuilder 配置完全一致
+ */
+public final class AgentModes {
+
+    public static final String BASELINE = "baseline";
+
+    static final String CONTROLLER_CLASS = "com.rolin.orangesmart.controller.bench.BenchController";
+
+    private AgentModes() {
+    }
+
+    /**
+     * 安装探针并创建被测 Controller，每个 JVM 只能调用一次
+     * @param mode baseline / AgentMain / AgentMain2 / AgentMain3-log / AgentMain3-timing / AgentMain3-count / AgentMain4
+     * @param agentArgs 额外的探针参数，可以为空字符串
+     */
+    public static BenchApi install(String mode, String agentArgs) throws Exception {
+        // 基准测试只关心探针的 CPU 和内存开销，丢弃拦截器的控制台输出，避免测到终端 I/O
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        if (!BASELINE.equals(mode)) {
+            premain(mode, join("heartbeatInterval=3600", agentArgs), ByteBuddyAgent.install());
+        }
+
+        Class<?> type = Class.forName(CONTROLLER_CLASS);
+        return (BenchApi) type.getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * 按名称调用对应 AgentMain 的 premain
+     * @param mode AgentMain / AgentMain2 / AgentMain3-log / AgentMain3-timing / AgentMain3-count / AgentMain4
+     * @param args 探针参数
+     * @param inst Instrumentation
+     */
+    static void premain(String mode, String args, Instrumentation inst) {
+        switch (mode) {
+            case "AgentMain":
+                AgentMain.premain(args, inst);
+                break;
+            case "AgentMain2":
+                AgentMain2.premain(args, inst);
+                break;
+            case "AgentMain3-log":
+                AgentMain3.premain(join(args, "adviceMode=log"), inst);
+                break;
+            case "AgentMain3-timing":
+                // 关闭自适应降级，避免测量过程中被测方法被降级为仅计数
+                AgentMain3.premain(join(args, "adviceMode=timing&metricsReportInterval=3600&adaptive=false"), inst);
+                break;
+            case "AgentMain3-count":
+                AgentMain3.premain(join(args, "adviceMode=count&metricsReportInterval=3600"), inst);
+                break;
+            case "AgentMain4":
+                AgentMain4.premain(args, inst);
+                break;
+            default:
+                throw new IllegalArgumentException("未知的探针模式: " + mode);
+        }
+    }
+
+    static String join(String left, String right) {
+        if (right == null || right.isEmpty()) {
+            return left;
+        }
+        return left + "&" + right;
+    }
+}
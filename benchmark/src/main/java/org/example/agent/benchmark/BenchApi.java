@@ -0,0 +1,18 @@
+package org.example.agent.benchmark;
+
+/**
+ * 被测 Controller 的接口
+ * 基准测试只通过接口调用，避免在探针安装前提前加载被测类
+ */
+public interface BenchApi {
+
+    /**
+     * 方法体极轻的调用，用于观察拦截本身的开销
+     */
+    long compute(long value);
+
+    /**
+     * 带对象参数和返回值的调用，更接近真实 Controller
+     */
+    Object lookup(String key);
+}
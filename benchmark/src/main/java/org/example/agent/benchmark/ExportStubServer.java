@@ -0,0 +1,107 @@
+package org.example.agent.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 心跳上报的本地替身服务
+ * 接收 HeartbeatExporter 的 POST 请求，解压 gzip 后输出每个请求包含的报告数和方法数，
+ * 可以模拟服务不可用的时间段，用于观察重试退避和内存队列
+ *
+ * 运行方式（在 benchmark 目录下）:
+ * <pre>
+ * java -cp target/benchmarks.jar org.example.agent.benchmark.ExportStubServer --port 18080 --downFrom 20 --downFor 30
+ * java -javaagent:...=heartbeatInterval=5&heartbeatUrl=http://127.0.0.1:18080/heartbeat -jar app.jar
+ * </pre>
+ *
+ * 可选参数: --port 监听端口，--downFrom 启动多少秒后开始返回 503，--downFor 返回 503 的持续时间（秒），--verbose 输出请求体
+ */
+public final class ExportStubServer {
+
+    private ExportStubServer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+        int port = Integer.parseInt(options.getOrDefault("port", "18080"));
+        long downFrom = Long.parseLong(options.getOrDefault("downFrom", "-1")) * 1000;
+        long downFor = Long.parseLong(options.getOrDefault("downFor", "0")) * 1000;
+        boolean verbose = Boolean.parseBoolean(options.getOrDefault("verbose", "false"));
+        long started = System.currentTimeMillis();
+        AtomicLong requests = new AtomicLong();
+        AtomicLong reports = new AtomicLong();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/", exchange -> {
+            try {
+                long elapsed = System.currentTimeMillis() - started;
+                byte[] raw = exchange.getRequestBody().readAllBytes();
+                if (downFrom >= 0 && elapsed >= downFrom && elapsed < downFrom + downFor) {
+                    System.out.printf("[Stub] %6.1fs 拒绝请求（模拟不可用），%d 字节%n", elapsed / 1000.0, raw.length);
+                    respond(exchange, 503);
+                    return;
+                }
+                String body = decode(exchange, raw);
+                int reportCount = count(body, "\"timestamp\":");
+                int methodCount = count(body, "\"method\":");
+                requests.incrementAndGet();
+                reports.addAndGet(reportCount);
+                System.out.printf("[Stub] %6.1fs %s %s | 压缩后 %d 字节，原始 %d 字节 | 报告 %d 份，方法记录 %d 条 | 累计 %d 个请求 %d 份报告%n",
+                        elapsed / 1000.0, exchange.getProtocol(), exchange.getRequestHeaders().getFirst("Content-Encoding"),
+                        raw.length, body.length(), reportCount, methodCount, requests.get(), reports.get());
+                if (verbose) {
+                    System.out.println(body);
+                }
+                respond(exchange, 204);
+            } catch (Exception e) {
+                System.err.println("[Stub] 处理请求失败: " + e);
+                respond(exchange, 400);
+            }
+        });
+        server.start();
+        System.out.println("[Stub] 监听 http://127.0.0.1:" + port + "/");
+    }
+
+    private static String decode(HttpExchange exchange, byte[] raw) throws IOException {
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(raw))) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+        exchange.close();
+    }
+
+    private static int count(String text, String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + token.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("无法识别的参数: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+}
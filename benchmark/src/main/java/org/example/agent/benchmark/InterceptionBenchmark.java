@@ -0,0 +1,79 @@
+package org.example.agent.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各 AgentMain 拦截方式的单次调用开销
+ * 每个 mode 在独立的 JVM 中运行，与未安装探针的 baseline 对比。
+ *
+ * 运行方式（在 benchmark 目录下）:
+ * <pre>
+ * mvn -f ../pom.xml install && mvn package
+ * java -jar target/benchmarks.jar InterceptionBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-XX:+EnableDynamicAgentLoading", "-Djdk.attach.allowAttachSelf=true"})
+@State(Scope.Benchmark)
+public class InterceptionBenchmark {
+
+    @Param({"baseline", "AgentMain", "AgentMain2", "AgentMain3-log", "AgentMain3-timing", "AgentMain3-count", "AgentMain4"})
+    public String mode;
+
+    /**
+     * 额外的探针参数，例如 -p agentArgs=sampleRate=100
+     */
+    @Param({""})
+    public String agentArgs;
+
+    private BenchApi controller;
+
+    @State(Scope.Thread)
+    public static class Input {
+        long value = 42;
+        String key = "key-7";
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        controller = AgentModes.install(mode, agentArgs);
+    }
+
+    @Benchmark
+    public long compute(Input input) {
+        return controller.compute(input.value);
+    }
+
+    @Benchmark
+    public Object lookup(Input input) {
+        return controller.lookup(input.key);
+    }
+
+    /**
+     * 多线程吞吐量，观察拦截器中的共享状态（锁、计数器、System.out）是否造成竞争
+     */
+    @Benchmark
+    @Threads(8)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object lookupContended(Input input) {
+        return controller.lookup(input.key);
+    }
+}
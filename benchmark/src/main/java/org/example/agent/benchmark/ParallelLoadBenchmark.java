@@ -0,0 +1,141 @@
+package org.example.agent.benchmark;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 并行类加载基准测试
+ * 多个类加载器由多个线程同时加载 Controller 类（全部会被探针增强），分别在不安装探针和安装探针时按不同线程数启动子进程，
+ * 对比类加载吞吐量随线程数的扩展情况。探针内部如果存在全局锁，安装探针后的加速比会明显低于不安装时。
+ * 目标是线程数最多时，安装探针的加速比不低于不安装探针时的 80%。
+ * 子进程同时校验方法注册表在并行转换后保持一致（见 {@link ParallelLoadBoot}）。
+ *
+ * 运行方式（在 benchmark 目录下）:
+ * <pre>
+ * mvn -f ../pom.xml install && mvn package
+ * java -cp target/benchmarks.jar org.example.agent.benchmark.ParallelLoadBenchmark --classes 4000 --loaders 8 --runs 3
+ * </pre>
+ *
+ * 可选参数: --classes 类数量，--loaders 类加载器数量，--threads 逗号分隔的线程数（默认 1、2、4... 直到 CPU 核数），
+ * --runs 每种配置的运行次数，--mode 使用哪个 AgentMain（同 InterceptionBenchmark），--agentArgs 额外的探针参数
+ */
+public final class ParallelLoadBenchmark {
+
+    private static final double TARGET_EFFICIENCY = 0.8;
+
+    private ParallelLoadBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = StartupBenchmark.parseOptions(args);
+        int classCount = Integer.parseInt(options.getOrDefault("classes", "4000"));
+        int loaders = Integer.parseInt(options.getOrDefault("loaders", "8"));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+        String mode = options.getOrDefault("mode", "AgentMain3-timing");
+        String extraArgs = options.getOrDefault("agentArgs", "");
+        int[] threadCounts = threadCounts(options.get("threads"));
+
+        Map<String, List<String>> configs = new LinkedHashMap<>();
+        configs.put("baseline", Arrays.asList());
+        configs.put(mode, Arrays.asList("-javaagent:" + StartupBenchmark.selfJar() + "="
+                + AgentModes.join("benchMode=" + mode, extraArgs)));
+
+        // 配置 -> 线程数下标 -> 每次运行的类加载耗时
+        Map<String, long[][]> load = new LinkedHashMap<>();
+        for (String name : configs.keySet()) {
+            load.put(name, new long[threadCounts.length][runs]);
+        }
+        for (List<String> jvmArgs : configs.values()) {
+            runChild(jvmArgs, classCount, loaders, threadCounts[0]);
+        }
+        for (int run = 0; run < runs; run++) {
+            for (int t = 0; t < threadCounts.length; t++) {
+                for (Map.Entry<String, List<String>> config : configs.entrySet()) {
+                    load.get(config.getKey())[t][run] = runChild(config.getValue(), classCount, loaders, threadCounts[t]);
+                }
+            }
+            System.out.println("[Parallel] 完成第 " + (run + 1) + "/" + runs + " 轮");
+        }
+
+        System.out.println();
+        System.out.println("[Parallel] 类数量: " + classCount + "，类加载器: " + loaders + "，CPU 核数: "
+                + Runtime.getRuntime().availableProcessors() + "，每种配置运行 " + runs + " 次，取中位数");
+        System.out.printf("%-20s %6s %12s %14s %8s %8s%n", "配置", "线程", "类加载耗时", "吞吐量(类/秒)", "加速比", "效率");
+        Map<String, Double> speedups = new LinkedHashMap<>();
+        for (String name : configs.keySet()) {
+            double single = StartupBenchmark.median(load.get(name)[0]);
+            for (int t = 0; t < threadCounts.length; t++) {
+                double nanos = StartupBenchmark.median(load.get(name)[t]);
+                double speedup = single / nanos;
+                System.out.printf("%-20s %6d %10.1fms %14.0f %7.2fx %7.0f%%%n", name, threadCounts[t], nanos / 1e6,
+                        classCount / (nanos / 1e9), speedup, speedup * 100 / threadCounts[t] * threadCounts[0]);
+                speedups.put(name, speedup);
+            }
+        }
+
+        int maxThreads = threadCounts[threadCounts.length - 1];
+        if (maxThreads == threadCounts[0]) {
+            System.out.println("[Parallel] 只测试了 " + maxThreads + " 个线程，无法评估扩展性（CPU 核数为 1 时请用 --threads 指定多个线程数，结果仅反映锁竞争）");
+            return;
+        }
+        double ratio = speedups.get(mode) / speedups.get("baseline");
+        System.out.printf("[Parallel] %d 线程时探针加速比为不安装探针时的 %.0f%%，目标 >= %.0f%%: %s%n",
+                maxThreads, ratio * 100, TARGET_EFFICIENCY * 100, ratio >= TARGET_EFFICIENCY ? "达标" : "未达标");
+    }
+
+    /**
+     * 启动子进程并行加载全部类
+     * @return 类加载阶段耗时，单位纳秒
+     */
+    private static long runChild(List<String> jvmArgs, int classCount, int loaders, int threads) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(StartupBenchmark.selfJar());
+        command.add(ParallelLoadBoot.class.getName());
+        command.add(String.valueOf(classCount));
+        command.add(String.valueOf(loaders));
+        command.add(String.valueOf(threads));
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String result = null;
+        List<String> output = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(ParallelLoadBoot.RESULT_PREFIX)) {
+                    result = line.substring(ParallelLoadBoot.RESULT_PREFIX.length());
+                } else if (output.size() < 50) {
+                    output.add(line);
+                }
+            }
+        }
+        int exitCode = process.waitFor();
+        if (exitCode != 0 || result == null) {
+            output.forEach(System.err::println);
+            throw new IllegalStateException("子进程运行失败，退出码: " + exitCode + "，命令: " + command);
+        }
+        return Long.parseLong(result.split(" ")[1]);
+    }
+
+    private static int[] threadCounts(String option) {
+        if (option != null) {
+            return Arrays.stream(option.split(",")).map(String::trim).mapToInt(Integer::parseInt).sorted().toArray();
+        }
+        List<Integer> counts = new ArrayList<>();
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int t = 1; t < processors; t *= 2) {
+            counts.add(t);
+        }
+        counts.add(processors);
+        return counts.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,179 @@
+package org.example.agent.benchmark;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.annotation.AnnotationDescription;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.implementation.FixedValue;
+import org.example.agent.registry.MethodMetadata;
+import org.example.agent.registry.MethodRegistry;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 并行类加载基准测试的子进程入口
+ * 在内存中生成 Controller 类，分给多个支持并行加载的类加载器，由 threads 个线程同时加载并初始化，
+ * 模拟多个类加载器并行启动的应用（例如一个进程中部署多个应用或插件）。
+ * 加载完成后校验方法注册表：每个被增强的方法恰好注册一次、ID 连续且都有元数据，最后输出类加载阶段耗时。
+ *
+ * 参数: 类数量 类加载器数量 线程数
+ */
+public final class ParallelLoadBoot {
+
+    static final String RESULT_PREFIX = "PARALLEL-RESULT ";
+
+    static final int METHODS_PER_CLASS = 5;
+
+    private ParallelLoadBoot() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int classCount = Integer.parseInt(args[0]);
+        int loaderCount = Integer.parseInt(args[1]);
+        int threads = Integer.parseInt(args[2]);
+
+        List<GeneratedLoader> loaders = new ArrayList<>(loaderCount);
+        for (int l = 0; l < loaderCount; l++) {
+            loaders.add(new GeneratedLoader(l, ParallelLoadBoot.class.getClassLoader()));
+        }
+        // 按类加载器轮流排列，相邻的任务落在不同的类加载器上
+        List<GeneratedLoader> owners = new ArrayList<>(classCount);
+        List<String> names = new ArrayList<>(classCount);
+        AnnotationDescription restController = AnnotationDescription.Builder.ofType(RestController.class).build();
+        for (int i = 0; i < classCount; i++) {
+            GeneratedLoader loader = loaders.get(i % loaderCount);
+            String name = "com.rolin.orangesmart.controller.par.l" + loader.index + ".ParController" + i;
+            DynamicType.Builder<?> builder = new ByteBuddy().subclass(Object.class).name(name).annotateType(restController);
+            for (int m = 0; m < METHODS_PER_CLASS; m++) {
+                builder = builder.defineMethod("method" + m, String.class, Visibility.PUBLIC)
+                        .withParameters(String.class)
+                        .intercept(FixedValue.value("m" + m));
+            }
+            loader.define(name, builder.make().getBytes());
+            owners.add(loader);
+            names.add(name);
+        }
+
+        int registeredBefore = MethodRegistry.size();
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                    int i;
+                    while ((i = next.getAndIncrement()) < classCount) {
+                        Class.forName(names.get(i), true, owners.get(i));
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, "parallel-load-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long loadNanos = System.nanoTime() - start;
+        if (failure.get() != null) {
+            throw new IllegalStateException("并行加载失败", failure.get());
+        }
+
+        verify(registeredBefore, classCount);
+        System.out.println(RESULT_PREFIX + classCount + " " + loadNanos);
+    }
+
+    /**
+     * 校验并行转换后的方法注册表，未安装探针（注册数没有变化）时跳过
+     */
+    private static void verify(int registeredBefore, int classCount) {
+        int registered = MethodRegistry.size() - registeredBefore;
+        if (registered == 0) {
+            return;
+        }
+        int expected = classCount * METHODS_PER_CLASS;
+        if (registered != expected) {
+            throw new IllegalStateException("方法注册数不一致，期望 " + expected + "，实际 " + registered);
+        }
+        Set<String> classes = new HashSet<>();
+        Set<String> methods = new HashSet<>();
+        for (int id = registeredBefore; id < MethodRegistry.size(); id++) {
+            MethodMetadata metadata = MethodRegistry.metadata(id);
+            if (metadata == null || metadata.id() != id) {
+                throw new IllegalStateException("方法 ID " + id + " 缺少元数据或 ID 不一致: " + metadata);
+            }
+            classes.add(metadata.className());
+            if (!methods.add(metadata.className() + "." + metadata.methodName())) {
+                throw new IllegalStateException("方法被重复注册: " + metadata.className() + "." + metadata.methodName());
+            }
+        }
+        if (classes.size() != classCount) {
+            throw new IllegalStateException("被增强的类数量不一致，期望 " + classCount + "，实际 " + classes.size());
+        }
+    }
+
+    /**
+     * 从内存中的字节码定义类的类加载器，注册为支持并行加载，不同的类可以同时定义
+     */
+    private static final class GeneratedLoader extends ClassLoader {
+
+        static {
+            registerAsParallelCapable();
+        }
+
+        private final int index;
+        private final Map<String, byte[]> classes = new HashMap<>();
+
+        GeneratedLoader(int index, ClassLoader parent) {
+            super("par-" + index, parent);
+            this.index = index;
+        }
+
+        // 只在启动加载线程之前调用
+        void define(String name, byte[] bytes) {
+            classes.put(name, bytes);
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+        /**
+         * 类型池按类加载器读取类文件，这里提供内存中的字节码
+         */
+        @Override
+        public InputStream getResourceAsStream(String name) {
+            if (name.endsWith(".class")) {
+                byte[] bytes = classes.get(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+                if (bytes != null) {
+                    return new ByteArrayInputStream(bytes);
+                }
+            }
+            return super.getResourceAsStream(name);
+        }
+    }
+}
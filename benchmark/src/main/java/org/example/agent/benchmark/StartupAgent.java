@@ -0,0 +1,20 @@
+package org.example.agent.benchmark;
+
+import org.example.agent.config.AgentArgs;
+
+import java.lang.instrument.Instrumentation;
+
+/**
+ * 启动基准测试使用的探针入口（benchmarks.jar 的 Premain-Class）
+ * 通过 benchMode 参数选择实际调用哪个 AgentMain，其余参数原样传给 AgentMain
+ */
+public final class StartupAgent {
+
+    private StartupAgent() {
+    }
+
+    public static void premain(String agentArgs, Instrumentation inst) {
+        String mode = AgentArgs.parse(agentArgs).get("benchMode", "AgentMain");
+        AgentModes.premain(mode, AgentModes.join("heartbeatInterval=3600", agentArgs), inst);
+    }
+}
@@ -0,0 +1,209 @@
+package org.example.agent.benchmark;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.annotation.AnnotationDescription;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.implementation.FixedValue;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * 探针启动耗时基准测试
+ * 生成大量合成类（大部分位于第三方库包下，少量业务类和 Controller），
+ * 分别在不安装探针、安装探针但关闭启动预过滤、安装探针（默认配置）三种情况下启动子进程加载全部类，
+ * 对比进程总耗时和类加载阶段耗时的中位数。目标是探针带来的启动开销低于 5%。
+ *
+ * 运行方式（在 benchmark 目录下）:
+ * <pre>
+ * mvn -f ../pom.xml install && mvn package
+ * java -cp target/benchmarks.jar org.example.agent.benchmark.StartupBenchmark --classes 30000 --runs 5
+ * </pre>
+ *
+ * 可选参数: --classes 类数量，--runs 每种配置的运行次数，--mode 使用哪个 AgentMain（同 InterceptionBenchmark），
+ * --agentArgs 额外的探针参数，--work 合成类的输出目录
+ */
+public final class StartupBenchmark {
+
+    /**
+     * 第三方库类、业务类、Controller 的比例，大致对应一个 Spring Boot 服务启动时加载的类构成
+     */
+    private static final double LIBRARY_RATIO = 0.85;
+    private static final double CONTROLLER_RATIO = 0.005;
+
+    private static final double TARGET_OVERHEAD = 0.05;
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int classCount = Integer.parseInt(options.getOrDefault("classes", "30000"));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        String mode = options.getOrDefault("mode", "AgentMain");
+        String extraArgs = options.getOrDefault("agentArgs", "");
+        Path work = Paths.get(options.getOrDefault("work", System.getProperty("java.io.tmpdir") + "/bytebuddy-agent-startup"));
+
+        Path classesJar = work.resolve("classes-" + classCount + ".jar");
+        Path classList = work.resolve("classes-" + classCount + ".txt");
+        if (!Files.exists(classesJar) || !Files.exists(classList)) {
+            System.out.println("[Startup] 生成 " + classCount + " 个合成类到 " + work);
+            generateClasses(classCount, classesJar, classList);
+        }
+
+        String agentArgs = AgentModes.join("benchMode=" + mode, extraArgs);
+        Map<String, List<String>> configs = new LinkedHashMap<>();
+        configs.put("baseline", Arrays.asList());
+        configs.put(mode + " 关闭预过滤", Arrays.asList("-javaagent:" + selfJar() + "=" + AgentModes.join(agentArgs, "preFilter=false")));
+        configs.put(mode + " 默认配置", Arrays.asList("-javaagent:" + selfJar() + "=" + agentArgs));
+
+        Map<String, long[]> wall = new LinkedHashMap<>();
+        Map<String, long[]> load = new LinkedHashMap<>();
+        for (String name : configs.keySet()) {
+            wall.put(name, new long[runs]);
+            load.put(name, new long[runs]);
+        }
+
+        // 先各跑一次预热文件系统缓存，然后轮流运行各配置，减少机器负载波动对某一种配置的影响
+        for (List<String> jvmArgs : configs.values()) {
+            runChild(jvmArgs, classesJar, classList);
+        }
+        for (int run = 0; run < runs; run++) {
+            for (Map.Entry<String, List<String>> config : configs.entrySet()) {
+                long[] result = runChild(config.getValue(), classesJar, classList);
+                wall.get(config.getKey())[run] = result[0];
+                load.get(config.getKey())[run] = result[1];
+            }
+            System.out.println("[Startup] 完成第 " + (run + 1) + "/" + runs + " 轮");
+        }
+
+        double baseWall = median(wall.get("baseline"));
+        double baseLoad = median(load.get("baseline"));
+        System.out.println();
+        System.out.println("[Startup] 类数量: " + classCount + "，每种配置运行 " + runs + " 次，取中位数");
+        System.out.printf("%-26s %12s %10s %12s %10s%n", "配置", "进程总耗时", "开销", "类加载耗时", "开销");
+        for (String name : configs.keySet()) {
+            double w = median(wall.get(name));
+            double l = median(load.get(name));
+            System.out.printf("%-26s %10.1fms %9.1f%% %10.1fms %9.1f%%%n",
+                    name, w / 1e6, (w - baseWall) * 100 / baseWall, l / 1e6, (l - baseLoad) * 100 / baseLoad);
+        }
+        double overhead = (median(wall.get(mode + " 默认配置")) - baseWall) / baseWall;
+        System.out.printf("[Startup] 默认配置的启动开销 %.1f%%，目标 < %.0f%%: %s%n",
+                overhead * 100, TARGET_OVERHEAD * 100, overhead < TARGET_OVERHEAD ? "达标" : "未达标");
+    }
+
+    /**
+     * 启动子进程加载全部合成类
+     * @return [进程总耗时, 类加载阶段耗时]，单位纳秒
+     */
+    private static long[] runChild(List<String> jvmArgs, Path classesJar, Path classList) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(selfJar() + File.pathSeparator + classesJar);
+        command.add(StartupBoot.class.getName());
+        command.add(classList.toString());
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String result = null;
+        List<String> output = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(StartupBoot.RESULT_PREFIX)) {
+                    result = line.substring(StartupBoot.RESULT_PREFIX.length());
+                } else if (output.size() < 50) {
+                    output.add(line);
+                }
+            }
+        }
+        int exitCode = process.waitFor();
+        long wallNanos = System.nanoTime() - start;
+        if (exitCode != 0 || result == null) {
+            output.forEach(System.err::println);
+            throw new IllegalStateException("子进程运行失败，退出码: " + exitCode + "，命令: " + command);
+        }
+        long loadNanos = Long.parseLong(result.split(" ")[1]);
+        return new long[]{wallNanos, loadNanos};
+    }
+
+    private static void generateClasses(int classCount, Path classesJar, Path classList) throws IOException {
+        Files.createDirectories(classesJar.getParent());
+        int controllers = Math.max(1, (int) (classCount * CONTROLLER_RATIO));
+        int libraries = (int) (classCount * LIBRARY_RATIO);
+        List<String> names = new ArrayList<>(classCount);
+        AnnotationDescription restController = AnnotationDescription.Builder.ofType(RestController.class).build();
+        try (OutputStream out = Files.newOutputStream(classesJar);
+             JarOutputStream jar = new JarOutputStream(out)) {
+            for (int i = 0; i < classCount; i++) {
+                String name;
+                if (i < controllers) {
+                    name = "com.rolin.orangesmart.controller.gen.GenController" + i;
+                } else if (i < controllers + libraries) {
+                    name = "org.springframework.gen.p" + (i % 200) + ".LibType" + i;
+                } else {
+                    name = "com.rolin.orangesmart.service.gen.p" + (i % 50) + ".ServiceType" + i;
+                }
+                DynamicType.Builder<?> builder = new ByteBuddy().subclass(Object.class).name(name);
+                for (int m = 0; m < 5; m++) {
+                    builder = builder.defineMethod("method" + m, long.class, Visibility.PUBLIC)
+                            .withParameters(long.class)
+                            .intercept(FixedValue.value((long) m));
+                }
+                if (i < controllers) {
+                    builder = builder.annotateType(restController);
+                }
+                jar.putNextEntry(new JarEntry(name.replace('.', '/') + ".class"));
+                jar.write(builder.make().getBytes());
+                jar.closeEntry();
+                names.add(name);
+            }
+        }
+        Files.write(classList, names, StandardCharsets.UTF_8);
+    }
+
+    static String selfJar() {
+        try {
+            return Paths.get(StartupBenchmark.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        } catch (Exception e) {
+            throw new IllegalStateException("无法定位 benchmarks.jar", e);
+        }
+    }
+
+    static double median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int mid = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2.0;
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("无法识别的参数: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+}
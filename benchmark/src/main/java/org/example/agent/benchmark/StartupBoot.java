@@ -0,0 +1,30 @@
+package org.example.agent.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * 启动基准测试的子进程入口
+ * 依次加载并初始化类清单中的所有类，模拟应用启动时的类加载，最后输出类加载阶段耗时
+ */
+public final class StartupBoot {
+
+    static final String RESULT_PREFIX = "BOOT-RESULT ";
+
+    private StartupBoot() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> classNames = Files.readAllLines(Paths.get(args[0]));
+        ClassLoader loader = StartupBoot.class.getClassLoader();
+
+        long start = System.nanoTime();
+        for (String className : classNames) {
+            Class.forName(className, true, loader);
+        }
+        long loadNanos = System.nanoTime() - start;
+
+        System.out.println(RESULT_PREFIX + classNames.size() + " " + loadNanos);
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.agent.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 在虚拟线程中调用被增强方法的开销
+ * 每次操作提交 tasks 个任务并等待全部完成，每个任务调用若干次被增强方法，中间 park 一次让虚拟线程卸载再重新挂载。
+ * virtual 为每个任务一个虚拟线程，platform 为固定大小的平台线程池，用于对比；
+ * 配合 -prof gc 观察每个虚拟线程的分配量（探针不应为每个虚拟线程创建缓冲区）
+ *
+ * 运行方式（在 benchmark 目录下）:
+ * <pre>
+ * java -jar target/benchmarks.jar VirtualThreadBenchmark -prof gc
+ * java -jar target/benchmarks.jar VirtualThreadBenchmark -p mode=AgentMain3-timing -p agentArgs=tracing=true
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-XX:+EnableDynamicAgentLoading", "-Djdk.attach.allowAttachSelf=true"})
+@State(Scope.Benchmark)
+public class VirtualThreadBenchmark {
+
+    private static final int CALLS_PER_TASK = 16;
+
+    @Param({"baseline", "AgentMain3-timing", "AgentMain3-count"})
+    public String mode;
+
+    @Param({"virtual", "platform"})
+    public String executor;
+
+    @Param({"1000"})
+    public int tasks;
+
+    /**
+     * 额外的探针参数，例如 -p agentArgs=tracing=true
+     */
+    @Param({""})
+    public String agentArgs;
+
+    private BenchApi controller;
+    private ExecutorService executorService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        controller = AgentModes.install(mode, agentArgs);
+        executorService = "virtual".equals(executor)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Benchmark
+    public long run() throws Exception {
+        List<Future<Long>> futures = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            long seed = i;
+            futures.add(executorService.submit(() -> task(seed)));
+        }
+        long sum = 0;
+        for (Future<Long> future : futures) {
+            sum += future.get();
+        }
+        return sum;
+    }
+
+    private long task(long seed) {
+        long sum = 0;
+        for (int i = 0; i < CALLS_PER_TASK; i++) {
+            sum += controller.compute(seed + i);
+            if (i == CALLS_PER_TASK / 2) {
+                // 虚拟线程在这里卸载，之后可能挂载到另一个载体线程上
+                LockSupport.parkNanos(1_000);
+            }
+        }
+        return sum;
+    }
+}
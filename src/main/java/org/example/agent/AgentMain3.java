@@ -2,19 +2,41 @@ package org.example.agent;
 
 import net.bytebuddy.agent.builder.AgentBuilder;
 import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.matcher.ElementMatcher;
 import net.bytebuddy.matcher.ElementMatchers;
 import net.bytebuddy.utility.JavaModule;
+import org.example.agent.adaptive.AdaptiveInstrumentation;
+import org.example.agent.capture.ValueRenderer;
+import org.example.agent.config.AgentArgs;
+import org.example.agent.control.AgentControl;
+import org.example.agent.control.ControlServer;
+import org.example.agent.export.HeartbeatExporter;
+import org.example.agent.export.PrometheusEndpoint;
+import org.example.agent.interceptor.CountingAdvice;
+import org.example.agent.interceptor.MethodIdMapping;
+import org.example.agent.interceptor.TimingAdvice;
+import org.example.agent.matcher.CustomMatchers;
+import org.example.agent.metrics.MetricsReporter;
+import org.example.agent.metrics.VirtualThreadPinning;
+import org.example.agent.pipeline.EventPipeline;
+import org.example.agent.recorder.TimingAggregator;
+import org.example.agent.recorder.TimingRecorder;
+import org.example.agent.retransform.RetransformScheduler;
+import org.example.agent.startup.AgentBuilderFactory;
+import org.example.agent.startup.BytecodeCache;
+import org.example.agent.trace.TracePropagation;
 
 import java.lang.instrument.Instrumentation;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 public class AgentMain3 {
 
-    private static ScheduledExecutorService heartbeatExecutor;
+    /**
+     * 控制通道中使用的规则名称
+     */
+    public static final String RULE_NAME = "controller-advice";
 
     public static void premain(String agentArgs, Instrumentation inst) {
         System.out.println("========================================");
@@ -27,9 +49,127 @@ public class AgentMain3 {
         System.out.println("目前该方法仅为测试存在,若看见本条日志则说明该示例已成功");
         System.out.println("========================================");
 
-        new AgentBuilder.Default()
-                // 添加类型匹配监听器，用于调试和日志输出
-                .with(AgentBuilder.Listener.StreamWriting.toSystemOut().withTransformationsOnly())
+        // Advice 模式: log(默认，逐条打印调用信息) / timing(只记录耗时，由后台线程汇总输出) / count(只计数)
+        AgentArgs args = AgentArgs.parse(agentArgs);
+        // 字节码缓存会恢复上次的方法注册表，必须在任何类被转换之前打开
+        BytecodeCache cache = BytecodeCache.fromArgs(args, RULE_NAME);
+        // 调用链追踪需要先把上下文类注入启动类加载器，必须在创建 Advice 之前完成
+        TracePropagation.install(args, inst);
+        // log 模式下参数的输出长度上限
+        ValueRenderer.configure(args);
+        String adviceMode = args.get("adviceMode", "log");
+        if ("timing".equals(adviceMode)) {
+            TimingRecorder.setBufferCapacity(args.getInt("timingBufferSize", 4096));
+            TimingAggregator.start(args.getLong("timingDrainInterval", 20));
+            MetricsReporter.start(args.getLong("metricsReportInterval", 30));
+        } else if ("count".equals(adviceMode)) {
+            MetricsReporter.start(args.getLong("metricsReportInterval", 30));
+        } else {
+            MetricsReporter.start(args.getLong("metricsReportInterval", 0));
+        }
+        System.out.println("[Agent] Advice 模式: " + adviceMode);
+        // 配置了 pipelineSinks 时启动异步事件管道
+        EventPipeline.start(args);
+
+        // 已加载类的重转换分批进行，批次大小和间隔根据每批耗时自动调整
+        RetransformScheduler.configure(args);
+        // Advice 规则以重转换方式安装：动态挂载时也会增强已加载的类，并且可以通过控制通道禁用、卸载
+        AgentBuilder builder = agentBuilder(args);
+        if (cache != null) {
+            // 命中缓存的类直接使用上次的转换结果
+            builder = builder.with(cache);
+        }
+        AgentControl.install(RULE_NAME, builder, true, inst);
+        if ("timing".equals(adviceMode)) {
+            // 调用频繁且探针开销相对过大的方法自动降级
+            AdaptiveInstrumentation.start(args, RULE_NAME);
+        }
+        ControlServer.start(args);
+
+        // 启动探针心跳机制，配置了 heartbeatUrl 时同时上报各方法的区间指标
+        HeartbeatExporter.start(args);
+        PrometheusEndpoint.start(args);
+        VirtualThreadPinning.start(args);
+
+        System.out.println("[Agent] Agent 配置完成，等待类加载...");
+    }
+
+    public static void agentmain(String agentArgs, Instrumentation inst) {
+        premain(agentArgs, inst);
+    }
+
+    /**
+     * 创建本示例的 AgentBuilder（未安装），由 AgentControl 安装和重新启用
+     * @param args 探针参数，adviceMode 决定使用哪个 Advice
+     */
+    public static AgentBuilder agentBuilder(AgentArgs args) {
+        String adviceMode = args.get("adviceMode", "log");
+        Advice counting = MethodIdMapping.advice(CountingAdvice.class);
+        if ("count".equals(adviceMode)) {
+            return countingBuilder(args, counting);
+        }
+        boolean timing = "timing".equals(adviceMode);
+        Advice advice = timing
+                ? MethodIdMapping.advice(TimingAdvice.class)
+                : MethodIdMapping.advice(org.example.agent.interceptor.AdviceInterceptor.class);
+        ElementMatcher.Junction<MethodDescription> methods = ElementMatchers.isPublic()
+                .and(ElementMatchers.not(ElementMatchers.isStatic()))
+                .and(ElementMatchers.not(ElementMatchers.isConstructor()));
+
+        return baseBuilder(args)
+                // 只匹配指定包下的 Controller 类，排除 fish 子包
+                // 限制范围：只增强 com.rolin.orangesmart.controller 包下的类（排除 fish 子包）
+                // 先用前缀树按类名过滤（可通过 typeInclude / typeExclude 参数调整），再解析注解
+                .type(CustomMatchers.typeFilter(args, "com.rolin.orangesmart.controller.fish")
+                        .and(ElementMatchers.nameStartsWith("com.rolin.orangesmart.controller"))
+                        .and(ElementMatchers.isAnnotatedWith(
+                                ElementMatchers.named("org.springframework.web.bind.annotation.RestController")
+                                        .or(ElementMatchers.named("org.springframework.stereotype.Controller"))
+                        )))
+                // log 模式下当类被匹配到时打印调试信息，并使用 Advice 进行增强
+                .transform((builder, type, classLoader, module, protectionDomain) -> {
+                    // 在类级别使用 visit 方式应用 Advice，这是推荐的方式
+                    if (!timing) {
+                        System.out.println("[Agent] ========== 匹配到类 ==========");
+                        System.out.println("[Agent] 类名: " + type.getName());
+                        System.out.println("[Agent] 类加载器: " + (classLoader != null ? classLoader.getClass().getName() : "null"));
+                        System.out.println("[Agent] 开始增强该类的方法...");
+                        return builder.visit(advice.on(methods));
+                    }
+                    // timing 模式下被自适应降级的方法改为仅计数或不再增强
+                    return builder.visit(advice.on(methods.and(AdaptiveInstrumentation.timed())))
+                            .visit(counting.on(methods.and(AdaptiveInstrumentation.counted())));
+                });
+    }
+
+    /**
+     * count 模式：不限于 Controller，对 typeInclude / typeExclude / typeGlob 选中的类的所有公共方法只计数
+     * 不打印逐类的调试信息，适合大范围常开
+     */
+    private static AgentBuilder countingBuilder(AgentArgs args, Advice counting) {
+        return baseBuilder(args)
+                .type(CustomMatchers.typeFilter(args)
+                        .and(ElementMatchers.not(ElementMatchers.isInterface()))
+                        .and(ElementMatchers.not(ElementMatchers.isSynthetic())))
+                .transform((builder, type, classLoader, module, protectionDomain) -> builder.visit(counting
+                        .on(ElementMatchers.isPublic()
+                                .and(ElementMatchers.not(ElementMatchers.isConstructor()))
+                                .and(ElementMatchers.not(ElementMatchers.isAbstract()))
+                                .and(ElementMatchers.not(ElementMatchers.isNative()))
+                                .and(ElementMatchers.not(ElementMatchers.isSynthetic())))));
+    }
+
+    /**
+     * 带启动预过滤和 ignore 配置的 AgentBuilder，JDK 和第三方库类不会进入之后的类型匹配
+     */
+    private static AgentBuilder baseBuilder(AgentArgs args) {
+        AgentBuilder builder = AgentBuilderFactory.create(args);
+        if ("log".equals(args.get("adviceMode", "log"))) {
+            // 添加类型匹配监听器，用于调试和日志输出
+            // timing / count 模式不逐个类输出，并行加载类时各线程不会在 System.out 的锁上排队
+            builder = builder.with(AgentBuilder.Listener.StreamWriting.toSystemOut().withTransformationsOnly());
+        }
+        return builder
                 // todo 添加错误处理：即使某个类增强失败，也不影响其他类,防止Advice拦截器因为无法处理特定的返回类型而启动失败
                 // todo 由于Advice处理多种类型需要写的代码较多，因此这里采用本方式暂且完成示例
                 .with(new AgentBuilder.Listener.Filtering(
@@ -60,121 +200,6 @@ public class AgentMain3 {
                             public void onComplete(String typeName, ClassLoader classLoader, JavaModule module, boolean loaded) {
                                 // 完成，不需要处理
                             }
-                        }))
-                // 只匹配指定包下的 Controller 类，排除 fish 子包
-                // 限制范围：只增强 com.rolin.orangesmart.controller 包下的类（排除 fish 子包）
-                .type(ElementMatchers.nameStartsWith("com.rolin.orangesmart.controller")
-                        .and(ElementMatchers.not(ElementMatchers.nameStartsWith("com.rolin.orangesmart.controller.fish")))
-                        .and(ElementMatchers.isAnnotatedWith(
-                                ElementMatchers.named("org.springframework.web.bind.annotation.RestController")
-                                        .or(ElementMatchers.named("org.springframework.stereotype.Controller"))
-                        )))
-                // 添加调试信息：当类被匹配到时打印日志，并使用 Advice 进行增强
-                .transform((builder, type, classLoader, module, protectionDomain) -> {
-                    System.out.println("[Agent] ========== 匹配到类 ==========");
-                    System.out.println("[Agent] 类名: " + type.getName());
-                    System.out.println("[Agent] 类加载器: " + (classLoader != null ? classLoader.getClass().getName() : "null"));
-                    System.out.println("[Agent] 开始增强该类的方法...");
-
-                    // 在类级别使用 visit 方式应用 Advice，这是推荐的方式
-                    return builder.visit(Advice.to(org.example.agent.interceptor.AdviceInterceptor.class)
-                            .on(ElementMatchers.isPublic()
-                                    .and(ElementMatchers.not(ElementMatchers.isStatic()))
-                                    .and(ElementMatchers.not(ElementMatchers.isConstructor()))));
-                })
-                .installOn(inst);
-
-        System.out.println("[Agent] Agent 配置完成，等待类加载...");
-    }
-
-    public static void agentmain(String agentArgs, Instrumentation inst) {
-        premain(agentArgs, inst);
-    }
-
-    private static void startHeartbeat(String agentArgs) {
-        // 创建单线程调度器（守护线程）
-        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = new Thread(r, "Agent-Heartbeat-Thread");
-            t.setDaemon(true); // 设置为守护线程，避免阻止JVM退出
-            return t;
-        });
-
-        // 解析心跳间隔（默认30秒）
-        long interval = 30;
-        String heartbeatUrl = null;
-
-        if (agentArgs != null) {
-            // 解析参数，例如: heartbeatInterval=10&heartbeatUrl=http://monitor:8080/heartbeat
-            String[] pairs = agentArgs.split("&");
-            for (String pair : pairs) {
-                String[] kv = pair.split("=");
-                if (kv.length == 2) {
-                    if ("heartbeatInterval".equals(kv[0])) {
-                        interval = Long.parseLong(kv[1]);
-                    } else if ("heartbeatUrl".equals(kv[0])) {
-                        heartbeatUrl = kv[1];
-                    }
-                }
-            }
-        }
-
-        final String url = heartbeatUrl;
-        final long finalInterval = interval;
-
-        // 启动定时心跳任务
-        heartbeatExecutor.scheduleAtFixedRate(() -> {
-            try {
-                long timestamp = System.currentTimeMillis();
-                String hostname = System.getProperty("user.name", "unknown");
-                String javaVersion = System.getProperty("java.version");
-
-                System.out.println("[Agent-Heartbeat] " + timestamp +
-                        " | Host: " + hostname +
-                        " | Java: " + javaVersion +
-                        " | Status: ALIVE");
-
-                // 如果配置了URL，发送HTTP心跳
-                if (url != null && !url.isEmpty()) {
-                    sendHeartbeat(url, timestamp, hostname, javaVersion);
-                }
-            } catch (Exception e) {
-                // 心跳失败不影响主应用
-                System.err.println("[Agent-Heartbeat] 心跳发送失败: " + e.getMessage());
-            }
-        }, 5, finalInterval, TimeUnit.SECONDS); // 延迟5秒启动，然后每interval秒执行一次
-
-        System.out.println("[Agent] 心跳机制已启动，间隔: " + finalInterval + "秒");
-    }
-
-    private static void sendHeartbeat(String url, long timestamp, String hostname, String javaVersion) {
-        try {
-            // 使用简单的HTTP连接发送心跳
-            java.net.URL heartbeatUrl = new java.net.URL(url);
-            java.net.HttpURLConnection conn = (java.net.HttpURLConnection) heartbeatUrl.openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setConnectTimeout(3000);
-            conn.setReadTimeout(3000);
-            conn.setDoOutput(true);
-
-            // 构建心跳数据
-            String json = String.format(
-                    "{\"timestamp\":%d,\"hostname\":\"%s\",\"javaVersion\":\"%s\",\"agent\":\"bytebuddy_agent\"}",
-                    timestamp, hostname, javaVersion
-            );
-
-            try (java.io.OutputStream os = conn.getOutputStream()) {
-                os.write(json.getBytes("UTF-8"));
-            }
-
-            int responseCode = conn.getResponseCode();
-            if (responseCode >= 200 && responseCode < 300) {
-                System.out.println("[Agent-Heartbeat] 心跳发送成功: " + responseCode);
-            } else {
-                System.out.println("[Agent-Heartbeat] 心跳发送失败: " + responseCode);
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("发送心跳失败", e);
-        }
+                        }));
     }
 }
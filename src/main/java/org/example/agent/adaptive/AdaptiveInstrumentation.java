@@ -0,0 +1,291 @@
+package org.example.agent.adaptive;
+
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+import org.example.agent.config.AgentArgs;
+import org.example.agent.control.AgentControl;
+import org.example.agent.metrics.HistogramSnapshot;
+import org.example.agent.metrics.MetricsRegistry;
+import org.example.agent.metrics.MetricsReporter;
+import org.example.agent.recorder.TimingRecorder;
+import org.example.agent.registry.MethodMetadata;
+import org.example.agent.registry.MethodRegistry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自适应降级
+ * 定期用 TimingAdvice 记录的耗时计算每个方法在本区间内的调用频率和平均耗时，并与探针自身的单次开销比较：
+ * 调用足够频繁、且探针开销相对方法本身过大的方法（例如 getter 一类的小方法），
+ * 通过 {@link AgentControl#retransform} 重新增强为仅计数（{@link org.example.agent.interceptor.CountingAdvice}）或直接移除增强。
+ * 每个决定及其原因会记录下来，随指标一起输出
+ *
+ * 只对 AgentMain3 的 timing 模式生效：需要 Advice 的耗时数据，并且规则必须支持重转换
+ *
+ * 支持的参数:
+ * adaptive=true                 是否启用自适应降级
+ * adaptiveInterval=30           评估间隔（秒）
+ * adaptiveMinRate=1000          调用频率下限（次/秒），低于该值的方法不降级
+ * adaptiveOverheadRatio=1.0     探针单次开销超过方法平均耗时的多少倍时降级
+ * adaptiveOverhead=0            探针单次开销（纳秒），0 表示启动后自动测量
+ * adaptiveAction=count          降级方式: count(仅计数) / remove(移除增强)
+ */
+public final class AdaptiveInstrumentation {
+
+    /**
+     * 降级方式
+     */
+    public enum Action {
+        COUNT("仅计数"),
+        REMOVE("移除增强");
+
+        private final String description;
+
+        Action(String description) {
+            this.description = description;
+        }
+
+        public String description() {
+            return description;
+        }
+    }
+
+    private static final Map<Integer, Decision> DECISIONS = new ConcurrentHashMap<>();
+
+    private static ScheduledExecutorService adaptiveExecutor;
+    private static volatile long overheadNanos;
+
+    private final String ruleName;
+    private final double minRate;
+    private final double overheadRatio;
+    private final Action action;
+    // 每个方法上一次评估时的 [调用次数, 耗时总和]，只由评估线程访问
+    private final Map<Integer, long[]> bases = new HashMap<>();
+    private long lastEvaluateNanos = System.nanoTime();
+
+    private AdaptiveInstrumentation(String ruleName, double minRate, double overheadRatio, Action action) {
+        this.ruleName = ruleName;
+        this.minRate = minRate;
+        this.overheadRatio = overheadRatio;
+        this.action = action;
+    }
+
+    /**
+     * 启动后台评估线程
+     * @param args 探针参数
+     * @param ruleName 需要降级的方法所在的增强规则，降级时按该规则重转换
+     */
+    public static synchronized void start(AgentArgs args, String ruleName) {
+        if (adaptiveExecutor != null || !args.getBoolean("adaptive", true)) {
+            return;
+        }
+        long intervalSeconds = Math.max(1, args.getLong("adaptiveInterval", 30));
+        Action action = "remove".equalsIgnoreCase(args.get("adaptiveAction", "count")) ? Action.REMOVE : Action.COUNT;
+        overheadNanos = Math.max(0, args.getLong("adaptiveOverhead", 0));
+        AdaptiveInstrumentation adaptive = new AdaptiveInstrumentation(ruleName,
+                args.getDouble("adaptiveMinRate", 1000), args.getDouble("adaptiveOverheadRatio", 1.0), action);
+
+        adaptiveExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Agent-Adaptive-Instrumentation");
+            t.setDaemon(true); // 设置为守护线程，避免阻止JVM退出
+            return t;
+        });
+        adaptiveExecutor.scheduleWithFixedDelay(adaptive::evaluate, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+
+        System.out.println("[Agent] 自适应降级已启动，评估间隔: " + intervalSeconds + "秒，降级方式: " + action.description());
+    }
+
+    /**
+     * 仍需完整计时的方法：没有被降级过
+     */
+    public static ElementMatcher.Junction<MethodDescription> timed() {
+        return new ElementMatcher.Junction.AbstractBase<MethodDescription>() {
+            @Override
+            public boolean matches(MethodDescription target) {
+                return decisionOf(target) == null;
+            }
+        };
+    }
+
+    /**
+     * 已降级为仅计数的方法
+     */
+    public static ElementMatcher.Junction<MethodDescription> counted() {
+        return new ElementMatcher.Junction.AbstractBase<MethodDescription>() {
+            @Override
+            public boolean matches(MethodDescription target) {
+                Decision decision = decisionOf(target);
+                return decision != null && decision.action() == Action.COUNT;
+            }
+        };
+    }
+
+    /**
+     * 所有降级决定，按时间排序
+     */
+    public static List<Decision> decisions() {
+        List<Decision> decisions = new ArrayList<>(DECISIONS.values());
+        decisions.sort(Comparator.comparingLong(Decision::timestamp));
+        return decisions;
+    }
+
+    /**
+     * 已降级的方法数量
+     */
+    public static int decisionCount() {
+        return DECISIONS.size();
+    }
+
+    /**
+     * 探针单次开销的估算值（纳秒），尚未测量时为 0
+     */
+    public static long overheadNanos() {
+        return overheadNanos;
+    }
+
+    private static Decision decisionOf(MethodDescription method) {
+        if (DECISIONS.isEmpty()) {
+            return null;
+        }
+        int methodId = MethodRegistry.find(method);
+        return methodId >= 0 ? DECISIONS.get(methodId) : null;
+    }
+
+    private void evaluate() {
+        try {
+            if (overheadNanos == 0) {
+                overheadNanos = Math.max(1, TimingRecorder.calibrate(200_000));
+                System.out.println("[Agent] 探针单次开销约 " + MetricsReporter.formatNanos(overheadNanos));
+            }
+            long now = System.nanoTime();
+            double seconds = (now - lastEvaluateNanos) / 1e9;
+            lastEvaluateNanos = now;
+
+            List<Decision> made = new ArrayList<>();
+            MetricsRegistry.forEach(metrics -> {
+                int methodId = metrics.methodId();
+                HistogramSnapshot latency = metrics.snapshot().latency();
+                long[] base = bases.put(methodId, new long[]{latency.count(), latency.sum()});
+                // 第一次出现的方法只记录基准，跳过预热阶段
+                if (base == null || DECISIONS.containsKey(methodId)) {
+                    return;
+                }
+                long calls = latency.count() - base[0];
+                if (calls <= 0) {
+                    return;
+                }
+                double rate = calls / seconds;
+                long meanNanos = (latency.sum() - base[1]) / calls;
+                if (rate >= minRate && overheadNanos > meanNanos * overheadRatio) {
+                    made.add(new Decision(methodId, action, rate, meanNanos, overheadNanos, System.currentTimeMillis()));
+                }
+            });
+            if (!made.isEmpty()) {
+                apply(made);
+            }
+        } catch (Throwable t) {
+            // 评估失败不影响主应用
+            System.err.println("[Agent] 自适应降级评估失败: " + t.getMessage());
+        }
+    }
+
+    private void apply(List<Decision> made) {
+        Set<String> classNames = new HashSet<>();
+        for (Decision decision : made) {
+            DECISIONS.put(decision.methodId(), decision);
+            MethodMetadata metadata = MethodRegistry.metadata(decision.methodId());
+            if (metadata != null) {
+                classNames.add(metadata.className());
+            }
+            System.out.println("[Agent] 自适应降级: " + decision.name() + " -> " + decision.action().description()
+                    + "，原因: " + decision.reason());
+        }
+        try {
+            int retransformed = AgentControl.retransform(ruleName, classNames);
+            System.out.println("[Agent] 自适应降级已重转换 " + retransformed + " 个类");
+        } catch (RuntimeException e) {
+            // 重转换失败时撤销本轮决定，下次评估会重新判断
+            for (Decision decision : made) {
+                DECISIONS.remove(decision.methodId());
+            }
+            System.err.println("[Agent] 自适应降级失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 一次降级决定
+     */
+    public static final class Decision {
+
+        private final int methodId;
+        private final Action action;
+        private final double callsPerSecond;
+        private final long meanNanos;
+        private final long overheadNanos;
+        private final long timestamp;
+
+        Decision(int methodId, Action action, double callsPerSecond, long meanNanos, long overheadNanos, long timestamp) {
+            this.methodId = methodId;
+            this.action = action;
+            this.callsPerSecond = callsPerSecond;
+            this.meanNanos = meanNanos;
+            this.overheadNanos = overheadNanos;
+            this.timestamp = timestamp;
+        }
+
+        public int methodId() {
+            return methodId;
+        }
+
+        public String name() {
+            return MethodRegistry.nameOf(methodId);
+        }
+
+        public Action action() {
+            return action;
+        }
+
+        /**
+         * 做出决定时的调用频率（次/秒）
+         */
+        public double callsPerSecond() {
+            return callsPerSecond;
+        }
+
+        /**
+         * 做出决定时的平均耗时（纳秒，包含一次 System.nanoTime() 的开销）
+         */
+        public long meanNanos() {
+            return meanNanos;
+        }
+
+        /**
+         * 做出决定时估算的探针单次开销（纳秒）
+         */
+        public long overheadNanos() {
+            return overheadNanos;
+        }
+
+        /**
+         * 做出决定的时间（毫秒时间戳）
+         */
+        public long timestamp() {
+            return timestamp;
+        }
+
+        public String reason() {
+            return String.format("调用 %.0f 次/秒，平均耗时 %s，探针开销约 %s",
+                    callsPerSecond, MetricsReporter.formatNanos(meanNanos), MetricsReporter.formatNanos(overheadNanos));
+        }
+    }
+}
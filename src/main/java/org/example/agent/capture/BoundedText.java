@@ -0,0 +1,72 @@
+package org.example.agent.capture;
+
+/**
+ * 有长度上限的文本缓冲区
+ * 写入超出上限的部分直接丢弃并标记为已截断，渲染器据此提前停止遍历；
+ * 底层 StringBuilder 的容量不会超过上限，由单个线程复用
+ */
+final class BoundedText {
+
+    private final StringBuilder sb;
+    private int limit;
+    private boolean truncated;
+
+    /**
+     * 正在被 {@link ValueRenderer} 使用，重入时不能复用
+     */
+    boolean busy;
+
+    BoundedText(int limit) {
+        this.sb = new StringBuilder(Math.min(limit, 1024));
+        this.limit = limit;
+    }
+
+    void reset(int newLimit) {
+        sb.setLength(0);
+        limit = newLimit;
+        truncated = false;
+    }
+
+    /**
+     * 已写满，继续写入的内容都会被丢弃
+     */
+    boolean full() {
+        return truncated || sb.length() >= limit;
+    }
+
+    BoundedText append(CharSequence value) {
+        int remaining = limit - sb.length();
+        if (value.length() > remaining) {
+            sb.append(value, 0, Math.max(0, remaining));
+            truncated = true;
+        } else {
+            sb.append(value);
+        }
+        return this;
+    }
+
+    BoundedText append(char c) {
+        if (sb.length() < limit) {
+            sb.append(c);
+        } else {
+            truncated = true;
+        }
+        return this;
+    }
+
+    BoundedText append(long value) {
+        // 数字最长 20 个字符，先判断剩余空间，避免经过 String
+        if (limit - sb.length() >= 20) {
+            sb.append(value);
+            return this;
+        }
+        return append(Long.toString(value));
+    }
+
+    /**
+     * 生成结果，被截断时追加 "..."
+     */
+    String finish() {
+        return truncated ? sb + "..." : sb.toString();
+    }
+}
@@ -0,0 +1,261 @@
+package org.example.agent.capture;
+
+import org.example.agent.config.AgentArgs;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 有界的调用栈采集
+ * 用 StackWalker 只遍历栈顶 stackDepth 层，不像 Thread.getStackTrace() 那样生成整个调用栈的 StackTraceElement 数组。
+ * 每个栈帧只格式化一次并分配帧 ID：栈帧按类名、方法名和字节码偏移查找，只有第一次遇到时才计算文件名和行号
+ * （两者需要为栈帧生成 StackTraceElement，占遍历开销的一半左右；方法描述符同样需要现场生成，不参与查找，
+ * 同名重载方法恰好在相同偏移处调用时会共用先遇到的那个栈帧的行号）。相同帧序列的调用栈共享一个 {@link Stack} 和栈 ID，
+ * 输出时同一个栈只需要完整打印一次，之后只打印栈 ID
+ *
+ * 支持的参数:
+ * stackDepth=5             采集的栈帧数
+ * stackCacheSize=10000     最多缓存的不同调用栈数，超出后新的调用栈不再缓存（栈 ID 为 0）；
+ *                          栈帧表最多缓存 stackCacheSize * stackDepth 个栈帧，超出后新的栈帧每次现场格式化，
+ *                          包含未缓存栈帧的调用栈也不缓存
+ */
+public final class StackCapture {
+
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    private static volatile int depth = 5;
+    private static volatile int maxStacks = 10000;
+    private static volatile int maxFrames = 50000;
+
+    private static final Map<FrameKey, Frame> FRAMES = new ConcurrentHashMap<>();
+    private static final Map<StackKey, Stack> STACKS = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_FRAME_ID = new AtomicInteger();
+    private static final AtomicInteger NEXT_STACK_ID = new AtomicInteger();
+
+    private StackCapture() {
+    }
+
+    /**
+     * 根据探针参数配置采集深度和缓存大小
+     */
+    public static void configure(AgentArgs args) {
+        depth = Math.max(1, args.getInt("stackDepth", 5));
+        maxStacks = Math.max(0, args.getInt("stackCacheSize", 10000));
+        // 缓存的调用栈用到的栈帧都能放下
+        maxFrames = (int) Math.min(Integer.MAX_VALUE, (long) maxStacks * depth);
+    }
+
+    /**
+     * 采集当前线程的调用栈，跳过栈顶的 StackCapture 和 caller 自身的栈帧
+     * @param caller 调用方（通常是拦截器类）
+     */
+    public static Stack capture(Class<?> caller) {
+        return WALKER.walk(new Walk(caller.getName(), depth));
+    }
+
+    /**
+     * 采集异常调用栈的栈顶几层
+     * 异常的 StackTraceElement 在 getStackTrace() 时一次性生成，这里只能减少格式化和输出
+     */
+    public static Stack capture(Throwable throwable) {
+        StackTraceElement[] elements = throwable.getStackTrace();
+        int limit = depth;
+        int count = Math.min(elements.length, limit);
+        Frame[] frames = new Frame[count];
+        for (int i = 0; i < count; i++) {
+            StackTraceElement element = elements[i];
+            frames[i] = frame(element);
+        }
+        return intern(frames, elements.length - count);
+    }
+
+    /**
+     * 已缓存的不同调用栈数
+     */
+    public static int cachedStacks() {
+        return STACKS.size();
+    }
+
+    /**
+     * 已缓存的不同栈帧数
+     */
+    public static int cachedFrames() {
+        return FRAMES.size();
+    }
+
+    private static Frame frame(StackWalker.StackFrame f) {
+        FrameKey key = new FrameKey(f.getClassName(), f.getMethodName(), true, f.getByteCodeIndex());
+        Frame frame = FRAMES.get(key);
+        if (frame != null) {
+            return frame;
+        }
+        if (FRAMES.size() >= maxFrames) {
+            return new Frame(0, format(key, f.getFileName(), f.getLineNumber()));
+        }
+        return FRAMES.computeIfAbsent(key, k -> newFrame(k, f.getFileName(), f.getLineNumber()));
+    }
+
+    /**
+     * 异常栈帧没有字节码偏移，按行号查找
+     */
+    private static Frame frame(StackTraceElement element) {
+        FrameKey key = new FrameKey(element.getClassName(), element.getMethodName(), false, element.getLineNumber());
+        Frame frame = FRAMES.get(key);
+        if (frame != null) {
+            return frame;
+        }
+        if (FRAMES.size() >= maxFrames) {
+            return new Frame(0, format(key, element.getFileName(), element.getLineNumber()));
+        }
+        return FRAMES.computeIfAbsent(key, k -> newFrame(k, element.getFileName(), element.getLineNumber()));
+    }
+
+    private static Frame newFrame(FrameKey key, String fileName, int lineNumber) {
+        return new Frame(NEXT_FRAME_ID.incrementAndGet(), format(key, fileName, lineNumber));
+    }
+
+    private static String format(FrameKey key, String fileName, int lineNumber) {
+        return key.className() + "." + key.methodName() + "(" + fileName + ":" + lineNumber + ")";
+    }
+
+    /**
+     * @param omitted 未采集的栈帧数，-1 表示还有但数量未知
+     */
+    private static Stack intern(Frame[] frames, int omitted) {
+        int[] ids = new int[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            ids[i] = frames[i].id;
+            if (ids[i] == 0) {
+                // 未缓存的栈帧没有 ID，无法区分不同的调用栈
+                return new Stack(0, frames, omitted);
+            }
+        }
+        StackKey key = new StackKey(ids, omitted);
+        Stack stack = STACKS.get(key);
+        if (stack != null) {
+            return stack;
+        }
+        if (STACKS.size() >= maxStacks) {
+            return new Stack(0, frames, omitted);
+        }
+        return STACKS.computeIfAbsent(key, k -> new Stack(NEXT_STACK_ID.incrementAndGet(), frames, omitted));
+    }
+
+    /**
+     * 遍历栈顶，多取一层用于判断是否还有更多栈帧
+     */
+    private static final class Walk implements Function<Stream<StackWalker.StackFrame>, Stack> {
+
+        private final String caller;
+        private final int limit;
+
+        Walk(String caller, int limit) {
+            this.caller = caller;
+            this.limit = limit;
+        }
+
+        @Override
+        public Stack apply(Stream<StackWalker.StackFrame> stream) {
+            Frame[] frames = new Frame[limit];
+            int[] count = {0};
+            boolean[] more = {false};
+            // 遍历从调用 walk 的 StackCapture.capture 开始
+            stream.dropWhile(f -> f.getClassName().equals(caller) || f.getClassName().equals(StackCapture.class.getName()))
+                    .limit(limit + 1L)
+                    .forEach(f -> {
+                        if (count[0] < limit) {
+                            frames[count[0]++] = frame(f);
+                        } else {
+                            more[0] = true;
+                        }
+                    });
+            return intern(count[0] < limit ? Arrays.copyOf(frames, count[0]) : frames, more[0] ? -1 : 0);
+        }
+    }
+
+    /**
+     * 格式化后的栈帧，超出缓存上限未缓存时 ID 为 0
+     */
+    private static final class Frame {
+        final int id;
+        final String text;
+
+        Frame(int id, String text) {
+            this.id = id;
+            this.text = text;
+        }
+    }
+
+    /**
+     * @param bytecodeIndex position 是否为字节码偏移（StackWalker 栈帧），否则为行号（异常栈帧）
+     */
+    private record FrameKey(String className, String methodName, boolean bytecodeIndex, int position) {
+    }
+
+    private record StackKey(int[] frameIds, int omitted) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StackKey other && omitted == other.omitted && Arrays.equals(frameIds, other.frameIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(frameIds) * 31 + omitted;
+        }
+    }
+
+    /**
+     * 一个调用栈，相同帧序列的调用栈共享同一个实例
+     */
+    public static final class Stack {
+
+        private final int id;
+        private final Frame[] frames;
+        private final int omitted;
+        private final AtomicBoolean printed = new AtomicBoolean();
+
+        Stack(int id, Frame[] frames, int omitted) {
+            this.id = id;
+            this.frames = frames;
+            this.omitted = omitted;
+        }
+
+        /**
+         * 栈 ID，超出缓存上限未缓存时为 0
+         */
+        public int id() {
+            return id;
+        }
+
+        public int depth() {
+            return frames.length;
+        }
+
+        /**
+         * 第 i 层栈帧，格式为 类名.方法名(文件名:行号)
+         */
+        public String frame(int i) {
+            return frames[i].text;
+        }
+
+        /**
+         * 未采集的栈帧数，-1 表示还有更多栈帧但没有遍历，0 表示已采集完整
+         */
+        public int omitted() {
+            return omitted;
+        }
+
+        /**
+         * 第一次调用时返回 true，用于同一个调用栈只完整输出一次；未缓存的调用栈总是返回 true
+         */
+        public boolean markPrinted() {
+            return id == 0 || printed.compareAndSet(false, true);
+        }
+    }
+}
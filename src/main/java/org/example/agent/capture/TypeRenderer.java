@@ -0,0 +1,124 @@
+package org.example.agent.capture;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 单个类型的渲染方式，按类型选择一次后由 {@link ValueRenderer} 缓存
+ * 容器类型逐个元素写入，写满或达到元素上限后停止遍历；
+ * 其余类型只能调用 toString()，生成的字符串按剩余长度截断。
+ * record 也走 toString()：生成的和手写的 toString() 无法区分，按组件渲染可能绕过业务对敏感字段的脱敏
+ */
+interface TypeRenderer {
+
+    void render(Object value, BoundedText out, int depth);
+
+    static TypeRenderer of(Class<?> type) {
+        if (CharSequence.class.isAssignableFrom(type)) {
+            return (value, out, depth) -> out.append((CharSequence) value);
+        }
+        if (type == Long.class || type == Integer.class || type == Short.class || type == Byte.class) {
+            return (value, out, depth) -> out.append(((Number) value).longValue());
+        }
+        if (type.isEnum() || (type.getSuperclass() != null && type.getSuperclass().isEnum())) {
+            return (value, out, depth) -> out.append(((Enum<?>) value).name());
+        }
+        if (type.isArray()) {
+            return TypeRenderer::renderArray;
+        }
+        if (Collection.class.isAssignableFrom(type)) {
+            return TypeRenderer::renderCollection;
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            return TypeRenderer::renderMap;
+        }
+        if (!overridesToString(type)) {
+            // 与 Object.toString() 相同，省去一次字符串拼接
+            return (value, out, depth) -> out.append(value.getClass().getName()).append('@')
+                    .append(Integer.toHexString(value.hashCode()));
+        }
+        return (value, out, depth) -> out.append(String.valueOf(value));
+    }
+
+    private static boolean overridesToString(Class<?> type) {
+        try {
+            return type.getMethod("toString").getDeclaringClass() != Object.class;
+        } catch (NoSuchMethodException | SecurityException e) {
+            return true;
+        }
+    }
+
+    private static void renderArray(Object array, BoundedText out, int depth) {
+        int length = Array.getLength(array);
+        if (depth >= ValueRenderer.maxDepth()) {
+            out.append(array.getClass().getComponentType().getSimpleName()).append('[').append(length).append(']');
+            return;
+        }
+        int limit = Math.min(length, ValueRenderer.maxElements());
+        out.append('[');
+        for (int i = 0; i < limit && !out.full(); i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            ValueRenderer.renderTo(Array.get(array, i), out, depth + 1);
+        }
+        appendRemaining(out, length, limit);
+        out.append(']');
+    }
+
+    private static void renderCollection(Object value, BoundedText out, int depth) {
+        Collection<?> collection = (Collection<?>) value;
+        int size = collection.size();
+        if (depth >= ValueRenderer.maxDepth()) {
+            out.append(value.getClass().getSimpleName()).append("(size=").append(size).append(')');
+            return;
+        }
+        int limit = Math.min(size, ValueRenderer.maxElements());
+        out.append('[');
+        Iterator<?> iterator = collection.iterator();
+        for (int i = 0; i < limit && iterator.hasNext() && !out.full(); i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            Object element = iterator.next();
+            if (element == collection) {
+                out.append("(this Collection)");
+            } else {
+                ValueRenderer.renderTo(element, out, depth + 1);
+            }
+        }
+        appendRemaining(out, size, limit);
+        out.append(']');
+    }
+
+    private static void renderMap(Object value, BoundedText out, int depth) {
+        Map<?, ?> map = (Map<?, ?>) value;
+        int size = map.size();
+        if (depth >= ValueRenderer.maxDepth()) {
+            out.append(value.getClass().getSimpleName()).append("(size=").append(size).append(')');
+            return;
+        }
+        int limit = Math.min(size, ValueRenderer.maxElements());
+        out.append('{');
+        Iterator<? extends Map.Entry<?, ?>> iterator = map.entrySet().iterator();
+        for (int i = 0; i < limit && iterator.hasNext() && !out.full(); i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            Map.Entry<?, ?> entry = iterator.next();
+            ValueRenderer.renderTo(entry.getKey() == map ? "(this Map)" : entry.getKey(), out, depth + 1);
+            out.append('=');
+            ValueRenderer.renderTo(entry.getValue() == map ? "(this Map)" : entry.getValue(), out, depth + 1);
+        }
+        appendRemaining(out, size, limit);
+        out.append('}');
+    }
+
+    private static void appendRemaining(BoundedText out, int size, int rendered) {
+        if (size > rendered && !out.full()) {
+            out.append(", ... 共 ").append(size).append(" 个");
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.agent.capture;
+
+import org.example.agent.config.AgentArgs;
+
+/**
+ * 参数和返回值的有界渲染
+ * 拦截器只持有参数和返回值的引用，真正输出时才调用 {@link #render(Object)}，未被采样的调用不会渲染。
+ * 渲染时边写边检查长度上限，写满后立即停止：字符串只复制上限以内的部分，数组、集合、Map 最多遍历 captureMaxElements 个元素，
+ * 嵌套超过 captureMaxDepth 层只输出类型和大小。每个类的渲染方式只选择一次，缓存在 ClassValue 中，不影响类卸载。
+ * 其它类型仍然需要调用 toString()，生成的字符串按剩余长度截断；toString() 抛出异常时输出占位符，不影响业务方法。
+ *
+ * 支持的参数:
+ * captureMaxChars=200        单个值最多输出的字符数
+ * captureMaxElements=10      数组、集合、Map 最多输出的元素数
+ * captureMaxDepth=2          容器最多展开的层数
+ */
+public final class ValueRenderer {
+
+    private static volatile int maxChars = 200;
+    private static volatile int maxElements = 10;
+    private static volatile int maxDepth = 2;
+
+    private static final ClassValue<TypeRenderer> RENDERERS = new ClassValue<>() {
+        @Override
+        protected TypeRenderer computeValue(Class<?> type) {
+            return TypeRenderer.of(type);
+        }
+    };
+
+    // 平台线程复用缓冲区；虚拟线程数量可能很多，每次新建
+    private static final ThreadLocal<BoundedText> BUFFERS = new ThreadLocal<>();
+
+    private ValueRenderer() {
+    }
+
+    /**
+     * 根据探针参数配置渲染上限
+     * 参数示例: captureMaxChars=500&captureMaxElements=20
+     */
+    public static void configure(AgentArgs args) {
+        maxChars = Math.max(16, args.getInt("captureMaxChars", 200));
+        maxElements = Math.max(1, args.getInt("captureMaxElements", 10));
+        maxDepth = Math.max(1, args.getInt("captureMaxDepth", 2));
+    }
+
+    /**
+     * 渲染单个值，超出长度上限时以 "..." 结尾
+     */
+    public static String render(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        BoundedText out = acquire();
+        try {
+            renderTo(value, out, 0);
+            return out.finish();
+        } finally {
+            out.busy = false;
+        }
+    }
+
+    static void renderTo(Object value, BoundedText out, int depth) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        try {
+            RENDERERS.get(value.getClass()).render(value, out, depth);
+        } catch (Throwable t) {
+            out.append("<渲染失败: ").append(t.getClass().getSimpleName()).append('>');
+        }
+    }
+
+    static int maxElements() {
+        return maxElements;
+    }
+
+    static int maxDepth() {
+        return maxDepth;
+    }
+
+    private static BoundedText acquire() {
+        int limit = maxChars;
+        if (Thread.currentThread().isVirtual()) {
+            return acquired(new BoundedText(limit));
+        }
+        BoundedText out = BUFFERS.get();
+        if (out == null) {
+            out = new BoundedText(limit);
+            BUFFERS.set(out);
+        } else if (out.busy) {
+            // toString() 中又调用了被增强的方法，外层的渲染还没有结束
+            return acquired(new BoundedText(limit));
+        }
+        out.reset(limit);
+        return acquired(out);
+    }
+
+    private static BoundedText acquired(BoundedText out) {
+        out.busy = true;
+        return out;
+    }
+}
@@ -0,0 +1,129 @@
+package org.example.agent.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 探针参数解析工具
+ * 参数格式与心跳参数保持一致，例如: adviceMode=timing&timingReportInterval=10
+ */
+public final class AgentArgs {
+
+    private final String raw;
+    private final Map<String, String> values;
+
+    private AgentArgs(String raw, Map<String, String> values) {
+        this.raw = raw;
+        this.values = values;
+    }
+
+    /**
+     * 解析探针参数
+     * @param agentArgs -javaagent 传入的原始参数，可以为 null
+     * @return 解析结果
+     */
+    public static AgentArgs parse(String agentArgs) {
+        Map<String, String> values = new LinkedHashMap<>();
+        if (agentArgs != null && !agentArgs.isEmpty()) {
+            String[] pairs = agentArgs.split("&");
+            for (String pair : pairs) {
+                // 只按第一个 = 切分，避免 URL 中的查询参数被截断
+                String[] kv = pair.split("=", 2);
+                if (kv.length == 2 && !kv[0].isEmpty()) {
+                    values.put(kv[0].trim(), kv[1].trim());
+                }
+            }
+        }
+        return new AgentArgs(agentArgs, Collections.unmodifiableMap(values));
+    }
+
+    public String raw() {
+        return raw;
+    }
+
+    public boolean has(String key) {
+        return values.containsKey(key);
+    }
+
+    public String get(String key, String defaultValue) {
+        String value = values.get(key);
+        return value != null && !value.isEmpty() ? value : defaultValue;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = values.get(key);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.err.println("[Agent] 参数 " + key + " 不是合法的整数: " + value + "，使用默认值 " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = values.get(key);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.err.println("[Agent] 参数 " + key + " 不是合法的整数: " + value + "，使用默认值 " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        String value = values.get(key);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            System.err.println("[Agent] 参数 " + key + " 不是合法的数字: " + value + "，使用默认值 " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = values.get(key);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        return "true".equalsIgnoreCase(value) || "1".equals(value) || "on".equalsIgnoreCase(value);
+    }
+
+    /**
+     * 读取逗号分隔的列表参数，例如: include=com.foo.,com.bar.
+     */
+    public List<String> getList(String key) {
+        String value = values.get(key);
+        if (value == null || value.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>();
+        for (String item : value.split(",")) {
+            String trimmed = item.trim();
+            if (!trimmed.isEmpty()) {
+                result.add(trimmed);
+            }
+        }
+        return result;
+    }
+
+    public Map<String, String> asMap() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return values.toString();
+    }
+}
@@ -0,0 +1,233 @@
+package org.example.agent.control;
+
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.agent.builder.ResettableClassFileTransformer;
+import org.example.agent.listener.ClassLoadListener;
+import org.example.agent.listener.TransformationProfiler;
+import org.example.agent.retransform.RetransformScheduler;
+
+import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 运行时控制
+ * 管理所有增强规则的安装、启用、禁用和卸载，由 ControlServer 的命令调用
+ *
+ * Advice 规则以 RETRANSFORMATION 方式安装：动态挂载时会增强已加载的类，禁用或卸载时恢复原始字节码。
+ * MethodDelegation 规则需要改变类结构，JVM 不允许对已加载的类这样做，
+ * 因此动态挂载后只增强新加载的类；禁用时注销转换器并让拦截器直接调用原方法，已增强的类保留委托代码
+ */
+public final class AgentControl {
+
+    private static final Map<String, InstrumentationRule> RULES = new LinkedHashMap<>();
+
+    /**
+     * 所有重转换（安装、启用、禁用、卸载、自适应降级）共用的分批调度器，调用都持有本类的锁，不会并发
+     */
+    private static final RetransformScheduler SCHEDULER = new RetransformScheduler(new ClassLoadListener(System.out, true));
+
+    private static Instrumentation instrumentation;
+
+    /**
+     * 规则 ID -> 规则，ID 按名称分配并写入增强后的字节码，同名规则重新安装后沿用原来的 ID；
+     * 拦截器在每次调用时读取，修改时整体替换数组
+     */
+    private static final List<String> RULE_IDS = new ArrayList<>();
+    private static volatile InstrumentationRule[] rulesById = new InstrumentationRule[0];
+
+    private AgentControl() {
+    }
+
+    /**
+     * 安装一条增强规则，同名规则已存在时先卸载旧规则（重复挂载的情况）
+     * @param name 规则名称，用于控制命令
+     * @param builder 已配置好类型匹配和转换的 AgentBuilder
+     * @param retransformable 是否为 Advice 规则，可以通过重转换增强已加载的类
+     * @param inst Instrumentation
+     */
+    public static synchronized void install(String name, AgentBuilder builder, boolean retransformable, Instrumentation inst) {
+        instrumentation = inst;
+        InstrumentationRule previous = RULES.remove(name);
+        if (previous != null) {
+            reset(previous);
+        }
+        InstrumentationRule rule = new InstrumentationRule(name, prepare(builder, retransformable), retransformable);
+        publish(ruleId(name), rule);
+        rule.transformer(rule.builder().installOn(inst));
+        RULES.put(name, rule);
+        System.out.println("[Agent] 增强规则已安装: " + name + (retransformable ? "（支持重转换）" : ""));
+    }
+
+    /**
+     * 启用规则
+     * @return 执行结果说明
+     */
+    public static synchronized String enable(String name) {
+        InstrumentationRule rule = rule(name);
+        if (rule.enabled()) {
+            return "规则已处于启用状态: " + name;
+        }
+        rule.transformer(rule.builder().installOn(instrumentation));
+        rule.delegationEnabled(true);
+        return "已启用规则: " + name;
+    }
+
+    /**
+     * 禁用规则，Advice 规则会恢复已增强类的原始字节码
+     * @return 执行结果说明
+     */
+    public static synchronized String disable(String name) {
+        InstrumentationRule rule = rule(name);
+        if (!rule.enabled()) {
+            return "规则已处于禁用状态: " + name;
+        }
+        reset(rule);
+        return "已禁用规则: " + name + (rule.retransformable() ? "，已恢复原始字节码" : "，已增强的类将直接调用原方法");
+    }
+
+    /**
+     * 卸载所有规则并关闭控制通道
+     * @return 执行结果说明
+     */
+    public static synchronized String uninstall() {
+        for (InstrumentationRule rule : RULES.values()) {
+            if (rule.enabled()) {
+                reset(rule);
+            }
+        }
+        ControlServer.stop();
+        return "已卸载全部 " + RULES.size() + " 条规则";
+    }
+
+    /**
+     * 按类名重转换已加载的类，让启用中的 Advice 规则按最新的配置重新增强（例如自适应降级之后）
+     * 与安装、启用、禁用一样通过共用的分批调度器执行；扫描已加载的类时不持有锁
+     * @param name 规则名称
+     * @param classNames 需要重转换的类名
+     * @return 实际重转换的类数量，规则未启用或不支持重转换时为 0
+     */
+    public static int retransform(String name, Set<String> classNames) {
+        Instrumentation inst;
+        synchronized (AgentControl.class) {
+            InstrumentationRule rule = rule(name);
+            if (!rule.enabled() || !rule.retransformable() || classNames.isEmpty()) {
+                return 0;
+            }
+            inst = instrumentation;
+        }
+        List<Class<?>> classes = new ArrayList<>();
+        for (Class<?> type : inst.getAllLoadedClasses()) {
+            // 同名类可能由多个类加载器加载，全部重转换
+            if (classNames.contains(type.getName()) && inst.isModifiableClass(type)) {
+                classes.add(type);
+            }
+        }
+        if (classes.isEmpty()) {
+            return 0;
+        }
+        synchronized (AgentControl.class) {
+            // 扫描期间规则可能已被禁用
+            if (!rule(name).enabled()) {
+                return 0;
+            }
+            int retransformed = SCHEDULER.retransform(inst, classes);
+            if (retransformed == 0) {
+                throw new IllegalStateException("重转换失败，共 " + classes.size() + " 个类");
+            }
+            return retransformed;
+        }
+    }
+
+    /**
+     * 列出所有规则及其状态
+     */
+    public static synchronized List<String> list() {
+        List<String> lines = new ArrayList<>();
+        for (InstrumentationRule rule : RULES.values()) {
+            lines.add(rule.name()
+                    + " | " + (rule.enabled() ? "enabled" : "disabled")
+                    + " | " + (rule.retransformable() ? "advice/retransform" : "delegation"));
+        }
+        return lines;
+    }
+
+    /**
+     * 按规则名称分配规则 ID，同一名称总是返回相同的 ID，在创建 MethodDelegation 时调用
+     */
+    public static synchronized int ruleId(String name) {
+        int id = RULE_IDS.indexOf(name);
+        if (id < 0) {
+            id = RULE_IDS.size();
+            RULE_IDS.add(name);
+        }
+        return id;
+    }
+
+    /**
+     * MethodDelegation 拦截器是否需要执行记录逻辑
+     * @param ruleId 拦截器所属规则的 ID，规则还没有安装完成时按启用处理
+     */
+    public static boolean delegationEnabled(int ruleId) {
+        InstrumentationRule[] rules = rulesById;
+        InstrumentationRule rule = ruleId < rules.length ? rules[ruleId] : null;
+        return rule == null || rule.delegationEnabled();
+    }
+
+    private static void publish(int id, InstrumentationRule rule) {
+        InstrumentationRule[] rules = rulesById;
+        if (id >= rules.length) {
+            rules = Arrays.copyOf(rules, id + 1);
+        } else {
+            rules = rules.clone();
+        }
+        rules[id] = rule;
+        rulesById = rules;
+    }
+
+    private static AgentBuilder prepare(AgentBuilder builder, boolean retransformable) {
+        if (!retransformable) {
+            return builder;
+        }
+        // 不改变类结构，才能对已加载的类重转换，并在重置时恢复原始字节码
+        // 已加载的类由 RetransformScheduler 分批重转换，控制每批的停顿时间
+        builder = builder.disableClassFormatChanges();
+        if (TransformationProfiler.isEnabled()) {
+            // disableClassFormatChanges() 把类型策略换成了 REDEFINE_FROZEN，需要重新包装
+            builder = builder.with(TransformationProfiler.get().typeStrategy(AgentBuilder.TypeStrategy.Default.REDEFINE_FROZEN));
+        }
+        return builder
+                .with(AgentBuilder.RedefinitionStrategy.RETRANSFORMATION)
+                .with((AgentBuilder.RedefinitionStrategy.BatchAllocator) SCHEDULER)
+                .with((AgentBuilder.RedefinitionStrategy.Listener) SCHEDULER)
+                .with(SCHEDULER.decorator());
+    }
+
+    private static void reset(InstrumentationRule rule) {
+        ResettableClassFileTransformer transformer = rule.transformer();
+        if (transformer == null) {
+            return;
+        }
+        if (rule.retransformable()) {
+            transformer.reset(instrumentation, AgentBuilder.RedefinitionStrategy.RETRANSFORMATION,
+                    (AgentBuilder.RedefinitionStrategy.BatchAllocator) SCHEDULER,
+                    (AgentBuilder.RedefinitionStrategy.Listener) SCHEDULER);
+        } else {
+            transformer.reset(instrumentation, AgentBuilder.RedefinitionStrategy.DISABLED);
+            rule.delegationEnabled(false);
+        }
+        rule.transformer(null);
+    }
+
+    private static InstrumentationRule rule(String name) {
+        InstrumentationRule rule = RULES.get(name);
+        if (rule == null) {
+            throw new IllegalArgumentException("规则不存在: " + name);
+        }
+        return rule;
+    }
+}
@@ -0,0 +1,148 @@
+package org.example.agent.control;
+
+import org.example.agent.config.AgentArgs;
+import org.example.agent.listener.ClassLoadStatistics;
+import org.example.agent.listener.TransformationProfiler;
+import org.example.agent.startup.TypePoolCache;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 本地控制通道
+ * 在 127.0.0.1 上监听 controlPort 参数指定的端口，逐行接收文本命令，例如:
+ * <pre>
+ * $ nc 127.0.0.1 9527
+ * list
+ * disable controller
+ * enable controller
+ * stats
+ * profile
+ * uninstall
+ * </pre>
+ * 每条命令的输出以 "OK" 或 "ERROR 原因" 结尾
+ */
+public final class ControlServer {
+
+    private static ServerSocket serverSocket;
+
+    private ControlServer() {
+    }
+
+    /**
+     * 启动控制通道，未配置 controlPort 时不启动
+     */
+    public static synchronized void start(AgentArgs args) {
+        int port = args.getInt("controlPort", 0);
+        if (serverSocket != null || port <= 0) {
+            return;
+        }
+        try {
+            serverSocket = new ServerSocket(port, 1, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            System.err.println("[Agent] 控制通道启动失败，端口: " + port + "，原因: " + e.getMessage());
+            return;
+        }
+        ServerSocket socket = serverSocket;
+        Thread thread = new Thread(() -> acceptLoop(socket), "Agent-Control-Server");
+        thread.setDaemon(true); // 设置为守护线程，避免阻止JVM退出
+        thread.start();
+        System.out.println("[Agent] 控制通道已启动: 127.0.0.1:" + port);
+    }
+
+    static synchronized void stop() {
+        if (serverSocket == null) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+            // 关闭失败不影响主应用
+        }
+        serverSocket = null;
+        System.out.println("[Agent] 控制通道已关闭");
+    }
+
+    private static void acceptLoop(ServerSocket socket) {
+        while (!socket.isClosed()) {
+            try (Socket client = socket.accept()) {
+                handle(client);
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    System.err.println("[Agent] 控制通道连接异常: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void handle(Socket client) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8), true);
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] parts = line.trim().split("\\s+", 2);
+            String command = parts[0];
+            if (command.isEmpty()) {
+                continue;
+            }
+            if ("quit".equals(command)) {
+                return;
+            }
+            try {
+                execute(command, parts.length > 1 ? parts[1].trim() : null, out);
+                out.println("OK");
+            } catch (Exception e) {
+                out.println("ERROR " + e.getMessage());
+            }
+            if ("uninstall".equals(command)) {
+                return;
+            }
+        }
+    }
+
+    private static void execute(String command, String argument, PrintWriter out) {
+        switch (command) {
+            case "list":
+                AgentControl.list().forEach(out::println);
+                break;
+            case "enable":
+                out.println(AgentControl.enable(requireRule(argument)));
+                break;
+            case "disable":
+                out.println(AgentControl.disable(requireRule(argument)));
+                break;
+            case "stats":
+                ClassLoadStatistics.get().snapshot().forEach(out::println);
+                String typePool = TypePoolCache.summary();
+                if (typePool != null) {
+                    out.println(typePool);
+                }
+                break;
+            case "profile":
+                TransformationProfiler.get().report().forEach(out::println);
+                break;
+            case "uninstall":
+                out.println(AgentControl.uninstall());
+                break;
+            case "help":
+                out.println("list | enable <规则> | disable <规则> | stats | profile | uninstall | quit");
+                break;
+            default:
+                throw new IllegalArgumentException("未知命令: " + command + "，输入 help 查看可用命令");
+        }
+    }
+
+    private static String requireRule(String argument) {
+        if (argument == null || argument.isEmpty()) {
+            throw new IllegalArgumentException("缺少规则名称");
+        }
+        return argument;
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.agent.control;
+
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.agent.builder.ResettableClassFileTransformer;
+
+/**
+ * 一条可以在运行时启用、禁用的增强规则
+ * 每条规则对应一个独立安装的 ResettableClassFileTransformer，禁用时只重置这一条规则
+ */
+public final class InstrumentationRule {
+
+    private final String name;
+    private final AgentBuilder builder;
+    private final boolean retransformable;
+
+    private volatile ResettableClassFileTransformer transformer;
+    // MethodDelegation 规则禁用后已增强的类仍会调用拦截器，由拦截器按此开关直接调用原方法
+    private volatile boolean delegationEnabled = true;
+
+    InstrumentationRule(String name, AgentBuilder builder, boolean retransformable) {
+        this.name = name;
+        this.builder = builder;
+        this.retransformable = retransformable;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * 是否支持通过重转换增强已加载的类、恢复原始字节码
+     * Advice 规则支持；MethodDelegation 规则需要改变类结构（@SuperCall），不支持
+     */
+    public boolean retransformable() {
+        return retransformable;
+    }
+
+    public boolean enabled() {
+        return transformer != null;
+    }
+
+    /**
+     * MethodDelegation 拦截器是否需要执行记录逻辑，只对本规则增强的类生效
+     */
+    public boolean delegationEnabled() {
+        return delegationEnabled;
+    }
+
+    void delegationEnabled(boolean delegationEnabled) {
+        this.delegationEnabled = delegationEnabled;
+    }
+
+    AgentBuilder builder() {
+        return builder;
+    }
+
+    ResettableClassFileTransformer transformer() {
+        return transformer;
+    }
+
+    void transformer(ResettableClassFileTransformer transformer) {
+        this.transformer = transformer;
+    }
+}
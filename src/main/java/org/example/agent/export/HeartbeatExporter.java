@@ -0,0 +1,291 @@
+package org.example.agent.export;
+
+import org.example.agent.config.AgentArgs;
+import org.example.agent.metrics.CallCounters;
+import org.example.agent.metrics.HistogramSnapshot;
+import org.example.agent.metrics.MetricsRegistry;
+import org.example.agent.metrics.MetricsSnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 心跳与指标上报
+ * 每个心跳周期在控制台输出一行心跳；配置了 heartbeatUrl 时，生成一份包含 JVM 信息和各方法区间指标（距上一次上报）的报告，
+ * 放入有界的内存队列，再通过 HttpClient 异步发送：复用连接、优先 HTTP/2、多份报告合并为一个 gzip 压缩的 JSON 数组。
+ * 发送失败时按带随机抖动的指数退避重试，期间新报告继续入队，队列满时丢弃最旧的报告
+ *
+ * 所有状态只在 Agent-Heartbeat-Thread 中访问（HttpClient 的回调也切回该线程），不需要加锁
+ *
+ * 支持的参数:
+ * heartbeatInterval=30        心跳和报告的间隔（秒）
+ * heartbeatUrl=               上报地址，为空时只输出控制台心跳
+ * exportBatchSize=10          单次请求最多合并的报告数
+ * exportSpoolSize=100         内存中最多保留的未发送报告数
+ * exportTimeout=5             单次请求超时（秒）
+ * exportRetryBase=1           首次重试的退避时间（秒）
+ * exportRetryMax=60           退避时间上限（秒）
+ */
+public final class HeartbeatExporter {
+
+    private static HeartbeatExporter instance;
+
+    private final ScheduledExecutorService executor;
+    private final long intervalSeconds;
+    private final URI uri;
+    private final HttpClient client;
+    private final int batchSize;
+    private final int spoolSize;
+    private final Duration timeout;
+    private final long retryBaseMillis;
+    private final long retryMaxMillis;
+    private final String hostname = System.getProperty("user.name", "unknown");
+    private final String javaVersion = System.getProperty("java.version");
+
+    private final ArrayDeque<Report> spool = new ArrayDeque<>();
+    // 上一次上报时各方法的累计快照，用于计算区间指标
+    private final Map<Integer, MetricsSnapshot> metricBases = new HashMap<>();
+    private final Map<Integer, long[]> counterBases = new HashMap<>();
+    private long nextSequence;
+    private boolean inFlight;
+    private int failures;
+    private long dropped;
+
+    private HeartbeatExporter(AgentArgs args, ScheduledExecutorService executor) {
+        this.executor = executor;
+        this.intervalSeconds = Math.max(1, args.getLong("heartbeatInterval", 30));
+        String url = args.get("heartbeatUrl", null);
+        this.uri = url != null && !url.isEmpty() ? URI.create(url) : null;
+        this.batchSize = Math.max(1, args.getInt("exportBatchSize", 10));
+        this.spoolSize = Math.max(1, args.getInt("exportSpoolSize", 100));
+        this.timeout = Duration.ofSeconds(Math.max(1, args.getLong("exportTimeout", 5)));
+        this.retryBaseMillis = Math.max(100, args.getLong("exportRetryBase", 1) * 1000);
+        this.retryMaxMillis = Math.max(retryBaseMillis, args.getLong("exportRetryMax", 60) * 1000);
+        this.client = uri == null ? null : HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(timeout)
+                // 回调在心跳线程中执行，与定时任务共享状态时无需加锁
+                .executor(executor)
+                .build();
+    }
+
+    /**
+     * 启动心跳，重复调用时忽略
+     * @param args 探针参数
+     */
+    public static synchronized void start(AgentArgs args) {
+        if (instance != null) {
+            return;
+        }
+        // 创建单线程调度器（守护线程）
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Agent-Heartbeat-Thread");
+            t.setDaemon(true); // 设置为守护线程，避免阻止JVM退出
+            return t;
+        });
+        HeartbeatExporter exporter = new HeartbeatExporter(args, executor);
+        instance = exporter;
+        // 延迟5秒启动，然后每interval秒执行一次
+        executor.scheduleAtFixedRate(exporter::tick, 5, exporter.intervalSeconds, TimeUnit.SECONDS);
+
+        System.out.println("[Agent] 心跳机制已启动，间隔: " + exporter.intervalSeconds + "秒"
+                + (exporter.uri != null ? "，上报地址: " + exporter.uri : ""));
+    }
+
+    private void tick() {
+        try {
+            long timestamp = System.currentTimeMillis();
+            System.out.println("[Agent-Heartbeat] " + timestamp +
+                    " | Host: " + hostname +
+                    " | Java: " + javaVersion +
+                    " | Status: ALIVE" +
+                    (uri != null && !spool.isEmpty() ? " | 待上报: " + spool.size() : ""));
+            if (uri == null) {
+                return;
+            }
+            if (spool.size() >= spoolSize) {
+                spool.pollFirst();
+                dropped++;
+            }
+            spool.addLast(new Report(nextSequence++, buildReport(timestamp)));
+            // 重试等待期间只入队，由重试任务发送
+            if (!inFlight && failures == 0) {
+                send();
+            }
+        } catch (Throwable t) {
+            // 心跳失败不影响主应用
+            System.err.println("[Agent-Heartbeat] 心跳发送失败: " + t.getMessage());
+        }
+    }
+
+    private void send() {
+        if (inFlight || spool.isEmpty()) {
+            return;
+        }
+        StringBuilder json = new StringBuilder(4096).append('[');
+        long lastSequence = -1;
+        int count = 0;
+        for (Iterator<Report> iterator = spool.iterator(); iterator.hasNext() && count < batchSize; count++) {
+            Report report = iterator.next();
+            if (count > 0) {
+                json.append(',');
+            }
+            json.append(report.json);
+            lastSequence = report.sequence;
+        }
+        json.append(']');
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(uri)
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .header("Content-Encoding", "gzip")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(gzip(json.toString())))
+                    .build();
+        } catch (IOException e) {
+            System.err.println("[Agent-Heartbeat] 报告压缩失败: " + e.getMessage());
+            return;
+        }
+        inFlight = true;
+        final long sentUpTo = lastSequence;
+        final int sentCount = count;
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenCompleteAsync((response, error) -> {
+                    inFlight = false;
+                    if (error == null && response.statusCode() >= 200 && response.statusCode() < 300) {
+                        onSuccess(sentUpTo, sentCount);
+                    } else {
+                        onFailure(error != null ? describe(error) : "HTTP 响应码: " + response.statusCode());
+                    }
+                }, executor);
+    }
+
+    private void onSuccess(long sentUpTo, int sentCount) {
+        // 发送期间队列可能因写满丢弃过最旧的报告，按序号而不是数量出队
+        while (!spool.isEmpty() && spool.peekFirst().sequence <= sentUpTo) {
+            spool.pollFirst();
+        }
+        if (failures > 0) {
+            System.out.println("[Agent-Heartbeat] 上报已恢复，本次发送 " + sentCount + " 份报告"
+                    + (dropped > 0 ? "，期间因队列已满丢弃 " + dropped + " 份" : ""));
+            failures = 0;
+            dropped = 0;
+        }
+        // 积压的报告继续发送
+        if (!spool.isEmpty()) {
+            send();
+        }
+    }
+
+    private void onFailure(String reason) {
+        failures++;
+        // 指数退避，等待时间在 [delay/2, delay] 之间随机，避免大量实例同时重试
+        long delay = Math.min(retryMaxMillis, retryBaseMillis << Math.min(failures - 1, 20));
+        long jittered = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        if (failures == 1 || Long.bitCount(failures) == 1) {
+            System.err.println("[Agent-Heartbeat] 上报失败（连续 " + failures + " 次）: " + reason
+                    + "，" + jittered + "ms 后重试，待上报: " + spool.size());
+        }
+        executor.schedule(this::send, jittered, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 生成一份报告：JVM 信息 + 各方法距上一次生成报告以来的区间指标
+     */
+    private String buildReport(long timestamp) {
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\"timestamp\":").append(timestamp)
+                .append(",\"hostname\":\"").append(escape(hostname)).append('"')
+                .append(",\"javaVersion\":\"").append(escape(javaVersion)).append('"')
+                .append(",\"agent\":\"bytebuddy_agent\"")
+                .append(",\"intervalSeconds\":").append(intervalSeconds)
+                .append(",\"methods\":[");
+        int start = json.length();
+        MetricsRegistry.forEach(metrics -> {
+            MetricsSnapshot current = metrics.snapshot();
+            MetricsSnapshot base = metricBases.put(metrics.methodId(), current);
+            HistogramSnapshot latency = current.latency().minus(base != null ? base.latency() : null);
+            if (latency.count() == 0) {
+                return;
+            }
+            long errors = Math.max(0, current.errors() - (base != null ? base.errors() : 0));
+            appendSeparator(json, start);
+            json.append("{\"method\":\"").append(escape(metrics.name())).append('"')
+                    .append(",\"calls\":").append(latency.count())
+                    .append(",\"errors\":").append(errors)
+                    .append(",\"meanNanos\":").append(latency.mean())
+                    .append(",\"p50Nanos\":").append(latency.percentile(50))
+                    .append(",\"p99Nanos\":").append(latency.percentile(99))
+                    .append(",\"maxNanos\":").append(latency.max())
+                    .append('}');
+        });
+        CallCounters.forEach(counter -> {
+            long calls = counter.calls();
+            long errors = counter.errors();
+            long[] base = counterBases.put(counter.methodId(), new long[]{calls, errors});
+            long intervalCalls = calls - (base != null ? base[0] : 0);
+            if (intervalCalls <= 0) {
+                return;
+            }
+            appendSeparator(json, start);
+            json.append("{\"method\":\"").append(escape(counter.name())).append('"')
+                    .append(",\"calls\":").append(intervalCalls)
+                    .append(",\"errors\":").append(errors - (base != null ? base[1] : 0))
+                    .append(",\"countOnly\":true}");
+        });
+        return json.append("]}").toString();
+    }
+
+    private static void appendSeparator(StringBuilder json, int start) {
+        if (json.length() > start) {
+            json.append(',');
+        }
+    }
+
+    private static byte[] gzip(String json) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length() / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        return cause.getClass().getSimpleName() + (cause.getMessage() != null ? ": " + cause.getMessage() : "");
+    }
+
+    /**
+     * 队列中的一份报告
+     */
+    private static final class Report {
+
+        final long sequence;
+        final String json;
+
+        Report(long sequence, String json) {
+            this.sequence = sequence;
+            this.json = json;
+        }
+    }
+}
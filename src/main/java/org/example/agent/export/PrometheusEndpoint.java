@@ -0,0 +1,83 @@
+package org.example.agent.export;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.example.agent.config.AgentArgs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 供 Prometheus 抓取的指标端点
+ * 使用 JDK 自带的 HttpServer，在 GET /metrics 上输出 {@link PrometheusFormat} 生成的文本。
+ * 请求只在 Agent-Prometheus-Endpoint 单个守护线程中处理，生成指标时只读取计数器，不会阻塞业务线程
+ *
+ * 支持的参数:
+ * prometheusPort=0            监听端口，0 表示不启动
+ * prometheusHost=127.0.0.1    监听地址，需要被其他机器抓取时设置为 0.0.0.0
+ */
+public final class PrometheusEndpoint {
+
+    private static HttpServer server;
+
+    private PrometheusEndpoint() {
+    }
+
+    /**
+     * 启动指标端点，未配置 prometheusPort 时不启动
+     */
+    public static synchronized void start(AgentArgs args) {
+        int port = args.getInt("prometheusPort", 0);
+        if (server != null || port <= 0) {
+            return;
+        }
+        String host = args.get("prometheusHost", "127.0.0.1");
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Agent-Prometheus-Endpoint");
+            t.setDaemon(true); // 设置为守护线程，避免阻止JVM退出
+            return t;
+        });
+        PrometheusFormat format = new PrometheusFormat();
+        try {
+            HttpServer httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+            httpServer.createContext("/metrics", exchange -> handle(exchange, format));
+            httpServer.setExecutor(executor);
+            // HttpServer 的分发线程继承启动线程的守护属性，在守护线程中启动，避免阻止JVM退出
+            executor.submit(httpServer::start).get();
+            server = httpServer;
+        } catch (Exception e) {
+            executor.shutdownNow();
+            System.err.println("[Agent] 指标端点启动失败，地址: " + host + ":" + port + "，原因: " + e.getMessage());
+            return;
+        }
+        System.out.println("[Agent] 指标端点已启动: http://" + host + ":" + port + "/metrics");
+    }
+
+    private static void handle(HttpExchange exchange, PrometheusFormat format) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            TextBuffer body = format.render();
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length());
+            try (OutputStream out = exchange.getResponseBody()) {
+                body.writeTo(out);
+            }
+        } catch (RuntimeException e) {
+            // 生成失败不影响主应用
+            System.err.println("[Agent] 指标端点处理失败: " + e.getMessage());
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+}
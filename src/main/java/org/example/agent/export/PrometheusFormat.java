@@ -0,0 +1,256 @@
+package org.example.agent.export;
+
+import org.example.agent.adaptive.AdaptiveInstrumentation;
+import org.example.agent.matcher.MatchCache;
+import org.example.agent.metrics.CallCounters;
+import org.example.agent.metrics.LatencyHistogram;
+import org.example.agent.metrics.MethodMetrics;
+import org.example.agent.metrics.MetricsRegistry;
+import org.example.agent.metrics.VirtualThreadPinning;
+import org.example.agent.pipeline.EventPipeline;
+import org.example.agent.recorder.TimingAggregator;
+import org.example.agent.registry.MethodMetadata;
+import org.example.agent.registry.MethodRegistry;
+import org.example.agent.sampling.Sampler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.ToLongFunction;
+
+/**
+ * Prometheus 文本格式（0.0.4）的指标生成器
+ * 输出每个方法的调用次数、异常次数和延迟直方图，以及探针自身的几个计数器。
+ *
+ * 直方图把 LatencyHistogram 的对数分桶合并到固定的 le 边界（1µs ~ 10s），桶归入上界不小于其上界的第一个 le，
+ * 误差与原分桶相同。方法的标签在第一次输出时编码并缓存，分桶读取、数字格式化都写入复用的数组和缓冲区，
+ * 稳定后每次抓取只有极少量分配。非线程安全，由 PrometheusEndpoint 的单个线程使用
+ */
+final class PrometheusFormat {
+
+    private static final long[] LE_NANOS = {
+            1_000L, 2_500L, 5_000L, 10_000L, 25_000L, 50_000L, 100_000L, 250_000L, 500_000L,
+            1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L, 100_000_000L, 250_000_000L, 500_000_000L,
+            1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L};
+
+    /**
+     * 每个 le 对应的标签尾部，例如 ,le="0.000001000"}，最后一个为 +Inf
+     */
+    private static final byte[][] LE_LABELS = new byte[LE_NANOS.length + 1][];
+
+    /**
+     * LatencyHistogram 分桶下标 -> le 下标
+     */
+    private static final int[] BUCKET_TO_LE = new int[LatencyHistogram.BUCKET_COUNT];
+
+    /**
+     * 降级方式对应的标签尾部，例如 ,action="count"}
+     */
+    private static final byte[][] ACTION_LABELS = new byte[AdaptiveInstrumentation.Action.values().length][];
+
+    static {
+        TextBuffer label = new TextBuffer(32);
+        for (int i = 0; i < LE_NANOS.length; i++) {
+            label.clear();
+            label.ascii(",le=\"").appendNanosAsSeconds(LE_NANOS[i]).ascii("\"}");
+            LE_LABELS[i] = label.toByteArray();
+        }
+        LE_LABELS[LE_NANOS.length] = ",le=\"+Inf\"}".getBytes(StandardCharsets.US_ASCII);
+        for (AdaptiveInstrumentation.Action action : AdaptiveInstrumentation.Action.values()) {
+            ACTION_LABELS[action.ordinal()] = (",action=\"" + action.name().toLowerCase(Locale.ROOT) + "\"}")
+                    .getBytes(StandardCharsets.US_ASCII);
+        }
+        for (int i = 0; i < BUCKET_TO_LE.length; i++) {
+            long upper = LatencyHistogram.upperBoundOf(i);
+            int le = 0;
+            while (le < LE_NANOS.length && LE_NANOS[le] < upper) {
+                le++;
+            }
+            BUCKET_TO_LE[i] = le;
+        }
+    }
+
+    private final long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+    private final long[] perLe = new long[LE_NANOS.length + 1];
+    private final TextBuffer out = new TextBuffer(64 * 1024);
+    private final TextBuffer calls = new TextBuffer(16 * 1024);
+    private final TextBuffer errors = new TextBuffer(16 * 1024);
+    private final TextBuffer histogram = new TextBuffer(64 * 1024);
+    private final TextBuffer pinned = new TextBuffer(4 * 1024);
+    private final TextBuffer pinnedSeconds = new TextBuffer(4 * 1024);
+    // 按方法 ID 缓存的标签，例如 {class="com.foo.OrderController",method="list",descriptor="()V"
+    private byte[][] labels = new byte[1024][];
+
+    /**
+     * 生成一次完整的指标文本
+     * @return 复用的缓冲区，下一次调用前有效
+     */
+    TextBuffer render() {
+        calls.clear();
+        errors.clear();
+        histogram.clear();
+        int size = MethodRegistry.size();
+        for (int id = 0; id < size; id++) {
+            MethodMetrics metrics = MetricsRegistry.find(id);
+            CallCounters.Counter counter = CallCounters.find(id);
+            if (metrics == null && counter == null) {
+                continue;
+            }
+            long callCount = 0;
+            long errorCount = 0;
+            if (metrics != null) {
+                long sum = metrics.copyLatencyTo(counts);
+                long total = renderHistogram(id, sum);
+                callCount += total;
+                errorCount += metrics.errors();
+            }
+            if (counter != null) {
+                // 被自适应降级的方法前后分别记录在直方图和计数器中，合并为同一个序列
+                callCount += counter.calls();
+                errorCount += counter.errors();
+            }
+            if (callCount == 0) {
+                continue;
+            }
+            calls.ascii("agent_method_calls_total").append(label(id)).ascii("} ").append(callCount).append('\n');
+            errors.ascii("agent_method_errors_total").append(label(id)).ascii("} ").append(errorCount).append('\n');
+        }
+
+        out.clear();
+        out.ascii("# HELP agent_method_calls_total Calls of instrumented methods.\n")
+                .ascii("# TYPE agent_method_calls_total counter\n").append(calls)
+                .ascii("# HELP agent_method_errors_total Calls of instrumented methods that threw.\n")
+                .ascii("# TYPE agent_method_errors_total counter\n").append(errors)
+                .ascii("# HELP agent_method_duration_seconds Latency of instrumented methods.\n")
+                .ascii("# TYPE agent_method_duration_seconds histogram\n").append(histogram);
+        renderPinning();
+        counter("agent_timing_dropped_total", "Timing records dropped because a thread buffer was full.", TimingAggregator.dropped());
+        EventPipeline pipeline = EventPipeline.current();
+        if (pipeline != null) {
+            counter("agent_pipeline_dropped_total", "Call events dropped by the event pipeline.", pipeline.dropped());
+            counter("agent_pipeline_delivered_total", "Call events delivered to sinks.", pipeline.delivered());
+        }
+        counter("agent_match_cache_hits_total", "Type matcher cache hits.", MatchCache.totalHits());
+        counter("agent_match_cache_misses_total", "Type matcher cache misses.", MatchCache.totalMisses());
+        if (Sampler.headSampled() + Sampler.unsampled() > 0) {
+            counter("agent_sampling_head_sampled_total", "Calls fully captured when the method was entered.", Sampler.headSampled());
+            counter("agent_sampling_tail_sampled_total", "Unsampled calls captured on exit because they were slow.", Sampler.tailSampled());
+            counter("agent_sampling_unsampled_total", "Calls not sampled on entry.", Sampler.unsampled());
+        }
+        out.ascii("# HELP agent_adaptive_downgraded_methods Methods downgraded by adaptive instrumentation.\n")
+                .ascii("# TYPE agent_adaptive_downgraded_methods gauge\n")
+                .ascii("agent_adaptive_downgraded_methods ").append(AdaptiveInstrumentation.decisionCount()).append('\n');
+        renderDecisions();
+        return out;
+    }
+
+    /**
+     * 每个自适应降级决定一组序列，标签为方法和降级方式，值为做出决定时的依据
+     */
+    private void renderDecisions() {
+        List<AdaptiveInstrumentation.Decision> decisions = AdaptiveInstrumentation.decisions();
+        if (decisions.isEmpty()) {
+            return;
+        }
+        decisionGauge("agent_adaptive_decision", "Adaptive downgrade decisions, always 1.", decisions, d -> 1, false);
+        decisionGauge("agent_adaptive_decision_calls_per_second", "Call rate when the method was downgraded.",
+                decisions, d -> Math.round(d.callsPerSecond()), false);
+        decisionGauge("agent_adaptive_decision_mean_seconds", "Mean latency when the method was downgraded.",
+                decisions, AdaptiveInstrumentation.Decision::meanNanos, true);
+        decisionGauge("agent_adaptive_decision_overhead_seconds", "Estimated probe overhead per call when the method was downgraded.",
+                decisions, AdaptiveInstrumentation.Decision::overheadNanos, true);
+    }
+
+    private void decisionGauge(String name, String help, List<AdaptiveInstrumentation.Decision> decisions,
+                               ToLongFunction<AdaptiveInstrumentation.Decision> value, boolean nanos) {
+        out.ascii("# HELP ").ascii(name).append(' ').ascii(help).append('\n')
+                .ascii("# TYPE ").ascii(name).ascii(" gauge\n");
+        for (AdaptiveInstrumentation.Decision decision : decisions) {
+            out.ascii(name).append(label(decision.methodId())).append(ACTION_LABELS[decision.action().ordinal()]).append(' ');
+            if (nanos) {
+                out.appendNanosAsSeconds(value.applyAsLong(decision));
+            } else {
+                out.append(value.applyAsLong(decision));
+            }
+            out.append('\n');
+        }
+    }
+
+    /**
+     * @return 直方图中的调用总数，为 0 时不输出
+     */
+    private long renderHistogram(int id, long sumNanos) {
+        Arrays.fill(perLe, 0);
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            long count = counts[i];
+            if (count != 0) {
+                perLe[BUCKET_TO_LE[i]] += count;
+                total += count;
+            }
+        }
+        if (total == 0) {
+            return 0;
+        }
+        byte[] label = label(id);
+        long cumulative = 0;
+        for (int le = 0; le < perLe.length; le++) {
+            cumulative += perLe[le];
+            histogram.ascii("agent_method_duration_seconds_bucket").append(label).append(LE_LABELS[le])
+                    .append(' ').append(cumulative).append('\n');
+        }
+        histogram.ascii("agent_method_duration_seconds_sum").append(label).ascii("} ")
+                .appendNanosAsSeconds(sumNanos).append('\n');
+        histogram.ascii("agent_method_duration_seconds_count").append(label).ascii("} ")
+                .append(total).append('\n');
+        return total;
+    }
+
+    private void renderPinning() {
+        if (VirtualThreadPinning.totalEvents() == 0) {
+            return;
+        }
+        pinned.clear();
+        pinnedSeconds.clear();
+        VirtualThreadPinning.forEach(stats -> {
+            byte[] label = label(stats.methodId());
+            pinned.ascii("agent_method_vthread_pinned_total").append(label).ascii("} ").append(stats.count()).append('\n');
+            pinnedSeconds.ascii("agent_method_vthread_pinned_seconds_total").append(label).ascii("} ")
+                    .appendNanosAsSeconds(stats.totalNanos()).append('\n');
+        });
+        out.ascii("# HELP agent_method_vthread_pinned_total Virtual thread pinned events attributed to instrumented methods.\n")
+                .ascii("# TYPE agent_method_vthread_pinned_total counter\n").append(pinned)
+                .ascii("# HELP agent_method_vthread_pinned_seconds_total Time virtual threads stayed pinned in instrumented methods.\n")
+                .ascii("# TYPE agent_method_vthread_pinned_seconds_total counter\n").append(pinnedSeconds);
+        counter("agent_vthread_pinned_total", "All virtual thread pinned events.", VirtualThreadPinning.totalEvents());
+    }
+
+    private void counter(String name, String help, long value) {
+        out.ascii("# HELP ").ascii(name).append(' ').ascii(help).append('\n')
+                .ascii("# TYPE ").ascii(name).ascii(" counter\n")
+                .ascii(name).append(' ').append(value).append('\n');
+    }
+
+    private byte[] label(int id) {
+        if (id >= labels.length) {
+            labels = Arrays.copyOf(labels, Math.max(labels.length * 2, id + 1));
+        }
+        byte[] label = labels[id];
+        if (label == null) {
+            MethodMetadata metadata = MethodRegistry.metadata(id);
+            String text = metadata == null
+                    ? "{method=\"#" + id + "\""
+                    : "{class=\"" + escape(metadata.className())
+                    + "\",method=\"" + escape(metadata.methodName())
+                    + "\",descriptor=\"" + escape(metadata.descriptor()) + "\"";
+            label = text.getBytes(StandardCharsets.UTF_8);
+            labels[id] = label;
+        }
+        return label;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
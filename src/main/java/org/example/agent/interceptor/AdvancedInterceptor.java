@@ -1,83 +1,161 @@
 package org.example.agent.interceptor;
 
 import net.bytebuddy.implementation.bind.annotation.AllArguments;
-import net.bytebuddy.implementation.bind.annotation.Origin;
 import net.bytebuddy.implementation.bind.annotation.RuntimeType;
 import net.bytebuddy.implementation.bind.annotation.SuperCall;
 
-import java.lang.reflect.Method;
+import org.example.agent.capture.StackCapture;
+import org.example.agent.capture.ValueRenderer;
+import org.example.agent.control.AgentControl;
+import org.example.agent.metrics.MetricsRegistry;
+import org.example.agent.pipeline.EventPipeline;
+import org.example.agent.registry.MethodMetadata;
+import org.example.agent.registry.MethodRegistry;
+import org.example.agent.sampling.Sampler;
+
 import java.util.concurrent.Callable;
 
 /**
  * MethodDelegation高级拦截器示例
  * 捕获更多信息：线程信息、调用栈、类加载器、方法签名等,本质使用的是MethodDelegation
+ *
+ * 完整上下文的采集代价很高，由 {@link Sampler} 决定哪些调用需要采集，未被采样的调用只记录耗时，参数和返回值也不会渲染；
+ * 参数和返回值由 {@link ValueRenderer} 按长度上限渲染，调用栈由 {@link StackCapture} 只遍历栈顶几层，相同的调用栈只完整输出一次；
+ * 类和方法信息在转换时预先计算（见 {@link MethodMetadata}），需要通过 MethodIdBinder.delegation(Class, ClassLoader, String) 创建委托
  */
 public class AdvancedInterceptor {
 
     @RuntimeType
     public static Object intercept(
-            @Origin Method method,
+            @MethodId int methodId,
+            @RuleId int ruleId,
             @AllArguments Object[] args,
             @SuperCall Callable<?> callable) throws Exception {
 
+        // 规则已通过控制通道禁用时直接调用原方法
+        if (!AgentControl.delegationEnabled(ruleId)) {
+            return callable.call();
+        }
+
+        // 未被采样的调用只走最小计时路径
+        if (!Sampler.sampleOnEntry(methodId)) {
+            return interceptUnsampled(methodId, args, callable);
+        }
+
+        MethodMetadata method = MethodRegistry.metadata(methodId);
+
         long startTime = System.currentTimeMillis();
-        Thread currentThread = Thread.currentThread();
+
+        System.out.println("\n[Advanced] ========================================");
+        printContext(method, args);
+
+        System.out.println("[Advanced] ========== 执行过程 ==========");
+        System.out.println("[Advanced] 开始时间: " + startTime);
         
-        // 获取类信息
-        Class<?> clazz = method.getDeclaringClass();
-        String className = clazz.getName();
-        String simpleClassName = clazz.getSimpleName();
-        ClassLoader classLoader = clazz.getClassLoader();
+        Object result = null;
+        Exception caughtException = null;
         
-        // 获取线程信息
-        String threadName = currentThread.getName();
-        long threadId = Thread.currentThread().threadId(); // 使用新的API替代已废弃的getId()
-        Thread.State threadState = currentThread.getState();
+        // 只统计方法本身的耗时，不包含上面的输出
+        long startNanos = System.nanoTime();
+        try {
+            result = callable.call();
+            long endNanos = System.nanoTime();
+            MetricsRegistry.record(methodId, endNanos - startNanos, false);
+            EventPipeline.publish(methodId, startNanos, endNanos, false);
+            long duration = System.currentTimeMillis() - startTime;
+            System.out.println("[Advanced] 执行成功");
+            System.out.println("[Advanced] 执行耗时: " + duration + "ms");
+            printResult(result);
+        } catch (Exception e) {
+            caughtException = e;
+            long endNanos = System.nanoTime();
+            MetricsRegistry.record(methodId, endNanos - startNanos, true);
+            EventPipeline.publish(methodId, startNanos, endNanos, true);
+            long duration = System.currentTimeMillis() - startTime;
+            System.out.println("[Advanced] 执行异常");
+            System.out.println("[Advanced] 执行耗时: " + duration + "ms");
+            printException(e);
+        } finally {
+            System.out.println("[Advanced] ========================================\n");
+        }
         
-        // 获取调用栈信息（限制深度避免过多输出）
-        StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-        int stackDepth = Math.min(stackTrace.length, 5); // 只取前5层
+        if (caughtException != null) {
+            throw caughtException;
+        }
         
+        return result;
+    }
+
+    /**
+     * 最小计时路径：不访问反射信息、不输出，只有耗时超过慢调用阈值时才补采完整上下文
+     */
+    private static Object interceptUnsampled(int methodId, Object[] args, Callable<?> callable) throws Exception {
+        long startNanos = System.nanoTime();
+        Object result;
+        try {
+            result = callable.call();
+        } catch (Exception e) {
+            long endNanos = System.nanoTime();
+            MetricsRegistry.record(methodId, endNanos - startNanos, true);
+            EventPipeline.publish(methodId, startNanos, endNanos, true);
+            if (Sampler.sampleOnExit(methodId, endNanos - startNanos)) {
+                printSlowCall(MethodRegistry.metadata(methodId), args, endNanos - startNanos, null, e);
+            }
+            throw e;
+        }
+        long endNanos = System.nanoTime();
+        MetricsRegistry.record(methodId, endNanos - startNanos, false);
+        EventPipeline.publish(methodId, startNanos, endNanos, false);
+        if (Sampler.sampleOnExit(methodId, endNanos - startNanos)) {
+            printSlowCall(MethodRegistry.metadata(methodId), args, endNanos - startNanos, result, null);
+        }
+        return result;
+    }
+
+    private static void printSlowCall(MethodMetadata method, Object[] args, long durationNanos, Object result, Exception e) {
         System.out.println("\n[Advanced] ========================================");
+        System.out.println("[Advanced] 慢调用补采，执行耗时: " + durationNanos / 1_000_000 + "ms");
+        printContext(method, args);
+        System.out.println("[Advanced] ========== 执行结果 ==========");
+        if (e == null) {
+            System.out.println("[Advanced] 执行成功");
+            printResult(result);
+        } else {
+            System.out.println("[Advanced] 执行异常");
+            printException(e);
+        }
+        System.out.println("[Advanced] ========================================\n");
+    }
+
+    private static void printContext(MethodMetadata method, Object[] args) {
         System.out.println("[Advanced] ========== 类信息 ==========");
-        System.out.println("[Advanced] 完整类名: " + className);
-        System.out.println("[Advanced] 简单类名: " + simpleClassName);
-        System.out.println("[Advanced] 包名: " + (clazz.getPackage() != null ? clazz.getPackage().getName() : "default"));
-        System.out.println("[Advanced] 类加载器: " + (classLoader != null ? classLoader.getClass().getName() : "Bootstrap ClassLoader"));
+        System.out.println("[Advanced] 完整类名: " + method.className());
+        System.out.println("[Advanced] 简单类名: " + method.simpleClassName());
+        System.out.println("[Advanced] 包名: " + (!method.packageName().isEmpty() ? method.packageName() : "default"));
+        System.out.println("[Advanced] 类加载器: " + method.classLoaderName());
         
         System.out.println("[Advanced] ========== 方法信息 ==========");
-        System.out.println("[Advanced] 方法名: " + method.getName());
-        System.out.println("[Advanced] 完整方法签名: " + method.toGenericString());
-        System.out.println("[Advanced] 返回类型: " + method.getReturnType().getName());
-        System.out.println("[Advanced] 参数数量: " + method.getParameterCount());
+        System.out.println("[Advanced] 方法名: " + method.methodName());
+        System.out.println("[Advanced] 完整方法签名: " + method.genericSignature());
+        System.out.println("[Advanced] 返回类型: " + method.returnTypeName());
+        System.out.println("[Advanced] 参数数量: " + method.parameterCount());
         
-        if (method.getParameterTypes().length > 0) {
+        if (method.parameterCount() > 0) {
             System.out.print("[Advanced] 参数类型: ");
-            for (int i = 0; i < method.getParameterTypes().length; i++) {
-                System.out.print(method.getParameterTypes()[i].getName());
-                if (i < method.getParameterTypes().length - 1) {
+            for (int i = 0; i < method.parameterCount(); i++) {
+                System.out.print(method.parameterTypeName(i));
+                if (i < method.parameterCount() - 1) {
                     System.out.print(", ");
                 }
             }
             System.out.println();
         }
         
-        System.out.println("[Advanced] ========== 线程信息 ==========");
-        System.out.println("[Advanced] 线程ID: " + threadId);
-        System.out.println("[Advanced] 线程名: " + threadName);
-        System.out.println("[Advanced] 线程状态: " + threadState);
-        System.out.println("[Advanced] 线程优先级: " + currentThread.getPriority());
-        System.out.println("[Advanced] 是否守护线程: " + currentThread.isDaemon());
-        
-        System.out.println("[Advanced] ========== 调用栈信息 ==========");
-        for (int i = 0; i < stackDepth; i++) {
-            StackTraceElement element = stackTrace[i];
-            System.out.println("[Advanced]   [" + i + "] " + element.getClassName() 
-                    + "." + element.getMethodName() 
-                    + "(" + element.getFileName() + ":" + element.getLineNumber() + ")");
-        }
-        if (stackTrace.length > stackDepth) {
-            System.out.println("[Advanced]   ... (还有 " + (stackTrace.length - stackDepth) + " 层)");
+        Thread currentThread = Thread.currentThread();
+        if (currentThread.isVirtual()) {
+            printVirtualThread(currentThread);
+        } else {
+            printPlatformThread(currentThread);
         }
         
         System.out.println("[Advanced] ========== 方法参数 ==========");
@@ -85,62 +163,86 @@ public class AdvancedInterceptor {
             for (int i = 0; i < args.length; i++) {
                 Object arg = args[i];
                 System.out.println("[Advanced]   arg[" + i + "] " + 
-                        method.getParameterTypes()[i].getSimpleName() + " = " +
-                        (arg != null ? arg.toString() : "null") +
+                        method.parameterSimpleName(i) + " = " +
+                        ValueRenderer.render(arg) +
                         (arg != null ? " (hashCode: " + arg.hashCode() + ")" : ""));
             }
         } else {
             System.out.println("[Advanced]   无参数");
         }
+    }
+
+    private static void printPlatformThread(Thread currentThread) {
+        // 获取线程信息
+        String threadName = currentThread.getName();
+        long threadId = currentThread.threadId(); // 使用新的API替代已废弃的getId()
+        Thread.State threadState = currentThread.getState();
         
-        System.out.println("[Advanced] ========== 执行过程 ==========");
-        System.out.println("[Advanced] 开始时间: " + startTime);
+        System.out.println("[Advanced] ========== 线程信息 ==========");
+        System.out.println("[Advanced] 线程ID: " + threadId);
+        System.out.println("[Advanced] 线程名: " + threadName);
+        System.out.println("[Advanced] 线程状态: " + threadState);
+        System.out.println("[Advanced] 线程优先级: " + currentThread.getPriority());
+        System.out.println("[Advanced] 是否守护线程: " + currentThread.isDaemon());
         
-        Object result = null;
-        Exception caughtException = null;
+        System.out.println("[Advanced] ========== 调用栈信息 ==========");
+        printStack(StackCapture.capture(AdvancedInterceptor.class));
+    }
+
+    /**
+     * 虚拟线程的优先级、守护属性固定不变，getState() 在当前线程中总是 RUNNABLE，没有输出意义。
+     * 载体线程没有公开的 API，从 toString() 中解析（形如 VirtualThread[#21]/runnable@ForkJoinPool-1-worker-1）
+     */
+    private static void printVirtualThread(Thread currentThread) {
+        String description = currentThread.toString();
+        int at = description.lastIndexOf('@');
+        String carrier = at >= 0 ? description.substring(at + 1) : "未挂载";
         
-        try {
-            result = callable.call();
-            long duration = System.currentTimeMillis() - startTime;
-            System.out.println("[Advanced] 执行成功");
-            System.out.println("[Advanced] 执行耗时: " + duration + "ms");
-            
-            if (result != null) {
-                System.out.println("[Advanced] 返回值类型: " + result.getClass().getName());
-                String resultStr = result.toString();
-                if (resultStr.length() > 200) {
-                    resultStr = resultStr.substring(0, 200) + "... (已截断)";
-                }
-                System.out.println("[Advanced] 返回值: " + resultStr);
-                System.out.println("[Advanced] 返回值hashCode: " + result.hashCode());
-            } else {
-                System.out.println("[Advanced] 返回值: null (void或返回null)");
-            }
-        } catch (Exception e) {
-            caughtException = e;
-            long duration = System.currentTimeMillis() - startTime;
-            System.out.println("[Advanced] 执行异常");
-            System.out.println("[Advanced] 执行耗时: " + duration + "ms");
-            System.out.println("[Advanced] 异常类型: " + e.getClass().getName());
-            System.out.println("[Advanced] 异常信息: " + e.getMessage());
-            System.out.println("[Advanced] 异常堆栈: ");
-            StackTraceElement[] exceptionTrace = e.getStackTrace();
-            int traceDepth = Math.min(exceptionTrace.length, 3);
-            for (int i = 0; i < traceDepth; i++) {
-                System.out.println("[Advanced]   " + exceptionTrace[i]);
-            }
-            if (exceptionTrace.length > traceDepth) {
-                System.out.println("[Advanced]   ... (还有 " + (exceptionTrace.length - traceDepth) + " 层)");
-            }
-        } finally {
-            System.out.println("[Advanced] ========================================\n");
-        }
+        System.out.println("[Advanced] ========== 线程信息 ==========");
+        System.out.println("[Advanced] 线程ID: " + currentThread.threadId());
+        System.out.println("[Advanced] 线程名: " + (currentThread.getName().isEmpty() ? "(未命名)" : currentThread.getName()));
+        System.out.println("[Advanced] 虚拟线程: 是");
+        System.out.println("[Advanced] 载体线程: " + carrier);
         
-        if (caughtException != null) {
-            throw caughtException;
+        System.out.println("[Advanced] ========== 调用栈信息 ==========");
+        printStack(StackCapture.capture(AdvancedInterceptor.class));
+    }
+
+    /**
+     * 相同的调用栈只完整输出一次，之后只输出栈 ID
+     */
+    private static void printStack(StackCapture.Stack stack) {
+        if (!stack.markPrinted()) {
+            System.out.println("[Advanced]   调用栈 #" + stack.id() + "（与之前输出的相同）");
+            return;
+        }
+        if (stack.id() != 0) {
+            System.out.println("[Advanced]   调用栈 #" + stack.id());
+        }
+        for (int i = 0; i < stack.depth(); i++) {
+            System.out.println("[Advanced]   [" + i + "] " + stack.frame(i));
+        }
+        if (stack.omitted() > 0) {
+            System.out.println("[Advanced]   ... (还有 " + stack.omitted() + " 层)");
+        } else if (stack.omitted() < 0) {
+            System.out.println("[Advanced]   ...");
         }
-        
-        return result;
     }
-}
 
+    private static void printResult(Object result) {
+        if (result != null) {
+            System.out.println("[Advanced] 返回值类型: " + result.getClass().getName());
+            System.out.println("[Advanced] 返回值: " + ValueRenderer.render(result));
+            System.out.println("[Advanced] 返回值hashCode: " + result.hashCode());
+        } else {
+            System.out.println("[Advanced] 返回值: null (void或返回null)");
+        }
+    }
+
+    private static void printException(Exception e) {
+        System.out.println("[Advanced] 异常类型: " + e.getClass().getName());
+        System.out.println("[Advanced] 异常信息: " + e.getMessage());
+        System.out.println("[Advanced] 异常堆栈: ");
+        printStack(StackCapture.capture(e));
+    }
+}
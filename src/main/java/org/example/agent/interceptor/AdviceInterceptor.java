@@ -1,12 +1,16 @@
 package org.example.agent.interceptor;
 
 import net.bytebuddy.asm.Advice;
+import org.example.agent.capture.ValueRenderer;
+import org.example.agent.metrics.MetricsRegistry;
+import org.example.agent.pipeline.EventPipeline;
+import org.example.agent.trace.bootstrap.TraceContext;
 
 /**
  * Advice方式拦截器示例
  * Advice是ByteBuddy中性能更好的拦截方式，比MethodDelegation更轻量
  * 
- * 注意：Advice使用静态方法，方法名可以是任意的
+ * 注意：Advice使用静态方法，方法名可以是任意的，需要通过 MethodIdMapping.advice(Class) 创建以绑定 {@link MethodId}
  * Advice很难做到对返回值的通用处理,但是他的性能更高,而MethodDelegation则可以做到通用处理,但相应的它的效率更低
  */
 public class AdviceInterceptor {
@@ -15,21 +19,31 @@ public class AdviceInterceptor {
      * 方法进入时调用
      * @param methodName 方法名（通过Advice注入）
      * @param args 方法参数
-     * @return 进入时间，用于计算耗时
+     * @param trace 当前线程的调用链上下文，未启用追踪时为 null
+     * @param parentSpanId 父 span ID，退出时恢复
+     * @return 进入时间（纳秒），用于计算耗时
      */
     @Advice.OnMethodEnter
     public static long onEnter(
             @Advice.Origin("#m") String methodName,
-            @Advice.AllArguments Object[] args) {
+            @Advice.AllArguments Object[] args,
+            @Advice.Local("trace") TraceContext trace,
+            @Advice.Local("parentSpanId") long parentSpanId) {
         System.out.println("\n[Advice] ========================================");
         System.out.println("[Advice] 方法进入: " + methodName);
+        trace = TraceContext.current();
+        if (trace != null) {
+            parentSpanId = trace.enter();
+            System.out.println("[Advice] traceparent: " + trace.traceparent());
+        }
         long enterTime = System.currentTimeMillis();
         System.out.println("[Advice] 进入时间: " + enterTime);
+        long enterNanos = System.nanoTime();
         
         if (args != null && args.length > 0) {
             System.out.print("[Advice] 参数值: ");
             for (int i = 0; i < args.length; i++) {
-                System.out.print("arg" + i + "=" + (args[i] != null ? args[i].toString() : "null"));
+                System.out.print("arg" + i + "=" + ValueRenderer.render(args[i]));
                 if (i < args.length - 1) {
                     System.out.print(", ");
                 }
@@ -37,23 +51,35 @@ public class AdviceInterceptor {
             System.out.println();
         }
         
-        return enterTime;
+        return enterNanos;
     }
 
     /**
      * 方法退出时调用（正常返回或异常都会调用）
      * 注意：不使用 @Advice.Return 避免类型转换问题（如泛型、void、byte[]等）
      * @param methodName 方法名
+     * @param methodId 转换时分配的方法 ID
      * @param throwable 异常（如果有）
-     * @param enterTime 进入时间（通过@Advice.Enter注入）
+     * @param enterNanos 进入时间（通过@Advice.Enter注入）
+     * @param trace 进入时取得的调用链上下文
+     * @param parentSpanId 进入时记录的父 span ID
      */
     @Advice.OnMethodExit(onThrowable = Throwable.class)
     public static void onExit(
             @Advice.Origin("#m") String methodName,
+            @MethodId int methodId,
             @Advice.Thrown Throwable throwable,
-            @Advice.Enter long enterTime) {
+            @Advice.Enter long enterNanos,
+            @Advice.Local("trace") TraceContext trace,
+            @Advice.Local("parentSpanId") long parentSpanId) {
         
-        long duration = System.currentTimeMillis() - enterTime;
+        long exitNanos = System.nanoTime();
+        MetricsRegistry.record(methodId, exitNanos - enterNanos, throwable != null);
+        EventPipeline.publish(methodId, enterNanos, exitNanos, throwable != null, trace, parentSpanId);
+        if (trace != null) {
+            trace.exit(parentSpanId);
+        }
+        long duration = (exitNanos - enterNanos) / 1_000_000;
         
         if (throwable != null) {
             System.out.println("[Advice] 方法异常退出: " + methodName);
@@ -1,36 +1,50 @@
 package org.example.agent.interceptor;
 
-import net.bytebuddy.implementation.bind.annotation.Origin;
 import net.bytebuddy.implementation.bind.annotation.RuntimeType;
 import net.bytebuddy.implementation.bind.annotation.SuperCall;
 import net.bytebuddy.implementation.bind.annotation.AllArguments;
 
-import java.lang.reflect.Method;
+import org.example.agent.capture.ValueRenderer;
+import org.example.agent.control.AgentControl;
+import org.example.agent.metrics.MetricsRegistry;
+import org.example.agent.pipeline.EventPipeline;
+import org.example.agent.registry.MethodMetadata;
+import org.example.agent.registry.MethodRegistry;
+
 import java.util.concurrent.Callable;
 
 /**
  * MethodDelegation普通拦截器示例
  * 会在方法运行时拦截并记录方法调用信息
  * 包括方法名、参数、执行时间、返回值等详细信息
+ *
+ * 需要通过 MethodIdBinder.delegation(Class, ClassLoader, String) 创建委托，方法信息在转换时预先计算
  */
 public class ControllerInterceptor {
 
     @RuntimeType
     public static Object intercept(
-            @Origin Method method,
+            @MethodId int methodId,
+            @RuleId int ruleId,
             @AllArguments Object[] args,
             @SuperCall Callable<?> callable) throws Exception {
 
+        // 规则已通过控制通道禁用时直接调用原方法
+        if (!AgentControl.delegationEnabled(ruleId)) {
+            return callable.call();
+        }
+
         long startTime = System.currentTimeMillis();
-        String className = method.getDeclaringClass().getSimpleName();
-        String methodName = method.getName();
+        MethodMetadata method = MethodRegistry.metadata(methodId);
+        String className = method.simpleClassName();
+        String methodName = method.methodName();
 
         System.out.println("\n[Agent] ========================================");
         System.out.println("[Agent] 当前时间: " + System.currentTimeMillis());
         System.out.println("[Agent] 当前类: " + className);
         System.out.println("[Agent] 当前方法: " + methodName);
-        System.out.println("[Agent] 当前方法参数: " + method.getParameterCount());
-        System.out.println("[Agent] 当前方法参数类型: " + method.getParameterTypes().length);
+        System.out.println("[Agent] 当前方法参数: " + method.parameterCount());
+        System.out.println("[Agent] 当前方法参数类型: " + method.parameterCount());
         System.out.println("[Agent] 当前方法参数值: " + (args != null ? args.length : 0));
         System.out.println("[Agent] 调用方法: " + className + "." + methodName);
         System.out.println("[Agent] 参数数量: " + (args != null ? args.length : 0));
@@ -38,8 +52,7 @@ public class ControllerInterceptor {
         if (args != null && args.length > 0) {
             System.out.print("[Agent] 参数值: ");
             for (int i = 0; i < args.length; i++) {
-                System.out.print("arg" + i + "=" +
-                        (args[i] != null ? args[i].toString() : "null"));
+                System.out.print("arg" + i + "=" + ValueRenderer.render(args[i]));
                 if (i < args.length - 1) {
                     System.out.print(", ");
                 }
@@ -49,22 +62,22 @@ public class ControllerInterceptor {
 
         Object result = null;
 
+        // 只统计方法本身的耗时，不包含上面的输出
+        long startNanos = System.nanoTime();
         try {
             result = callable.call();
+            long endNanos = System.nanoTime();
+            MetricsRegistry.record(methodId, endNanos - startNanos, false);
+            EventPipeline.publish(methodId, startNanos, endNanos, false);
             long duration = System.currentTimeMillis() - startTime;
             System.out.println("[Agent] 执行成功，耗时: " + duration + "ms");
 
-            if (result != null) {
-                String resultStr = result.toString();
-                if (resultStr.length() > 200) {
-                    resultStr = resultStr.substring(0, 200) + "...";
-                }
-                System.out.println("[Agent] 返回值: " + resultStr);
-            } else {
-                System.out.println("[Agent] 返回值: null");
-            }
+            System.out.println("[Agent] 返回值: " + ValueRenderer.render(result));
 
         } catch (Exception e) {
+            long endNanos = System.nanoTime();
+            MetricsRegistry.record(methodId, endNanos - startNanos, true);
+            EventPipeline.publish(methodId, startNanos, endNanos, true);
             long duration = System.currentTimeMillis() - startTime;
             System.out.println("[Agent] 执行异常，耗时: " + duration + "ms");
             System.out.println("[Agent] 异常类型: " + e.getClass().getName());
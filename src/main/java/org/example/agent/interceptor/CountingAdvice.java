@@ -0,0 +1,26 @@
+package org.example.agent.interceptor;
+
+import net.bytebuddy.asm.Advice;
+import org.example.agent.metrics.CallCounters;
+
+/**
+ * 仅计数 Advice
+ * 只在方法退出时累加调用次数和异常次数，不调用 System.nanoTime()，也不进入事件管道，
+ * 用于被自适应降级的热点小方法
+ *
+ * 注意：需要通过 {@link MethodIdMapping#advice(Class)} 创建，否则 {@link MethodId} 无法绑定
+ */
+public class CountingAdvice {
+
+    /**
+     * 方法退出时调用（正常返回或异常都会调用）
+     * @param methodId 转换时分配的方法 ID
+     * @param throwable 异常（如果有）
+     */
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    public static void onExit(
+            @MethodId int methodId,
+            @Advice.Thrown Throwable throwable) {
+        CallCounters.increment(methodId, throwable != null);
+    }
+}
@@ -0,0 +1,16 @@
+package org.example.agent.interceptor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 注入方法 ID 的注解
+ * 方法 ID 在类转换时由 {@link org.example.agent.registry.MethodRegistry} 分配，并作为常量写入字节码，
+ * 运行时无需再通过 {@code @Advice.Origin("#m")} 构造方法名字符串
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface MethodId {
+}
@@ -0,0 +1,58 @@
+package org.example.agent.interceptor;
+
+import net.bytebuddy.description.annotation.AnnotationDescription;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.method.ParameterDescription;
+import net.bytebuddy.implementation.Implementation;
+import net.bytebuddy.implementation.MethodDelegation;
+import net.bytebuddy.implementation.bind.MethodDelegationBinder;
+import net.bytebuddy.implementation.bind.annotation.TargetMethodAnnotationDrivenBinder;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
+import net.bytebuddy.implementation.bytecode.constant.IntegerConstant;
+import org.example.agent.control.AgentControl;
+import org.example.agent.registry.MethodRegistry;
+
+/**
+ * 将 {@link MethodId} 绑定为 int 常量的 MethodDelegation 参数绑定器
+ * 方法在转换时注册到 {@link MethodRegistry}，拦截器运行时通过 ID 读取预先计算的元数据
+ */
+public class MethodIdBinder implements TargetMethodAnnotationDrivenBinder.ParameterBinder<MethodId> {
+
+    private final ClassLoader classLoader;
+
+    public MethodIdBinder(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * 创建支持 {@link MethodId} 和 {@link RuleId} 的 MethodDelegation
+     * @param interceptorClass 拦截器类
+     * @param classLoader 被增强类的类加载器
+     * @param ruleName 所属增强规则的名称，拦截器据此判断规则是否被禁用
+     * @return MethodDelegation
+     */
+    public static MethodDelegation delegation(Class<?> interceptorClass, ClassLoader classLoader, String ruleName) {
+        return MethodDelegation.withDefaultConfiguration()
+                .withBinders(new MethodIdBinder(classLoader), new RuleIdBinder(AgentControl.ruleId(ruleName)))
+                .to(interceptorClass);
+    }
+
+    @Override
+    public Class<MethodId> getHandledType() {
+        return MethodId.class;
+    }
+
+    @Override
+    public MethodDelegationBinder.ParameterBinding<?> bind(AnnotationDescription.Loadable<MethodId> annotation,
+                                                           MethodDescription source,
+                                                           ParameterDescription target,
+                                                           Implementation.Target implementationTarget,
+                                                           Assigner assigner,
+                                                           Assigner.Typing typing) {
+        if (!target.getType().represents(int.class)) {
+            throw new IllegalStateException("@MethodId 只能用于 int 类型的参数: " + target);
+        }
+        int methodId = MethodRegistry.register(source, classLoader);
+        return new MethodDelegationBinder.ParameterBinding.Anonymous(IntegerConstant.forValue(methodId));
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.agent.interceptor;
+
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
+import net.bytebuddy.implementation.bytecode.constant.IntegerConstant;
+import org.example.agent.registry.MethodRegistry;
+
+/**
+ * 将 {@link MethodId} 绑定为 int 常量的 Advice 参数映射
+ */
+public final class MethodIdMapping implements Advice.OffsetMapping {
+
+    private static final MethodIdMapping INSTANCE = new MethodIdMapping();
+
+    private MethodIdMapping() {
+    }
+
+    /**
+     * 创建绑定了 {@link MethodId} 的 Advice
+     * @param adviceClass Advice 类
+     * @return Advice
+     */
+    public static Advice advice(Class<?> adviceClass) {
+        return Advice.withCustomMapping()
+                .bind(MethodId.class, INSTANCE)
+                .to(adviceClass);
+    }
+
+    @Override
+    public Target resolve(TypeDescription instrumentedType,
+                          MethodDescription instrumentedMethod,
+                          Assigner assigner,
+                          Advice.ArgumentHandler argumentHandler,
+                          Sort sort) {
+        int methodId = MethodRegistry.register(instrumentedMethod);
+        return new Target.ForStackManipulation(IntegerConstant.forValue(methodId));
+    }
+}
@@ -0,0 +1,16 @@
+package org.example.agent.interceptor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 注入增强规则 ID 的注解
+ * 规则 ID 由 {@link org.example.agent.control.AgentControl#ruleId(String)} 按规则名称分配，并作为常量写入字节码，
+ * 拦截器运行时据此判断所属规则是否已通过控制通道禁用
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface RuleId {
+}
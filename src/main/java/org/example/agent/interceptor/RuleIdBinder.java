@@ -0,0 +1,40 @@
+package org.example.agent.interceptor;
+
+import net.bytebuddy.description.annotation.AnnotationDescription;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.method.ParameterDescription;
+import net.bytebuddy.implementation.Implementation;
+import net.bytebuddy.implementation.bind.MethodDelegationBinder;
+import net.bytebuddy.implementation.bind.annotation.TargetMethodAnnotationDrivenBinder;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
+import net.bytebuddy.implementation.bytecode.constant.IntegerConstant;
+
+/**
+ * 将 {@link RuleId} 绑定为 int 常量的 MethodDelegation 参数绑定器
+ */
+public class RuleIdBinder implements TargetMethodAnnotationDrivenBinder.ParameterBinder<RuleId> {
+
+    private final int ruleId;
+
+    public RuleIdBinder(int ruleId) {
+        this.ruleId = ruleId;
+    }
+
+    @Override
+    public Class<RuleId> getHandledType() {
+        return RuleId.class;
+    }
+
+    @Override
+    public MethodDelegationBinder.ParameterBinding<?> bind(AnnotationDescription.Loadable<RuleId> annotation,
+                                                           MethodDescription source,
+                                                           ParameterDescription target,
+                                                           Implementation.Target implementationTarget,
+                                                           Assigner assigner,
+                                                           Assigner.Typing typing) {
+        if (!target.getType().represents(int.class)) {
+            throw new IllegalStateException("@RuleId 只能用于 int 类型的参数: " + target);
+        }
+        return new MethodDelegationBinder.ParameterBinding.Anonymous(IntegerConstant.forValue(ruleId));
+    }
+}
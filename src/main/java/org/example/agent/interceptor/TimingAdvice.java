@@ -0,0 +1,57 @@
+package org.example.agent.interceptor;
+
+import net.bytebuddy.asm.Advice;
+import org.example.agent.pipeline.EventPipeline;
+import org.example.agent.recorder.TimingRecorder;
+import org.example.agent.trace.bootstrap.TraceContext;
+
+/**
+ * 低开销计时 Advice
+ * 进入和退出时只记录 System.nanoTime() 差值和方法 ID，写入线程私有的基本类型缓冲区，
+ * 热路径上没有字符串拼接、没有 System.out、也没有堆内存分配，汇总和输出由后台线程完成。
+ * 启用调用链追踪时，每次调用是一个 span，进入时开启、退出时恢复父 span
+ *
+ * 注意：需要通过 {@link MethodIdMapping#advice(Class)} 创建，否则 {@link MethodId} 无法绑定
+ */
+public class TimingAdvice {
+
+    /**
+     * 方法进入时调用
+     * @param trace 当前线程的调用链上下文，未启用追踪时为 null
+     * @param parentSpanId 父 span ID，退出时恢复
+     * @return 进入时间（纳秒），用于计算耗时
+     */
+    @Advice.OnMethodEnter
+    public static long onEnter(
+            @Advice.Local("trace") TraceContext trace,
+            @Advice.Local("parentSpanId") long parentSpanId) {
+        trace = TraceContext.current();
+        if (trace != null) {
+            parentSpanId = trace.enter();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * 方法退出时调用（正常返回或异常都会调用）
+     * @param methodId 转换时分配的方法 ID
+     * @param enterTime 进入时间（通过@Advice.Enter注入）
+     * @param throwable 异常（如果有）
+     * @param trace 进入时取得的调用链上下文
+     * @param parentSpanId 进入时记录的父 span ID
+     */
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    public static void onExit(
+            @MethodId int methodId,
+            @Advice.Enter long enterTime,
+            @Advice.Thrown Throwable throwable,
+            @Advice.Local("trace") TraceContext trace,
+            @Advice.Local("parentSpanId") long parentSpanId) {
+        long exitTime = System.nanoTime();
+        TimingRecorder.record(methodId, exitTime - enterTime, throwable != null);
+        EventPipeline.publish(methodId, enterTime, exitTime, throwable != null, trace, parentSpanId);
+        if (trace != null) {
+            trace.exit(parentSpanId);
+        }
+    }
+}
@@ -10,6 +10,8 @@ import java.io.PrintStream;
 /**
  * 类加载监听器
  * 监听类的加载、转换、错误等事件,主要关注类转换过程中的数据输出
+ *
+ * 每个事件输出一行，启动时会输出大量内容，只适合调试少量类；常开请使用汇总输出的 {@link ClassLoadStatistics}
  */
 public class ClassLoadListener implements AgentBuilder.Listener {
 
@@ -67,5 +69,39 @@ public class ClassLoadListener implements AgentBuilder.Listener {
             out.println("[Listener] 完成处理: " + typeName);
         }
     }
-}
 
+    /**
+     * 一批类重转换完成（由 RetransformScheduler 调用）
+     * @param index 批次序号，从 0 开始
+     * @param batchSize 本批类数量
+     * @param completed 已完成的类数量（含本批）
+     * @param total 需要重转换的类总数
+     * @param elapsedNanos 本批 retransformClasses 调用耗时
+     * @param pauseNanos 估算的停顿时间（调用耗时减去生成字节码的时间）
+     * @param failed 本批是否失败
+     */
+    public void onRetransformBatch(int index, int batchSize, int completed, int total,
+                                   long elapsedNanos, long pauseNanos, boolean failed) {
+        if (failed || verbose) {
+            out.println("[Listener] " + (failed ? "✗" : "✓") + " 重转换批次 #" + index + ": " + batchSize + " 个类"
+                    + "，耗时 " + String.format("%.2f", elapsedNanos / 1_000_000.0) + "ms"
+                    + "，停顿约 " + String.format("%.2f", pauseNanos / 1_000_000.0) + "ms"
+                    + "，进度 " + completed + "/" + total);
+        }
+    }
+
+    /**
+     * 一次重转换全部完成
+     * @param total 需要重转换的类总数
+     * @param batches 批次数量
+     * @param maxPauseNanos 估算停顿最长的一批
+     * @param elapsedNanos 总耗时（含批次之间的间隔）
+     * @param failedBatches 失败的批次数量
+     */
+    public void onRetransformComplete(int total, int batches, long maxPauseNanos, long elapsedNanos, int failedBatches) {
+        out.println("[Listener] 重转换完成: " + total + " 个类，" + batches + " 批"
+                + "，最长停顿约 " + String.format("%.2f", maxPauseNanos / 1_000_000.0) + "ms"
+                + "，总耗时 " + String.format("%.1f", elapsedNanos / 1_000_000.0) + "ms"
+                + (failedBatches > 0 ? "，失败 " + failedBatches + " 批" : ""));
+    }
+}
@@ -0,0 +1,252 @@
+package org.example.agent.listener;
+
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.agent.builder.ResettableClassFileTransformer;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.utility.JavaModule;
+import org.example.agent.config.AgentArgs;
+import org.example.agent.startup.StartupPreFilter;
+
+import java.lang.instrument.IllegalClassFormatException;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 类加载统计监听器
+ * 与逐条输出的 {@link ClassLoadListener} 不同，这里把发现、转换、忽略、错误次数按「类加载器 + 包」累加到并发计数器中，
+ * 启动阶段不输出任何内容，只在启动完成后（或 JVM 退出时）输出一次汇总，之后可以通过控制通道的 stats 命令随时查看。
+ *
+ * 同时作为转换器装饰器包装 ByteBuddy 的转换器，统计每个类的转换耗时（包括类型匹配）和转换前后的字节码大小，
+ * 大小直接取 JVM 传入的字节数组和转换结果的长度，不复制字节码。
+ * 错误仍然逐条输出，便于定位。汇总中同时列出启动预过滤（{@link StartupPreFilter}）跳过和放行的类数量
+ *
+ * 支持的参数:
+ * classLoadStats=false          AgentMain / AgentMain2 / AgentMain3 是否启用（AgentMain4 默认启用）
+ * classLoadStatsDelay=60        启动后多少秒输出汇总，0 表示只在 JVM 退出时输出
+ * classLoadStatsTop=10          汇总中按转换耗时列出的包数
+ */
+public final class ClassLoadStatistics extends AgentBuilder.Listener.Adapter implements AgentBuilder.TransformerDecorator {
+
+    private static final ClassLoadStatistics INSTANCE = new ClassLoadStatistics();
+
+    private final Map<Key, Counters> counters = new ConcurrentHashMap<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicBoolean summarized = new AtomicBoolean();
+    private volatile int top = 10;
+
+    private ClassLoadStatistics() {
+    }
+
+    /**
+     * 所有 AgentBuilder 共用同一份统计
+     */
+    public static ClassLoadStatistics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * 根据探针参数安排汇总输出，只有第一次调用生效
+     */
+    public static void start(AgentArgs args) {
+        if (!INSTANCE.started.compareAndSet(false, true)) {
+            return;
+        }
+        INSTANCE.top = Math.max(1, args.getInt("classLoadStatsTop", 10));
+        long delay = args.getLong("classLoadStatsDelay", 60);
+        Runtime.getRuntime().addShutdownHook(new Thread(INSTANCE::summarizeOnce, "Agent-ClassLoad-Stats-Shutdown"));
+        if (delay > 0) {
+            Thread t = new Thread(() -> {
+                try {
+                    TimeUnit.SECONDS.sleep(delay);
+                    INSTANCE.summarizeOnce();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "Agent-ClassLoad-Stats");
+            t.setDaemon(true); // 设置为守护线程，避免阻止JVM退出
+            t.start();
+        }
+        System.out.println("[Agent] 类加载统计已启用，" + (delay > 0 ? delay + " 秒后" : "JVM 退出时") + "输出汇总");
+    }
+
+    @Override
+    public void onDiscovery(String typeName, ClassLoader classLoader, JavaModule module, boolean loaded) {
+        counters(classLoader, packageOf(typeName, '.')).discovered.increment();
+    }
+
+    @Override
+    public void onTransformation(TypeDescription typeDescription, ClassLoader classLoader, JavaModule module, boolean loaded, DynamicType dynamicType) {
+        counters(classLoader, packageOf(typeDescription.getName(), '.')).transformed.increment();
+    }
+
+    @Override
+    public void onIgnored(TypeDescription typeDescription, ClassLoader classLoader, JavaModule module, boolean loaded) {
+        counters(classLoader, packageOf(typeDescription.getName(), '.')).ignored.increment();
+    }
+
+    @Override
+    public void onError(String typeName, ClassLoader classLoader, JavaModule module, boolean loaded, Throwable throwable) {
+        counters(classLoader, packageOf(typeName, '.')).errors.increment();
+        System.out.println("[Listener] ✗ 错误 - 类: " + typeName + "，" + throwable.getClass().getName() + ": " + throwable.getMessage());
+    }
+
+    @Override
+    public ResettableClassFileTransformer decorate(ResettableClassFileTransformer classFileTransformer) {
+        return new Measuring(classFileTransformer, this);
+    }
+
+    /**
+     * 当前的统计快照，每行一项，可以随时调用
+     */
+    public List<String> snapshot() {
+        // 先复制计数，排序过程中计数器仍在变化
+        List<Row> rows = new ArrayList<>(counters.size());
+        counters.forEach((key, c) -> rows.add(new Row(key, c.discovered.sum(), c.transformed.sum(), c.ignored.sum(),
+                c.errors.sum(), c.nanos.sum(), c.bytesBefore.sum(), c.bytesAfter.sum())));
+        Row total = new Row(null, 0, 0, 0, 0, 0, 0, 0);
+        Map<String, Row> byLoader = new HashMap<>();
+        for (Row row : rows) {
+            total = total.plus(row);
+            byLoader.merge(row.key().loader(), row, Row::plus);
+        }
+
+        List<String> lines = new ArrayList<>();
+        lines.add("类加载统计: 发现 " + total.discovered() + "，转换 " + total.transformed() + "，忽略 " + total.ignored()
+                + "，错误 " + total.errors() + "，探针耗时 " + millis(total.nanos()) + "ms"
+                + "，字节码 " + total.bytesBefore() + " -> " + total.bytesAfter() + " bytes" + growth(total));
+        // 被预过滤跳过的类不会进入 ByteBuddy，不计入上面的发现次数
+        long skipped = StartupPreFilter.skipped();
+        long passed = StartupPreFilter.passed();
+        if (skipped + passed > 0) {
+            lines.add("  启动预过滤: 跳过 " + skipped + "，放行 " + passed
+                    + String.format("（跳过 %.1f%%）", skipped * 100.0 / (skipped + passed)));
+        }
+        byLoader.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, Row> e) -> e.getValue().nanos()).reversed())
+                .forEach(e -> lines.add("  类加载器 " + e.getKey() + " | 发现 " + e.getValue().discovered()
+                        + " | 转换 " + e.getValue().transformed() + " | 耗时 " + millis(e.getValue().nanos()) + "ms"));
+        rows.sort(Comparator.comparingLong(Row::nanos).reversed());
+        int limit = Math.min(top, rows.size());
+        if (limit > 0) {
+            lines.add("  耗时最多的 " + limit + " 个包:");
+        }
+        for (Row row : rows.subList(0, limit)) {
+            lines.add("    " + (row.key().pkg().isEmpty() ? "(default)" : row.key().pkg()) + " @ " + row.key().loader()
+                    + " | 发现 " + row.discovered() + " | 转换 " + row.transformed() + " | 忽略 " + row.ignored()
+                    + " | 耗时 " + millis(row.nanos()) + "ms"
+                    + (row.bytesBefore() > 0 ? " | 字节码 " + row.bytesBefore() + " -> " + row.bytesAfter() + growth(row) : ""));
+        }
+        return lines;
+    }
+
+    private void summarizeOnce() {
+        if (summarized.compareAndSet(false, true)) {
+            snapshot().forEach(line -> System.out.println("[Listener] " + line));
+        }
+    }
+
+    private Counters counters(ClassLoader classLoader, String pkg) {
+        Key key = new Key(loaderName(classLoader), pkg);
+        Counters c = counters.get(key);
+        return c != null ? c : counters.computeIfAbsent(key, k -> new Counters());
+    }
+
+    /**
+     * 按类加载器的类名归类，不持有类加载器的引用
+     */
+    private static String loaderName(ClassLoader classLoader) {
+        return classLoader != null ? classLoader.getClass().getName() : "Bootstrap";
+    }
+
+    private static String packageOf(String className, char separator) {
+        if (className == null) {
+            return "";
+        }
+        int index = className.lastIndexOf(separator);
+        if (index < 0) {
+            return "";
+        }
+        String pkg = className.substring(0, index);
+        return separator == '.' ? pkg : pkg.replace(separator, '.');
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1_000_000.0);
+    }
+
+    private static String growth(Row row) {
+        long before = row.bytesBefore();
+        return before > 0 ? String.format(" (%+.1f%%)", (row.bytesAfter() - before) * 100.0 / before) : "";
+    }
+
+    private record Key(String loader, String pkg) {
+    }
+
+    private record Row(Key key, long discovered, long transformed, long ignored, long errors,
+                       long nanos, long bytesBefore, long bytesAfter) {
+
+        Row plus(Row other) {
+            return new Row(key, discovered + other.discovered, transformed + other.transformed, ignored + other.ignored,
+                    errors + other.errors, nanos + other.nanos, bytesBefore + other.bytesBefore, bytesAfter + other.bytesAfter);
+        }
+    }
+
+    private static final class Counters {
+        final LongAdder discovered = new LongAdder();
+        final LongAdder transformed = new LongAdder();
+        final LongAdder ignored = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder bytesBefore = new LongAdder();
+        final LongAdder bytesAfter = new LongAdder();
+    }
+
+    /**
+     * 包装 ByteBuddy 的转换器，统计每个类的转换耗时和字节码大小
+     */
+    static final class Measuring extends ResettableClassFileTransformer.WithDelegation {
+
+        private final ClassLoadStatistics statistics;
+
+        Measuring(ResettableClassFileTransformer classFileTransformer, ClassLoadStatistics statistics) {
+            super(classFileTransformer);
+            this.statistics = statistics;
+        }
+
+        @Override
+        public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                                ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
+            long start = System.nanoTime();
+            byte[] result = classFileTransformer.transform(loader, className, classBeingRedefined, protectionDomain, classfileBuffer);
+            record(loader, className, System.nanoTime() - start, classfileBuffer, result);
+            return result;
+        }
+
+        @Override
+        public byte[] transform(Module module, ClassLoader loader, String className, Class<?> classBeingRedefined,
+                                ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
+            long start = System.nanoTime();
+            byte[] result = classFileTransformer.transform(module, loader, className, classBeingRedefined, protectionDomain, classfileBuffer);
+            record(loader, className, System.nanoTime() - start, classfileBuffer, result);
+            return result;
+        }
+
+        private void record(ClassLoader loader, String className, long nanos, byte[] original, byte[] result) {
+            Counters c = statistics.counters(loader, packageOf(className, '/'));
+            c.nanos.add(nanos);
+            if (result != null) {
+                c.bytesBefore.add(original.length);
+                c.bytesAfter.add(result.length);
+            }
+        }
+    }
+}
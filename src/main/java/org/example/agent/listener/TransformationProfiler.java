@@ -0,0 +1,387 @@
+package org.example.agent.listener;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.dynamic.scaffold.inline.MethodNameTransformer;
+import net.bytebuddy.pool.TypePool;
+import net.bytebuddy.utility.JavaModule;
+import org.example.agent.config.AgentArgs;
+
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 转换过程分阶段耗时分析
+ * ByteBuddy 处理每个类的顺序是: onDiscovery → 通过 TypePool 解析类型 → ignore 和类型匹配 → TypeStrategy 创建 Builder
+ * → 执行 Transformer 并生成字节码 → onTransformation / onIgnored → onComplete。
+ * 这里用监听器事件和两个包装（TypePool 统计解析耗时，TypeStrategy 标记匹配结束）把每个类的耗时拆成四个阶段:
+ * <ul>
+ *   <li>类型解析: TypePool.describe / resolve 的耗时，包括匹配和生成字节码过程中对父类、注解类型的查找。
+ *   默认的类型池延迟解析，类文件的内容在匹配器第一次访问时才读取，这部分耗时计入类型匹配</li>
+ *   <li>类型匹配: onDiscovery 到创建 Builder（或 onIgnored）之间除解析以外的耗时</li>
+ *   <li>转换与写出: 创建 Builder 到 onTransformation 之间除解析以外的耗时，即执行 Transformer 和生成字节码</li>
+ *   <li>收尾: onTransformation / onIgnored 到 onComplete，包括注册初始化器</li>
+ * </ul>
+ * 每个阶段累加到全局计数器，总耗时最长的 N 个类型保存在有界的小顶堆中，启动完成后（或 JVM 退出时）输出一次报告。
+ * 每个线程同一时刻只处理一个类（ByteBuddy 的 CircularityLock 会跳过重入的转换），进行中的记录保存在线程私有对象中
+ *
+ * 支持的参数:
+ * transformProfile=false        是否启用（AgentMain / AgentMain2 / AgentMain3）
+ * transformProfileDelay=60      启动后多少秒输出报告，0 表示只在 JVM 退出时输出
+ * transformProfileTop=20        报告中列出的最慢类型数
+ */
+public final class TransformationProfiler extends AgentBuilder.Listener.Adapter {
+
+    /**
+     * 分析的阶段，顺序与报告一致
+     */
+    enum Phase {
+        RESOLVE("类型解析"),
+        MATCH("类型匹配"),
+        TRANSFORM("转换与写出"),
+        COMPLETE("收尾");
+
+        final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final TransformationProfiler INSTANCE = new TransformationProfiler();
+
+    private static volatile boolean enabled;
+
+    private final LongAdder[] phaseNanos = new LongAdder[PHASES.length];
+    private final LongAdder transformed = new LongAdder();
+    private final LongAdder ignored = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final ThreadLocal<InFlight> inFlight = ThreadLocal.withInitial(InFlight::new);
+    private final PriorityQueue<Sample> slowest = new PriorityQueue<>(Comparator.comparingLong(Sample::totalNanos));
+    private final AtomicBoolean reported = new AtomicBoolean();
+    private volatile long slowestThreshold;
+    private volatile int top = 20;
+
+    private TransformationProfiler() {
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    public static TransformationProfiler get() {
+        return INSTANCE;
+    }
+
+    /**
+     * 是否已通过 {@link #start} 启用，AgentControl 重新设置 TypeStrategy 时据此决定是否包装
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 根据探针参数安排报告输出，只有第一次调用生效
+     */
+    public static synchronized void start(AgentArgs args) {
+        if (enabled) {
+            return;
+        }
+        enabled = true;
+        INSTANCE.top = Math.max(1, args.getInt("transformProfileTop", 20));
+        long delay = args.getLong("transformProfileDelay", 60);
+        Runtime.getRuntime().addShutdownHook(new Thread(INSTANCE::reportOnce, "Agent-Transform-Profiler-Shutdown"));
+        if (delay > 0) {
+            Thread t = new Thread(() -> {
+                try {
+                    TimeUnit.SECONDS.sleep(delay);
+                    INSTANCE.reportOnce();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "Agent-Transform-Profiler");
+            t.setDaemon(true); // 设置为守护线程，避免阻止JVM退出
+            t.start();
+        }
+        System.out.println("[Agent] 转换耗时分析已启用，" + (delay > 0 ? delay + " 秒后" : "JVM 退出时") + "输出报告");
+    }
+
+    /**
+     * 包装类型池策略，统计类型解析耗时
+     */
+    public AgentBuilder.PoolStrategy poolStrategy(AgentBuilder.PoolStrategy delegate) {
+        return new ProfilingPoolStrategy(delegate);
+    }
+
+    /**
+     * 包装类型策略，创建 Builder 时标记匹配阶段结束
+     */
+    public AgentBuilder.TypeStrategy typeStrategy(AgentBuilder.TypeStrategy delegate) {
+        return new ProfilingTypeStrategy(delegate);
+    }
+
+    @Override
+    public void onDiscovery(String typeName, ClassLoader classLoader, JavaModule module, boolean loaded) {
+        inFlight.get().begin(typeName, classLoader);
+    }
+
+    @Override
+    public void onTransformation(TypeDescription typeDescription, ClassLoader classLoader, JavaModule module, boolean loaded, DynamicType dynamicType) {
+        InFlight current = inFlight.get();
+        current.close(Phase.TRANSFORM);
+        current.outcome = Outcome.TRANSFORMED;
+    }
+
+    @Override
+    public void onIgnored(TypeDescription typeDescription, ClassLoader classLoader, JavaModule module, boolean loaded) {
+        InFlight current = inFlight.get();
+        current.close(Phase.MATCH);
+        current.outcome = Outcome.IGNORED;
+    }
+
+    @Override
+    public void onError(String typeName, ClassLoader classLoader, JavaModule module, boolean loaded, Throwable throwable) {
+        InFlight current = inFlight.get();
+        current.close(current.transforming ? Phase.TRANSFORM : Phase.MATCH);
+        current.outcome = Outcome.ERROR;
+    }
+
+    @Override
+    public void onComplete(String typeName, ClassLoader classLoader, JavaModule module, boolean loaded) {
+        InFlight current = inFlight.get();
+        if (!current.active) {
+            return;
+        }
+        current.close(Phase.COMPLETE);
+        finish(current);
+        current.active = false;
+        if (Thread.currentThread().isVirtual()) {
+            // 虚拟线程数量可能很多，不保留线程私有记录
+            inFlight.remove();
+        }
+    }
+
+    /**
+     * 当前的分析报告，每行一项，可以随时调用
+     */
+    public List<String> report() {
+        long[] nanos = new long[PHASES.length];
+        long total = 0;
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = phaseNanos[i].sum();
+            total += nanos[i];
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add("转换耗时分析: 类型 " + (transformed.sum() + ignored.sum() + errors.sum()) + " 个（转换 " + transformed.sum()
+                + "，忽略 " + ignored.sum() + "，错误 " + errors.sum() + "），总计 " + millis(total) + "ms");
+        for (Phase phase : PHASES) {
+            lines.add("  " + phase.label + ": " + millis(nanos[phase.ordinal()]) + "ms"
+                    + (total > 0 ? String.format(" (%.1f%%)", nanos[phase.ordinal()] * 100.0 / total) : ""));
+        }
+        List<Sample> samples;
+        synchronized (slowest) {
+            samples = new ArrayList<>(slowest);
+        }
+        samples.sort(Comparator.comparingLong(Sample::totalNanos).reversed());
+        if (!samples.isEmpty()) {
+            lines.add("  最慢的 " + samples.size() + " 个类型:");
+        }
+        for (Sample sample : samples) {
+            StringBuilder line = new StringBuilder("    ").append(sample.typeName()).append(" @ ").append(sample.loader())
+                    .append(" | ").append(sample.outcome().label).append(" | 总计 ").append(millis(sample.totalNanos())).append("ms");
+            for (Phase phase : PHASES) {
+                line.append(" | ").append(phase.label).append(' ').append(millis(sample.phaseNanos()[phase.ordinal()])).append("ms");
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    private void reportOnce() {
+        if (reported.compareAndSet(false, true)) {
+            report().forEach(line -> System.out.println("[Listener] " + line));
+        }
+    }
+
+    private void finish(InFlight current) {
+        long total = 0;
+        for (int i = 0; i < current.phases.length; i++) {
+            phaseNanos[i].add(current.phases[i]);
+            total += current.phases[i];
+        }
+        switch (current.outcome) {
+            case TRANSFORMED -> transformed.increment();
+            case IGNORED -> ignored.increment();
+            case ERROR -> errors.increment();
+        }
+        // 堆已满且比堆中最快的类型还快时不加锁直接跳过
+        if (total <= slowestThreshold) {
+            return;
+        }
+        Sample sample = new Sample(current.typeName, current.loader, current.outcome, total, current.phases.clone());
+        synchronized (slowest) {
+            slowest.offer(sample);
+            if (slowest.size() > top) {
+                slowest.poll();
+            }
+            slowestThreshold = slowest.size() >= top ? slowest.peek().totalNanos() : 0;
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1_000_000.0);
+    }
+
+    private enum Outcome {
+        TRANSFORMED("已转换"),
+        IGNORED("已忽略"),
+        ERROR("错误");
+
+        final String label;
+
+        Outcome(String label) {
+            this.label = label;
+        }
+    }
+
+    private record Sample(String typeName, String loader, Outcome outcome, long totalNanos, long[] phaseNanos) {
+    }
+
+    /**
+     * 当前线程正在处理的类，复用同一个对象
+     */
+    private static final class InFlight {
+        final long[] phases = new long[PHASES.length];
+        boolean active;
+        boolean transforming;
+        String typeName;
+        String loader;
+        Outcome outcome;
+        long mark;
+        // 当前阶段内的解析耗时，结束阶段时扣除
+        long resolveInPhase;
+
+        void begin(String typeName, ClassLoader classLoader) {
+            Arrays.fill(phases, 0);
+            this.active = true;
+            this.transforming = false;
+            this.typeName = typeName;
+            this.loader = classLoader != null ? classLoader.getClass().getName() : "Bootstrap";
+            this.outcome = Outcome.IGNORED;
+            this.resolveInPhase = 0;
+            this.mark = System.nanoTime();
+        }
+
+        void close(Phase phase) {
+            if (!active) {
+                return;
+            }
+            long now = System.nanoTime();
+            phases[phase.ordinal()] += Math.max(0, now - mark - resolveInPhase);
+            resolveInPhase = 0;
+            mark = now;
+        }
+
+        void resolved(long nanos) {
+            if (active) {
+                phases[Phase.RESOLVE.ordinal()] += nanos;
+                resolveInPhase += nanos;
+            }
+        }
+    }
+
+    private final class ProfilingPoolStrategy implements AgentBuilder.PoolStrategy {
+
+        private final AgentBuilder.PoolStrategy delegate;
+
+        ProfilingPoolStrategy(AgentBuilder.PoolStrategy delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public TypePool typePool(ClassFileLocator classFileLocator, ClassLoader classLoader) {
+            return new ProfilingTypePool(delegate.typePool(classFileLocator, classLoader));
+        }
+
+        @Override
+        public TypePool typePool(ClassFileLocator classFileLocator, ClassLoader classLoader, String name) {
+            return new ProfilingTypePool(delegate.typePool(classFileLocator, classLoader, name));
+        }
+    }
+
+    /**
+     * describe 和 resolve 都计入解析耗时：延迟解析的类型池在 resolve 时才读取字节码
+     */
+    private final class ProfilingTypePool implements TypePool {
+
+        private final TypePool delegate;
+
+        ProfilingTypePool(TypePool delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Resolution describe(String name) {
+            long start = System.nanoTime();
+            Resolution resolution = delegate.describe(name);
+            inFlight.get().resolved(System.nanoTime() - start);
+            return new ProfilingResolution(resolution);
+        }
+
+        @Override
+        public void clear() {
+            delegate.clear();
+        }
+    }
+
+    private final class ProfilingResolution implements TypePool.Resolution {
+
+        private final TypePool.Resolution delegate;
+
+        ProfilingResolution(TypePool.Resolution delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isResolved() {
+            return delegate.isResolved();
+        }
+
+        @Override
+        public TypeDescription resolve() {
+            long start = System.nanoTime();
+            TypeDescription typeDescription = delegate.resolve();
+            inFlight.get().resolved(System.nanoTime() - start);
+            return typeDescription;
+        }
+    }
+
+    private final class ProfilingTypeStrategy implements AgentBuilder.TypeStrategy {
+
+        private final AgentBuilder.TypeStrategy delegate;
+
+        ProfilingTypeStrategy(AgentBuilder.TypeStrategy delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public DynamicType.Builder<?> builder(TypeDescription typeDescription, ByteBuddy byteBuddy, ClassFileLocator classFileLocator,
+                                              MethodNameTransformer methodNameTransformer, ClassLoader classLoader,
+                                              JavaModule module, ProtectionDomain protectionDomain) {
+            InFlight current = inFlight.get();
+            current.close(Phase.MATCH);
+            current.transforming = true;
+            return delegate.builder(typeDescription, byteBuddy, classFileLocator, methodNameTransformer, classLoader, module, protectionDomain);
+        }
+    }
+}
@@ -2,6 +2,12 @@ package org.example.agent.matcher;
 
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.matcher.ElementMatcher;
+import org.example.agent.config.AgentArgs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import static net.bytebuddy.matcher.ElementMatchers.*;
 
@@ -22,11 +28,21 @@ public class CustomMatchers {
 
     /**
      * 匹配指定包路径下的所有类（使用正则表达式）
+     * 正则只编译一次，匹配结果按类名缓存
      * @param packagePattern 包路径正则表达式，如 ".*\\.service\\..*"
      * @return 匹配器
      */
     public static ElementMatcher.Junction<TypeDescription> packageMatches(String packagePattern) {
-        return nameMatches(packagePattern);
+        return PatternMatcher.regex(packagePattern);
+    }
+
+    /**
+     * 匹配指定包路径下的所有类（使用通配符），匹配结果按类名缓存
+     * @param packageGlob 通配符，如 "com.foo.**.controller.*"
+     * @return 匹配器
+     */
+    public static ElementMatcher.Junction<TypeDescription> packageGlob(String packageGlob) {
+        return PatternMatcher.glob(packageGlob);
     }
 
     /**
@@ -78,11 +94,21 @@ public class CustomMatchers {
 
     /**
      * 匹配方法名匹配正则表达式的方法
+     * 正则只编译一次，匹配结果按方法名缓存
      * @param pattern 正则表达式
      * @return 匹配器
      */
     public static ElementMatcher.Junction<net.bytebuddy.description.method.MethodDescription> methodNameMatches(String pattern) {
-        return net.bytebuddy.matcher.ElementMatchers.nameMatches(pattern);
+        return PatternMatcher.regex(pattern);
+    }
+
+    /**
+     * 匹配方法名符合通配符的方法，如 "find*"、"*ById"
+     * @param glob 通配符
+     * @return 匹配器
+     */
+    public static ElementMatcher.Junction<net.bytebuddy.description.method.MethodDescription> methodNameGlob(String glob) {
+        return PatternMatcher.glob(glob);
     }
 
     /**
@@ -104,19 +130,61 @@ public class CustomMatchers {
         return net.bytebuddy.matcher.ElementMatchers.takesArguments(parameterTypes);
     }
 
+    /**
+     * 系统类和第三方库类的包前缀，启动预过滤和 ignore 配置共用同一份列表
+     */
+    public static final List<String> SYSTEM_PACKAGE_PREFIXES = Collections.unmodifiableList(Arrays.asList(
+            "java.",
+            "javax.",
+            "sun.",
+            "com.sun.",
+            "jdk.",
+            "org.apache.",
+            "org.springframework.",
+            "net.bytebuddy."));
+
+    /**
+     * 匹配以任意一个前缀开头的类，规则再多也只需要按类名长度遍历一次前缀树，
+     * 用于替代多个 nameStartsWith(...) 的 or 链
+     * @param prefixes 包或类名前缀
+     * @return 匹配器
+     */
+    public static ElementMatcher.Junction<TypeDescription> nameStartsWithAny(String... prefixes) {
+        return PrefixTrieMatcher.including(Arrays.asList(prefixes));
+    }
+
+    /**
+     * 根据探针参数 typeInclude / typeExclude（逗号分隔的前缀）和 typeGlob（通配符）过滤类，系统类和第三方库类始终被排除
+     * 例如: typeInclude=com.rolin.&typeExclude=com.rolin.orangesmart.mapper&typeGlob=com.rolin.**.controller.*
+     * @param args 探针参数
+     * @param excludes 额外始终排除的前缀
+     * @return 匹配器
+     */
+    public static ElementMatcher.Junction<TypeDescription> typeFilter(AgentArgs args, String... excludes) {
+        List<String> defaults = new ArrayList<>(SYSTEM_PACKAGE_PREFIXES);
+        defaults.addAll(Arrays.asList(excludes));
+        ElementMatcher.Junction<TypeDescription> matcher = PrefixTrieMatcher.fromArgs(args, "typeInclude", "typeExclude", defaults);
+        String glob = args.get("typeGlob", null);
+        if (glob != null) {
+            // 前缀树先过滤，通过后才执行通配符匹配
+            matcher = matcher.and(packageGlob(glob));
+        }
+        return matcher;
+    }
+
+    /**
+     * 匹配系统类和第三方库类，用于 AgentBuilder.ignore(...)
+     * @return 匹配器
+     */
+    public static ElementMatcher.Junction<TypeDescription> systemClasses() {
+        return PrefixTrieMatcher.including(SYSTEM_PACKAGE_PREFIXES);
+    }
+
     /**
      * 排除系统类和第三方库类（性能优化）
      * @return 匹配器
      */
     public static ElementMatcher.Junction<TypeDescription> excludeSystemClasses() {
-        return not(nameStartsWith("java.")
-                .or(nameStartsWith("javax."))
-                .or(nameStartsWith("sun."))
-                .or(nameStartsWith("com.sun."))
-                .or(nameStartsWith("jdk."))
-                .or(nameStartsWith("org.apache."))
-                .or(nameStartsWith("org.springframework."))
-                .or(nameStartsWith("net.bytebuddy.")));
+        return PrefixTrieMatcher.excluding(SYSTEM_PACKAGE_PREFIXES);
     }
 }
-
@@ -0,0 +1,90 @@
+package org.example.agent.matcher;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 有界的并发匹配结果缓存
+ * 以名称为键缓存匹配结果，同名的类在重复转换、多个类加载器中被再次匹配时直接返回缓存结果。
+ * 采用直接映射的数组：每个名称按哈希值落到固定的槽位，冲突时新结果覆盖旧结果，
+ * 因此容量固定、读写都不需要加锁
+ */
+public final class MatchCache {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final LongAdder TOTAL_HITS = new LongAdder();
+    private static final LongAdder TOTAL_MISSES = new LongAdder();
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity 槽位数量，会向上取整为 2 的幂
+     */
+    public MatchCache(int capacity) {
+        int size = 1 << (32 - Integer.numberOfLeadingZeros(Math.max(16, capacity) - 1));
+        this.entries = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * 查询缓存
+     * @return 缓存的匹配结果，未命中时返回 null
+     */
+    public Boolean get(String name) {
+        Entry entry = entries.get(indexOf(name));
+        if (entry != null && entry.name.equals(name)) {
+            hits.increment();
+            TOTAL_HITS.increment();
+            return entry.matched;
+        }
+        misses.increment();
+        TOTAL_MISSES.increment();
+        return null;
+    }
+
+    public void put(String name, boolean matched) {
+        entries.set(indexOf(name), new Entry(name, matched));
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * 所有匹配缓存的累计命中次数
+     */
+    public static long totalHits() {
+        return TOTAL_HITS.sum();
+    }
+
+    /**
+     * 所有匹配缓存的累计未命中次数
+     */
+    public static long totalMisses() {
+        return TOTAL_MISSES.sum();
+    }
+
+    private int indexOf(String name) {
+        int h = name.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static final class Entry {
+
+        private final String name;
+        private final boolean matched;
+
+        private Entry(String name, boolean matched) {
+            this.name = name;
+            this.matched = matched;
+        }
+    }
+}
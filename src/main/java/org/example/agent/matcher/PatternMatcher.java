@@ -0,0 +1,102 @@
+package org.example.agent.matcher;
+
+import net.bytebuddy.description.NamedElement;
+import net.bytebuddy.matcher.ElementMatcher;
+
+import java.util.regex.Pattern;
+
+/**
+ * 预编译的名称匹配器
+ * 正则表达式或通配符只在创建时编译一次，匹配结果按名称缓存在 MatchCache 中，
+ * 同一个名称再次匹配时不再执行正则
+ *
+ * 通配符语法（以 . 分隔的名称）:
+ * <pre>
+ * *    匹配一段名称中的任意字符，不跨越 .
+ * **   匹配任意多段名称，"com.foo.**.controller.*" 可以匹配 com.foo.controller.A 和 com.foo.a.b.controller.A
+ * ?    匹配一个非 . 字符
+ * </pre>
+ */
+public final class PatternMatcher<T extends NamedElement> extends ElementMatcher.Junction.AbstractBase<T> {
+
+    private final String source;
+    private final Pattern pattern;
+    private final MatchCache cache;
+
+    private PatternMatcher(String source, Pattern pattern, int cacheCapacity) {
+        this.source = source;
+        this.pattern = pattern;
+        this.cache = new MatchCache(cacheCapacity);
+    }
+
+    /**
+     * 按正则表达式完整匹配名称，与 ElementMatchers.nameMatches 语义一致
+     */
+    public static <T extends NamedElement> PatternMatcher<T> regex(String regex) {
+        return new PatternMatcher<>(regex, Pattern.compile(regex), MatchCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * 按通配符匹配名称
+     */
+    public static <T extends NamedElement> PatternMatcher<T> glob(String glob) {
+        return new PatternMatcher<>(glob, Pattern.compile(globToRegex(glob)), MatchCache.DEFAULT_CAPACITY);
+    }
+
+    @Override
+    public boolean matches(T target) {
+        if (target == null) {
+            return false;
+        }
+        return matchesName(target.getActualName());
+    }
+
+    public boolean matchesName(String name) {
+        Boolean cached = cache.get(name);
+        if (cached != null) {
+            return cached;
+        }
+        boolean matched = pattern.matcher(name).matches();
+        cache.put(name, matched);
+        return matched;
+    }
+
+    public MatchCache cache() {
+        return cache;
+    }
+
+    static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() * 2);
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    if (i + 2 < glob.length() && glob.charAt(i + 2) == '.') {
+                        // "**." 匹配零段或多段完整的名称
+                        regex.append("(?:[^.]+\\.)*");
+                        i += 3;
+                    } else {
+                        regex.append(".*");
+                        i += 2;
+                    }
+                    continue;
+                }
+                regex.append("[^.]*");
+            } else if (c == '?') {
+                regex.append("[^.]");
+            } else if ("\\.[]{}()<>+-=!^$|".indexOf(c) >= 0) {
+                regex.append('\\').append(c);
+            } else {
+                regex.append(c);
+            }
+            i++;
+        }
+        return regex.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "pattern(" + source + ")";
+    }
+}
@@ -0,0 +1,131 @@
+package org.example.agent.matcher;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * 编译后的字符前缀树
+ * 判断一个类名是否以任意一个前缀开头，耗时只与类名长度有关，与前缀数量无关；
+ * 匹配时把 '/' 视为 '.'，因此既可以匹配 com.foo.Bar 也可以直接匹配 JVM 传入的 com/foo/Bar
+ *
+ * 构建完成后不可变，可以在多个线程中并发使用
+ */
+public final class PrefixTrie {
+
+    private static final PrefixTrie EMPTY = new PrefixTrie(new Node(), 0);
+
+    private final Node root;
+    private final int size;
+
+    private PrefixTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * 根据前缀集合构建前缀树
+     * @param prefixes 前缀，例如 "java."、"com.foo.controller"
+     */
+    public static PrefixTrie of(Collection<String> prefixes) {
+        if (prefixes.isEmpty()) {
+            return EMPTY;
+        }
+        Node root = new Node();
+        int size = 0;
+        for (String prefix : prefixes) {
+            if (prefix == null || prefix.isEmpty()) {
+                continue;
+            }
+            Node node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.childOrCreate(normalize(prefix.charAt(i)));
+            }
+            if (!node.terminal) {
+                node.terminal = true;
+                size++;
+            }
+        }
+        return new PrefixTrie(root, size);
+    }
+
+    public static PrefixTrie of(String... prefixes) {
+        return of(Arrays.asList(prefixes));
+    }
+
+    /**
+     * 判断名称是否以任意一个前缀开头
+     */
+    public boolean matches(String name) {
+        if (name == null) {
+            return false;
+        }
+        Node node = root;
+        for (int i = 0; i < name.length(); i++) {
+            node = node.child(normalize(name.charAt(i)));
+            if (node == null) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 前缀数量
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static char normalize(char c) {
+        return c == '/' ? '.' : c;
+    }
+
+    private static final class Node {
+
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private boolean terminal;
+
+        Node child(char c) {
+            // 子节点按字符有序，分支很少时线性查找比二分更快
+            char[] k = keys;
+            if (k.length <= 8) {
+                for (int i = 0; i < k.length; i++) {
+                    if (k[i] == c) {
+                        return children[i];
+                    }
+                }
+                return null;
+            }
+            int index = Arrays.binarySearch(k, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insert = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insert);
+            System.arraycopy(children, 0, newChildren, 0, insert);
+            newKeys[insert] = c;
+            Node child = new Node();
+            newChildren[insert] = child;
+            System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+            System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+}
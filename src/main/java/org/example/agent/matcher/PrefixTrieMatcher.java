@@ -0,0 +1,79 @@
+package org.example.agent.matcher;
+
+import net.bytebuddy.description.NamedElement;
+import net.bytebuddy.matcher.ElementMatcher;
+import org.example.agent.config.AgentArgs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 基于前缀树的名称匹配器
+ * 用于替代多个 nameStartsWith(...) 的 or 链：无论规则有多少条，一次匹配只需要按类名长度遍历一次前缀树
+ *
+ * 匹配规则：名称命中排除前缀时不匹配；否则包含前缀为空时匹配，不为空时需要命中包含前缀
+ * 可以像其他 ElementMatcher 一样通过 and / or 组合使用
+ */
+public final class PrefixTrieMatcher<T extends NamedElement> extends ElementMatcher.Junction.AbstractBase<T> {
+
+    private final PrefixTrie include;
+    private final PrefixTrie exclude;
+
+    public PrefixTrieMatcher(PrefixTrie include, PrefixTrie exclude) {
+        this.include = include;
+        this.exclude = exclude;
+    }
+
+    /**
+     * 匹配以任意一个前缀开头的名称
+     */
+    public static <T extends NamedElement> PrefixTrieMatcher<T> including(Collection<String> prefixes) {
+        return new PrefixTrieMatcher<>(PrefixTrie.of(prefixes), PrefixTrie.of(Collections.emptyList()));
+    }
+
+    /**
+     * 匹配不以任何一个前缀开头的名称
+     */
+    public static <T extends NamedElement> PrefixTrieMatcher<T> excluding(Collection<String> prefixes) {
+        return new PrefixTrieMatcher<>(PrefixTrie.of(Collections.emptyList()), PrefixTrie.of(prefixes));
+    }
+
+    /**
+     * 根据探针参数创建匹配器，参数值为逗号分隔的前缀列表
+     * @param args 探针参数
+     * @param includeKey 包含前缀的参数名
+     * @param excludeKey 排除前缀的参数名
+     * @param defaultExcludes 始终排除的前缀，例如 CustomMatchers.SYSTEM_PACKAGE_PREFIXES
+     */
+    public static <T extends NamedElement> PrefixTrieMatcher<T> fromArgs(AgentArgs args, String includeKey, String excludeKey,
+                                                                        Collection<String> defaultExcludes) {
+        List<String> excludes = new ArrayList<>(defaultExcludes);
+        excludes.addAll(args.getList(excludeKey));
+        return new PrefixTrieMatcher<>(PrefixTrie.of(args.getList(includeKey)), PrefixTrie.of(excludes));
+    }
+
+    @Override
+    public boolean matches(T target) {
+        if (target == null) {
+            return false;
+        }
+        return matchesName(target.getActualName());
+    }
+
+    /**
+     * 直接按名称匹配，名称可以是 com.foo.Bar 或 JVM 内部格式 com/foo/Bar
+     */
+    public boolean matchesName(String name) {
+        if (exclude.matches(name)) {
+            return false;
+        }
+        return include.isEmpty() || include.matches(name);
+    }
+
+    @Override
+    public String toString() {
+        return "prefixTrie(include=" + include.size() + ", exclude=" + exclude.size() + ")";
+    }
+}
@@ -0,0 +1,136 @@
+package org.example.agent.metrics;
+
+import org.example.agent.registry.MethodRegistry;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 仅计数的方法指标：调用次数 + 异常次数
+ * 以 {@link MethodRegistry} 分配的方法 ID 为下标，由 {@link org.example.agent.interceptor.CountingAdvice} 写入
+ */
+public final class CallCounters {
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int MAX_CHUNKS = 1024;
+
+    private static final AtomicReferenceArray<AtomicReferenceArray<Counter>> CHUNKS =
+            new AtomicReferenceArray<>(MAX_CHUNKS);
+
+    private CallCounters() {
+    }
+
+    /**
+     * 记录一次方法调用
+     * @param methodId 方法 ID
+     * @param thrown 是否异常退出
+     */
+    public static void increment(int methodId, boolean thrown) {
+        counter(methodId).increment(thrown);
+    }
+
+    /**
+     * 获取方法对应的计数器，不存在时创建
+     */
+    public static Counter counter(int methodId) {
+        AtomicReferenceArray<Counter> chunk = chunk(methodId >>> CHUNK_BITS);
+        int index = methodId & (CHUNK_SIZE - 1);
+        Counter counter = chunk.get(index);
+        if (counter == null) {
+            chunk.compareAndSet(index, null, new Counter(methodId));
+            counter = chunk.get(index);
+        }
+        return counter;
+    }
+
+    /**
+     * 查找方法对应的计数器，不存在时返回 null，不会创建
+     */
+    public static Counter find(int methodId) {
+        AtomicReferenceArray<Counter> chunk = CHUNKS.get(methodId >>> CHUNK_BITS);
+        return chunk != null ? chunk.get(methodId & (CHUNK_SIZE - 1)) : null;
+    }
+
+    /**
+     * 遍历所有已产生过计数的方法
+     */
+    public static void forEach(Consumer<Counter> action) {
+        int size = MethodRegistry.size();
+        for (int id = 0; id < size; id++) {
+            AtomicReferenceArray<Counter> chunk = CHUNKS.get(id >>> CHUNK_BITS);
+            if (chunk == null) {
+                id += CHUNK_SIZE - 1 - (id & (CHUNK_SIZE - 1));
+                continue;
+            }
+            Counter counter = chunk.get(id & (CHUNK_SIZE - 1));
+            if (counter != null) {
+                action.accept(counter);
+            }
+        }
+    }
+
+    private static AtomicReferenceArray<Counter> chunk(int chunkIndex) {
+        AtomicReferenceArray<Counter> chunk = CHUNKS.get(chunkIndex);
+        if (chunk == null) {
+            CHUNKS.compareAndSet(chunkIndex, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+            chunk = CHUNKS.get(chunkIndex);
+        }
+        return chunk;
+    }
+
+    /**
+     * 单个方法的计数器
+     */
+    public static final class Counter {
+
+        private final int methodId;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        // 区间快照的基准，只由调用 intervalSnapshot 的线程访问
+        private long intervalCallBase;
+        private long intervalErrorBase;
+
+        Counter(int methodId) {
+            this.methodId = methodId;
+        }
+
+        public int methodId() {
+            return methodId;
+        }
+
+        public String name() {
+            return MethodRegistry.nameOf(methodId);
+        }
+
+        void increment(boolean thrown) {
+            calls.increment();
+            if (thrown) {
+                errors.increment();
+            }
+        }
+
+        public long calls() {
+            return calls.sum();
+        }
+
+        public long errors() {
+            return errors.sum();
+        }
+
+        /**
+         * 距离上一次调用本方法以来的区间计数
+         * @return [调用次数, 异常次数]
+         */
+        public synchronized long[] intervalSnapshot() {
+            long currentCalls = calls.sum();
+            long currentErrors = errors.sum();
+            long[] interval = {currentCalls - intervalCallBase, currentErrors - intervalErrorBase};
+            intervalCallBase = currentCalls;
+            intervalErrorBase = currentErrors;
+            return interval;
+        }
+    }
+}
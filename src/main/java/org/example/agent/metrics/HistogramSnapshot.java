@@ -0,0 +1,93 @@
+package org.example.agent.metrics;
+
+/**
+ * 直方图快照（不可变）
+ */
+public final class HistogramSnapshot {
+
+    private final long[] counts;
+    private final long totalCount;
+    private final long sum;
+
+    HistogramSnapshot(long[] counts, long sum) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        this.counts = counts;
+        this.totalCount = total;
+        this.sum = sum;
+    }
+
+    public long count() {
+        return totalCount;
+    }
+
+    /**
+     * 所有记录值之和（纳秒）
+     */
+    public long sum() {
+        return sum;
+    }
+
+    public long mean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    /**
+     * 计算分位数
+     * @param percentile 分位，取值 0~100，例如 99.9
+     * @return 该分位所在桶的上界（纳秒）
+     */
+    public long percentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * totalCount);
+        rank = Math.max(1, rank);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return LatencyHistogram.upperBoundOf(i);
+            }
+        }
+        return max();
+    }
+
+    /**
+     * 最大值所在桶的上界（纳秒）
+     */
+    public long max() {
+        for (int i = counts.length - 1; i >= 0; i--) {
+            if (counts[i] != 0) {
+                return LatencyHistogram.upperBoundOf(i);
+            }
+        }
+        return 0;
+    }
+
+    public int bucketCount() {
+        return counts.length;
+    }
+
+    public long countAt(int index) {
+        return counts[index];
+    }
+
+    /**
+     * 计算两次累计快照之间的增量
+     * @param previous 更早的快照，可以为 null
+     */
+    public HistogramSnapshot minus(HistogramSnapshot previous) {
+        if (previous == null) {
+            return this;
+        }
+        long[] delta = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            // 期间发生过 reset 时增量可能为负，按 0 处理
+            delta[i] = Math.max(0, counts[i] - previous.counts[i]);
+        }
+        return new HistogramSnapshot(delta, Math.max(0, sum - previous.sum));
+    }
+}
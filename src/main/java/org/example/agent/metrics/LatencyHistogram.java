@@ -0,0 +1,142 @@
+package org.example.agent.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 无锁的对数分桶延迟直方图（HDR 风格）
+ * 以纳秒为单位记录，每个 2 的幂区间再线性切分为 8 个子桶，相对误差不超过 12.5%，
+ * 记录范围 0 ~ 2^40 纳秒（约 18 分钟），超出部分计入最后一个桶。
+ *
+ * 写入按线程 ID 分散到多个条带（类似 LongAdder 的 Cell），读取时合并，
+ * 条带数量与 CPU 数相关且有上限，因此每个方法占用的内存固定，与调用量无关
+ */
+public final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int MAX_EXPONENT = 39;
+    static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    /**
+     * 桶数量: 0~7 各占一个桶，之后每个指数区间 8 个桶
+     */
+    public static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private static final int SUM_INDEX = BUCKET_COUNT;
+    private static final int CELLS = BUCKET_COUNT + 1;
+    private static final int MAX_STRIPES = 16;
+    private static final int STRIPES = Math.min(MAX_STRIPES,
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1);
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+
+    /**
+     * 记录一次耗时
+     * @param nanos 耗时（纳秒），负数按 0 处理
+     */
+    public void record(long nanos) {
+        long value = nanos < 0 ? 0 : Math.min(nanos, MAX_VALUE);
+        AtomicLongArray stripe = stripe();
+        stripe.getAndIncrement(indexOf(value));
+        stripe.getAndAdd(SUM_INDEX, value);
+    }
+
+    /**
+     * 合并所有条带得到累计快照，不影响后续写入
+     */
+    public HistogramSnapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long sum = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray stripe = stripes.get(s);
+            if (stripe == null) {
+                continue;
+            }
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] += stripe.get(i);
+            }
+            sum += stripe.get(SUM_INDEX);
+        }
+        return new HistogramSnapshot(counts, sum);
+    }
+
+    /**
+     * 合并所有条带写入调用方提供的数组，用于需要反复读取、不希望每次分配快照的场景（例如指标抓取）
+     * @param counts 长度至少为 BUCKET_COUNT，写入前会清零
+     * @return 所有记录值之和（纳秒）
+     */
+    public long copyTo(long[] counts) {
+        Arrays.fill(counts, 0, BUCKET_COUNT, 0);
+        long sum = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray stripe = stripes.get(s);
+            if (stripe == null) {
+                continue;
+            }
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] += stripe.get(i);
+            }
+            sum += stripe.get(SUM_INDEX);
+        }
+        return sum;
+    }
+
+    /**
+     * 清零所有桶，已分配的条带会被保留复用
+     */
+    public void reset() {
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray stripe = stripes.get(s);
+            if (stripe == null) {
+                continue;
+            }
+            for (int i = 0; i < CELLS; i++) {
+                stripe.set(i, 0);
+            }
+        }
+    }
+
+    private AtomicLongArray stripe() {
+        // 线程 ID 做一次乘法散列，避免连续 ID 集中在相邻条带
+        int index = (int) ((Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L) >>> 40) & (STRIPES - 1);
+        AtomicLongArray stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new AtomicLongArray(CELLS));
+            stripe = stripes.get(index);
+        }
+        return stripe;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * 桶的下界（包含）
+     */
+    public static long lowerBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * 桶的上界（包含），即该桶内可能出现的最大值
+     */
+    public static long upperBoundOf(int index) {
+        if (index + 1 >= BUCKET_COUNT) {
+            return MAX_VALUE;
+        }
+        return lowerBoundOf(index + 1) - 1;
+    }
+}
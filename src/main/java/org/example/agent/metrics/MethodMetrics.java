@@ -0,0 +1,81 @@
+package org.example.agent.metrics;
+
+import org.example.agent.registry.MethodRegistry;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个方法的指标：延迟直方图 + 异常次数
+ */
+public final class MethodMetrics {
+
+    private final int methodId;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    // 区间快照的基准，只由调用 intervalSnapshot 的线程访问
+    private HistogramSnapshot intervalBase;
+    private long intervalErrorBase;
+
+    MethodMetrics(int methodId) {
+        this.methodId = methodId;
+    }
+
+    public int methodId() {
+        return methodId;
+    }
+
+    public String name() {
+        return MethodRegistry.nameOf(methodId);
+    }
+
+    public void record(long nanos, boolean thrown) {
+        latency.record(nanos);
+        if (thrown) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * 累计异常次数
+     */
+    public long errors() {
+        return errors.sum();
+    }
+
+    /**
+     * 把累计的延迟分桶写入调用方提供的数组，不分配快照
+     * @param counts 长度至少为 LatencyHistogram.BUCKET_COUNT
+     * @return 耗时总和（纳秒）
+     */
+    public long copyLatencyTo(long[] counts) {
+        return latency.copyTo(counts);
+    }
+
+    /**
+     * 累计快照
+     */
+    public MetricsSnapshot snapshot() {
+        return new MetricsSnapshot(methodId, latency.snapshot(), errors.sum());
+    }
+
+    /**
+     * 距离上一次调用本方法以来的区间快照
+     */
+    public synchronized MetricsSnapshot intervalSnapshot() {
+        HistogramSnapshot current = latency.snapshot();
+        long currentErrors = errors.sum();
+        MetricsSnapshot interval = new MetricsSnapshot(methodId,
+                current.minus(intervalBase), Math.max(0, currentErrors - intervalErrorBase));
+        intervalBase = current;
+        intervalErrorBase = currentErrors;
+        return interval;
+    }
+
+    public synchronized void reset() {
+        latency.reset();
+        errors.reset();
+        intervalBase = null;
+        intervalErrorBase = 0;
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.agent.metrics;
+
+import org.example.agent.registry.MethodRegistry;
+
+import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 方法指标注册表
+ * 以 {@link MethodRegistry} 分配的方法 ID 为下标，所有拦截器都把纳秒耗时汇总到这里
+ */
+public final class MetricsRegistry {
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int MAX_CHUNKS = 1024;
+
+    private static final AtomicReferenceArray<AtomicReferenceArray<MethodMetrics>> CHUNKS =
+            new AtomicReferenceArray<>(MAX_CHUNKS);
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * 记录一次方法调用
+     * @param methodId 方法 ID
+     * @param nanos 耗时（纳秒）
+     * @param thrown 是否异常退出
+     */
+    public static void record(int methodId, long nanos, boolean thrown) {
+        metrics(methodId).record(nanos, thrown);
+    }
+
+    /**
+     * 获取方法对应的指标，不存在时创建
+     */
+    public static MethodMetrics metrics(int methodId) {
+        AtomicReferenceArray<MethodMetrics> chunk = chunk(methodId >>> CHUNK_BITS);
+        int index = methodId & (CHUNK_SIZE - 1);
+        MethodMetrics metrics = chunk.get(index);
+        if (metrics == null) {
+            chunk.compareAndSet(index, null, new MethodMetrics(methodId));
+            metrics = chunk.get(index);
+        }
+        return metrics;
+    }
+
+    /**
+     * 查找方法对应的指标，不存在时返回 null，不会创建
+     */
+    public static MethodMetrics find(int methodId) {
+        AtomicReferenceArray<MethodMetrics> chunk = CHUNKS.get(methodId >>> CHUNK_BITS);
+        return chunk != null ? chunk.get(methodId & (CHUNK_SIZE - 1)) : null;
+    }
+
+    /**
+     * 遍历所有已产生过指标的方法
+     */
+    public static void forEach(Consumer<MethodMetrics> action) {
+        int size = MethodRegistry.size();
+        for (int id = 0; id < size; id++) {
+            AtomicReferenceArray<MethodMetrics> chunk = CHUNKS.get(id >>> CHUNK_BITS);
+            if (chunk == null) {
+                id += CHUNK_SIZE - 1 - (id & (CHUNK_SIZE - 1));
+                continue;
+            }
+            MethodMetrics metrics = chunk.get(id & (CHUNK_SIZE - 1));
+            if (metrics != null) {
+                action.accept(metrics);
+            }
+        }
+    }
+
+    /**
+     * 清零所有方法的指标
+     */
+    public static void resetAll() {
+        forEach(MethodMetrics::reset);
+    }
+
+    private static AtomicReferenceArray<MethodMetrics> chunk(int chunkIndex) {
+        AtomicReferenceArray<MethodMetrics> chunk = CHUNKS.get(chunkIndex);
+        if (chunk == null) {
+            CHUNKS.compareAndSet(chunkIndex, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+            chunk = CHUNKS.get(chunkIndex);
+        }
+        return chunk;
+    }
+}
@@ -0,0 +1,140 @@
+package org.example.agent.metrics;
+
+import org.example.agent.adaptive.AdaptiveInstrumentation;
+import org.example.agent.matcher.MatchCache;
+import org.example.agent.sampling.Sampler;
+import org.example.agent.startup.TypePoolCache;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 指标输出器
+ * 在后台守护线程中定期输出每个方法在本区间内的调用次数、异常次数和延迟分位数
+ */
+public final class MetricsReporter {
+
+    private static ScheduledExecutorService reporterExecutor;
+
+    private MetricsReporter() {
+    }
+
+    /**
+     * 启动定期输出
+     * @param intervalSeconds 输出间隔（秒），小于等于 0 时不启动
+     */
+    public static synchronized void start(long intervalSeconds) {
+        if (reporterExecutor != null || intervalSeconds <= 0) {
+            return;
+        }
+        reporterExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Agent-Metrics-Reporter");
+            t.setDaemon(true); // 设置为守护线程，避免阻止JVM退出
+            return t;
+        });
+        reporterExecutor.scheduleAtFixedRate(() -> {
+            try {
+                report(System.out);
+            } catch (Exception e) {
+                // 输出失败不影响主应用
+                System.err.println("[Metrics] 指标输出失败: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+
+        System.out.println("[Agent] 指标输出已启动，间隔: " + intervalSeconds + "秒");
+    }
+
+    /**
+     * 输出一次区间指标
+     */
+    public static void report(PrintStream out) {
+        StringBuilder sb = new StringBuilder();
+        MetricsRegistry.forEach(metrics -> {
+            MetricsSnapshot snapshot = metrics.intervalSnapshot();
+            if (snapshot.calls() == 0) {
+                return;
+            }
+            HistogramSnapshot latency = snapshot.latency();
+            sb.append("[Metrics] ").append(snapshot.name())
+                    .append(" | 调用: ").append(snapshot.calls())
+                    .append(" | 异常: ").append(snapshot.errors())
+                    .append(" | 平均: ").append(formatNanos(latency.mean()))
+                    .append(" | p50: ").append(formatNanos(latency.percentile(50)))
+                    .append(" | p99: ").append(formatNanos(latency.percentile(99)))
+                    .append(" | p999: ").append(formatNanos(latency.percentile(99.9)))
+                    .append(" | 最大: ").append(formatNanos(latency.max()))
+                    .append('\n');
+        });
+        CallCounters.forEach(counter -> {
+            long[] interval = counter.intervalSnapshot();
+            if (interval[0] == 0) {
+                return;
+            }
+            sb.append("[Metrics] ").append(counter.name())
+                    .append(" | 调用: ").append(interval[0])
+                    .append(" | 异常: ").append(interval[1])
+                    .append(" | 仅计数")
+                    .append('\n');
+        });
+        List<AdaptiveInstrumentation.Decision> decisions = AdaptiveInstrumentation.decisions();
+        if (!decisions.isEmpty()) {
+            for (AdaptiveInstrumentation.Decision decision : decisions) {
+                sb.append("[Metrics] 自适应降级 | ").append(decision.name())
+                        .append(" | ").append(decision.action().description())
+                        .append(" | ").append(decision.reason())
+                        .append('\n');
+            }
+        }
+        if (VirtualThreadPinning.totalEvents() > 0) {
+            sb.append("[Metrics] 虚拟线程固定（累计） | 次数: ").append(VirtualThreadPinning.totalEvents())
+                    .append(" | 总时长: ").append(formatNanos(VirtualThreadPinning.totalNanos()))
+                    .append('\n');
+            VirtualThreadPinning.forEach(stats -> sb.append("[Metrics] 虚拟线程固定 | ").append(stats.name())
+                    .append(" | 次数: ").append(stats.count())
+                    .append(" | 总时长: ").append(formatNanos(stats.totalNanos()))
+                    .append(" | 最长: ").append(formatNanos(stats.maxNanos()))
+                    .append('\n'));
+        }
+        long cacheHits = MatchCache.totalHits();
+        long cacheMisses = MatchCache.totalMisses();
+        if (cacheHits + cacheMisses > 0) {
+            sb.append("[Metrics] 匹配缓存 | 命中: ").append(cacheHits)
+                    .append(" | 未命中: ").append(cacheMisses)
+                    .append(String.format(" | 命中率: %.1f%%", cacheHits * 100.0 / (cacheHits + cacheMisses)))
+                    .append('\n');
+        }
+        long headSampled = Sampler.headSampled();
+        long unsampled = Sampler.unsampled();
+        if (headSampled + unsampled > 0) {
+            long tailSampled = Sampler.tailSampled();
+            sb.append("[Metrics] 采样 | 进入时采集: ").append(headSampled)
+                    .append(" | 慢调用补采: ").append(tailSampled)
+                    .append(" | 未采集: ").append(unsampled)
+                    .append(String.format(" | 实际采样率: %.1f%%", (headSampled + tailSampled) * 100.0 / (headSampled + unsampled)))
+                    .append('\n');
+        }
+        String typePool = TypePoolCache.summary();
+        if (typePool != null) {
+            sb.append("[Metrics] ").append(typePool).append('\n');
+        }
+        if (sb.length() > 0) {
+            out.print("[Metrics] ========================================\n"
+                    + sb
+                    + "[Metrics] ========================================\n");
+        }
+    }
+
+    public static String formatNanos(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + "ns";
+        } else if (nanos < 1_000_000) {
+            return String.format("%.1fµs", nanos / 1_000.0);
+        } else if (nanos < 1_000_000_000) {
+            return String.format("%.2fms", nanos / 1_000_000.0);
+        }
+        return String.format("%.2fs", nanos / 1_000_000_000.0);
+    }
+}
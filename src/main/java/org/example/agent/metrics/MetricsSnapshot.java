@@ -0,0 +1,39 @@
+package org.example.agent.metrics;
+
+import org.example.agent.registry.MethodRegistry;
+
+/**
+ * 单个方法的指标快照
+ */
+public final class MetricsSnapshot {
+
+    private final int methodId;
+    private final HistogramSnapshot latency;
+    private final long errors;
+
+    MetricsSnapshot(int methodId, HistogramSnapshot latency, long errors) {
+        this.methodId = methodId;
+        this.latency = latency;
+        this.errors = errors;
+    }
+
+    public int methodId() {
+        return methodId;
+    }
+
+    public String name() {
+        return MethodRegistry.nameOf(methodId);
+    }
+
+    public HistogramSnapshot latency() {
+        return latency;
+    }
+
+    public long calls() {
+        return latency.count();
+    }
+
+    public long errors() {
+        return errors;
+    }
+}
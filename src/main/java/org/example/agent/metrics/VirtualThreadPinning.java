@@ -0,0 +1,195 @@
+package org.example.agent.metrics;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedMethod;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.example.agent.config.AgentArgs;
+import org.example.agent.registry.MethodMetadata;
+import org.example.agent.registry.MethodRegistry;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 虚拟线程固定（pinning）统计
+ * 虚拟线程在 synchronized 块内或本地方法中阻塞时无法卸载，会一直占用载体线程。
+ * JDK 没有公开的挂载/卸载回调，这里通过进程内的 JFR 事件流订阅 jdk.VirtualThreadPinned，
+ * 按事件栈中第一个被增强的方法归类，统计每个方法导致的固定次数和固定时长
+ *
+ * 支持的参数:
+ * vthreadPinning=false          是否启用（启用后会在进程内开启一个只包含该事件的 JFR 记录）
+ * vthreadPinnedThreshold=20     只记录固定时间超过该值的事件（毫秒）
+ */
+public final class VirtualThreadPinning {
+
+    private static final String EVENT_NAME = "jdk.VirtualThreadPinned";
+
+    private static final Map<Integer, Stats> BY_METHOD = new ConcurrentHashMap<>();
+    private static final LongAdder TOTAL_EVENTS = new LongAdder();
+    private static final LongAdder TOTAL_NANOS = new LongAdder();
+
+    private static RecordingStream stream;
+
+    // 方法签名 -> 方法 ID，只由事件流线程访问
+    private static final Map<String, Integer> METHOD_INDEX = new HashMap<>();
+    private static int indexedMethods;
+
+    private VirtualThreadPinning() {
+    }
+
+    /**
+     * 根据探针参数启动监控，未配置 vthreadPinning=true 时不启动
+     */
+    public static synchronized void start(AgentArgs args) {
+        if (stream != null || !args.getBoolean("vthreadPinning", false)) {
+            return;
+        }
+        long thresholdMillis = Math.max(0, args.getLong("vthreadPinnedThreshold", 20));
+        try {
+            RecordingStream recording = new RecordingStream();
+            recording.enable(EVENT_NAME).withThreshold(Duration.ofMillis(thresholdMillis)).withStackTrace();
+            recording.onEvent(EVENT_NAME, VirtualThreadPinning::onPinned);
+            // startAsync 创建的是非守护线程，会阻止 JVM 退出，这里在自己的守护线程中阻塞运行事件流
+            Thread t = new Thread(recording::start, "Agent-VThread-Pinning");
+            t.setDaemon(true); // 设置为守护线程，避免阻止JVM退出
+            t.start();
+            stream = recording;
+        } catch (Throwable t) {
+            // JFR 不可用时不影响主应用
+            System.err.println("[Agent] 虚拟线程固定监控启动失败: " + t.getMessage());
+            return;
+        }
+        System.out.println("[Agent] 虚拟线程固定监控已启动，阈值: " + thresholdMillis + "ms");
+    }
+
+    /**
+     * 固定事件总数（包括无法归类到被增强方法的事件）
+     */
+    public static long totalEvents() {
+        return TOTAL_EVENTS.sum();
+    }
+
+    /**
+     * 固定总时长（纳秒）
+     */
+    public static long totalNanos() {
+        return TOTAL_NANOS.sum();
+    }
+
+    /**
+     * 遍历有固定记录的方法
+     */
+    public static void forEach(Consumer<Stats> action) {
+        BY_METHOD.values().forEach(action);
+    }
+
+    /**
+     * 查找方法的固定统计，没有记录时返回 null
+     */
+    public static Stats find(int methodId) {
+        return BY_METHOD.get(methodId);
+    }
+
+    private static void onPinned(RecordedEvent event) {
+        try {
+            long nanos = event.getDuration().toNanos();
+            TOTAL_EVENTS.increment();
+            TOTAL_NANOS.add(nanos);
+            int methodId = attribute(event.getStackTrace());
+            if (methodId >= 0) {
+                BY_METHOD.computeIfAbsent(methodId, Stats::new).record(nanos);
+            }
+        } catch (Throwable t) {
+            // 统计失败不影响主应用
+            System.err.println("[Metrics] 虚拟线程固定事件处理失败: " + t.getMessage());
+        }
+    }
+
+    /**
+     * @return 栈中第一个（离栈顶最近的）被增强方法的 ID，没有时返回 -1
+     */
+    private static int attribute(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return -1;
+        }
+        refreshIndex();
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            RecordedMethod method = frame.getMethod();
+            if (method == null) {
+                continue;
+            }
+            Integer id = METHOD_INDEX.get(keyOf(method.getType().getName(), method.getName(), method.getDescriptor()));
+            if (id != null) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    private static void refreshIndex() {
+        int size = MethodRegistry.size();
+        int id = indexedMethods;
+        // 注册时先分配 ID 再写入元数据，遇到还没有元数据的 ID 就停下，下次从这里继续，避免跳过该方法
+        for (; id < size; id++) {
+            MethodMetadata metadata = MethodRegistry.metadata(id);
+            if (metadata == null) {
+                break;
+            }
+            METHOD_INDEX.put(keyOf(metadata.className(), metadata.methodName(), metadata.descriptor()), id);
+        }
+        indexedMethods = id;
+    }
+
+    private static String keyOf(String className, String methodName, String descriptor) {
+        return className + '.' + methodName + descriptor;
+    }
+
+    /**
+     * 单个方法的固定统计，只由事件流线程写入
+     */
+    public static final class Stats {
+
+        private final int methodId;
+        private volatile long count;
+        private volatile long totalNanos;
+        private volatile long maxNanos;
+
+        Stats(int methodId) {
+            this.methodId = methodId;
+        }
+
+        void record(long nanos) {
+            count = count + 1;
+            totalNanos = totalNanos + nanos;
+            if (nanos > maxNanos) {
+                maxNanos = nanos;
+            }
+        }
+
+        public int methodId() {
+            return methodId;
+        }
+
+        public String name() {
+            return MethodRegistry.nameOf(methodId);
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long totalNanos() {
+            return totalNanos;
+        }
+
+        public long maxNanos() {
+            return maxNanos;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.example.agent.pipeline;
+
+/**
+ * 环形缓冲区写满时的处理策略
+ */
+public enum BackpressurePolicy {
+
+    /**
+     * 直接丢弃并计数，业务线程不会等待（默认）
+     */
+    DROP,
+
+    /**
+     * 等待消费线程腾出空间，超过等待上限后仍然丢弃，避免消费线程异常时拖死业务线程
+     */
+    BLOCK;
+
+    public static BackpressurePolicy of(String name) {
+        return "block".equalsIgnoreCase(name) ? BLOCK : DROP;
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.agent.pipeline;
+
+/**
+ * 调用事件的固定布局定义
+ * 事件不以对象形式存在，而是按字段拆分存放在 {@link CallEventRingBuffer} 和 {@link EventBatch} 的基本类型数组中:
+ * <pre>
+ *   int  methodId     方法 ID（见 MethodRegistry）
+ *   long startNanos   开始时间 System.nanoTime()
+ *   long endNanos     结束时间 System.nanoTime()
+ *   long threadId     线程 ID
+ *   byte outcome      调用结果，见 OUTCOME_* 常量
+ *   long traceIdHigh  trace ID 高 64 位
+ *   long traceIdLow   trace ID 低 64 位
+ *   long spanId       span ID，0 表示未启用调用链追踪
+ *   long parentSpanId 父 span ID，0 表示根 span
+ * </pre>
+ * 调用链字段与 W3C traceparent 对应，见 {@link org.example.agent.trace.bootstrap.TraceContext}
+ */
+public final class CallEvent {
+
+    /**
+     * 正常返回
+     */
+    public static final byte OUTCOME_RETURN = 0;
+
+    /**
+     * 异常退出
+     */
+    public static final byte OUTCOME_THROWN = 1;
+
+    private CallEvent() {
+    }
+
+    public static String outcomeName(byte outcome) {
+        return outcome == OUTCOME_THROWN ? "THROWN" : "RETURN";
+    }
+}
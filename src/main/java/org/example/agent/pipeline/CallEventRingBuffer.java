@@ -0,0 +1,151 @@
+package org.example.agent.pipeline;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 预分配的多生产者单消费者环形缓冲区
+ * 每个槽位的字段拆分到基本类型数组中，写入时只需要一次 CAS 申请序号，不分配内存。
+ * 槽位写完后通过 published 数组发布序号，消费者按序号判断槽位是否可读
+ */
+final class CallEventRingBuffer {
+
+    private static final VarHandle PUBLISHED = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final long BLOCK_PARK_NANOS = 1_000;
+
+    private final int capacity;
+    private final int mask;
+    private final BackpressurePolicy policy;
+    private final long blockTimeoutNanos;
+
+    private final int[] methodIds;
+    private final long[] startNanos;
+    private final long[] endNanos;
+    private final long[] threadIds;
+    private final byte[] outcomes;
+    private final long[] traceIdHighs;
+    private final long[] traceIdLows;
+    private final long[] spanIds;
+    private final long[] parentSpanIds;
+    private final long[] published;
+
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+
+    CallEventRingBuffer(int capacity, BackpressurePolicy policy, long blockTimeoutNanos) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.policy = policy;
+        this.blockTimeoutNanos = blockTimeoutNanos;
+        this.methodIds = new int[size];
+        this.startNanos = new long[size];
+        this.endNanos = new long[size];
+        this.threadIds = new long[size];
+        this.outcomes = new byte[size];
+        this.traceIdHighs = new long[size];
+        this.traceIdLows = new long[size];
+        this.spanIds = new long[size];
+        this.parentSpanIds = new long[size];
+        this.published = new long[size];
+        for (int i = 0; i < size; i++) {
+            published[i] = -1;
+        }
+    }
+
+    /**
+     * 写入一个事件
+     * @return 是否写入成功，失败时已计入丢弃数
+     */
+    boolean offer(int methodId, long start, long end, long threadId, byte outcome,
+                  long traceIdHigh, long traceIdLow, long spanId, long parentSpanId) {
+        long sequence = claim();
+        if (sequence < 0) {
+            dropped.increment();
+            return false;
+        }
+        int slot = (int) sequence & mask;
+        methodIds[slot] = methodId;
+        startNanos[slot] = start;
+        endNanos[slot] = end;
+        threadIds[slot] = threadId;
+        outcomes[slot] = outcome;
+        traceIdHighs[slot] = traceIdHigh;
+        traceIdLows[slot] = traceIdLow;
+        spanIds[slot] = spanId;
+        parentSpanIds[slot] = parentSpanId;
+        PUBLISHED.setRelease(published, slot, sequence);
+        return true;
+    }
+
+    private long claim() {
+        long deadline = 0;
+        while (true) {
+            long current = tail.get();
+            if (current - head >= capacity) {
+                if (policy == BackpressurePolicy.DROP) {
+                    return -1;
+                }
+                long now = System.nanoTime();
+                if (deadline == 0) {
+                    deadline = now + blockTimeoutNanos;
+                    blocked.increment();
+                } else if (now - deadline >= 0) {
+                    return -1;
+                }
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                continue;
+            }
+            if (tail.compareAndSet(current, current + 1)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * 把已发布的事件复制到批次中并释放槽位（只能由消费线程调用）
+     * @return 本次复制的事件数
+     */
+    int drainTo(EventBatch batch) {
+        batch.clear();
+        long read = head;
+        int limit = batch.capacity();
+        int count = 0;
+        while (count < limit) {
+            long sequence = read + count;
+            int slot = (int) sequence & mask;
+            if ((long) PUBLISHED.getAcquire(published, slot) != sequence) {
+                break;
+            }
+            batch.add(methodIds[slot], startNanos[slot], endNanos[slot], threadIds[slot], outcomes[slot],
+                    traceIdHighs[slot], traceIdLows[slot], spanIds[slot], parentSpanIds[slot]);
+            count++;
+        }
+        if (count > 0) {
+            head = read + count;
+        }
+        return count;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    long size() {
+        return Math.max(0, tail.get() - head);
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    long blocked() {
+        return blocked.sum();
+    }
+}
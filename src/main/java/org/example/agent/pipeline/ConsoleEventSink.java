@@ -0,0 +1,46 @@
+package org.example.agent.pipeline;
+
+import org.example.agent.metrics.MetricsReporter;
+import org.example.agent.registry.MethodRegistry;
+import org.example.agent.trace.bootstrap.TraceContext;
+
+import java.io.PrintStream;
+
+/**
+ * 控制台输出端，每批事件只调用一次 print
+ */
+public class ConsoleEventSink implements EventSink {
+
+    private final PrintStream out;
+    private final StringBuilder buffer = new StringBuilder(4096);
+
+    public ConsoleEventSink() {
+        this(System.out);
+    }
+
+    public ConsoleEventSink(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public String name() {
+        return "console";
+    }
+
+    @Override
+    public void onBatch(EventBatch batch) {
+        buffer.setLength(0);
+        for (int i = 0; i < batch.size(); i++) {
+            buffer.append("[Event] ").append(MethodRegistry.nameOf(batch.methodId(i)))
+                    .append(" | 线程: ").append(batch.threadId(i))
+                    .append(" | 耗时: ").append(MetricsReporter.formatNanos(batch.durationNanos(i)))
+                    .append(" | 结果: ").append(CallEvent.outcomeName(batch.outcome(i)));
+            if (batch.spanId(i) != 0) {
+                buffer.append(" | 链路: ").append(TraceContext.traceId(batch.traceIdHigh(i), batch.traceIdLow(i)))
+                        .append('/').append(TraceContext.spanId(batch.spanId(i)));
+            }
+            buffer.append('\n');
+        }
+        out.print(buffer);
+    }
+}
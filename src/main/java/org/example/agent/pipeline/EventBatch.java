@@ -0,0 +1,103 @@
+package org.example.agent.pipeline;
+
+/**
+ * 一批调用事件
+ * 由消费线程复用，只在 {@link EventSink#onBatch(EventBatch)} 调用期间有效，sink 不能持有其引用
+ */
+public final class EventBatch {
+
+    private final int[] methodIds;
+    private final long[] startNanos;
+    private final long[] endNanos;
+    private final long[] threadIds;
+    private final byte[] outcomes;
+    private final long[] traceIdHighs;
+    private final long[] traceIdLows;
+    private final long[] spanIds;
+    private final long[] parentSpanIds;
+    private int size;
+
+    EventBatch(int capacity) {
+        this.methodIds = new int[capacity];
+        this.startNanos = new long[capacity];
+        this.endNanos = new long[capacity];
+        this.threadIds = new long[capacity];
+        this.outcomes = new byte[capacity];
+        this.traceIdHighs = new long[capacity];
+        this.traceIdLows = new long[capacity];
+        this.spanIds = new long[capacity];
+        this.parentSpanIds = new long[capacity];
+    }
+
+    void add(int methodId, long start, long end, long threadId, byte outcome,
+             long traceIdHigh, long traceIdLow, long spanId, long parentSpanId) {
+        methodIds[size] = methodId;
+        startNanos[size] = start;
+        endNanos[size] = end;
+        threadIds[size] = threadId;
+        outcomes[size] = outcome;
+        traceIdHighs[size] = traceIdHigh;
+        traceIdLows[size] = traceIdLow;
+        spanIds[size] = spanId;
+        parentSpanIds[size] = parentSpanId;
+        size++;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int capacity() {
+        return methodIds.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int methodId(int index) {
+        return methodIds[index];
+    }
+
+    public long startNanos(int index) {
+        return startNanos[index];
+    }
+
+    public long endNanos(int index) {
+        return endNanos[index];
+    }
+
+    public long durationNanos(int index) {
+        return endNanos[index] - startNanos[index];
+    }
+
+    public long threadId(int index) {
+        return threadIds[index];
+    }
+
+    public byte outcome(int index) {
+        return outcomes[index];
+    }
+
+    public long traceIdHigh(int index) {
+        return traceIdHighs[index];
+    }
+
+    public long traceIdLow(int index) {
+        return traceIdLows[index];
+    }
+
+    /**
+     * span ID，0 表示调用不在调用链中（未启用追踪）
+     */
+    public long spanId(int index) {
+        return spanIds[index];
+    }
+
+    /**
+     * 父 span ID，0 表示根 span
+     */
+    public long parentSpanId(int index) {
+        return parentSpanIds[index];
+    }
+}
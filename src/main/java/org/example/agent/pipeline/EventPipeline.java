@@ -0,0 +1,222 @@
+package org.example.agent.pipeline;
+
+import org.example.agent.config.AgentArgs;
+import org.example.agent.trace.bootstrap.TraceContext;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步批量事件管道
+ * 拦截器在业务线程中只把调用事件写入预分配的环形缓冲区，由单个后台消费线程按批次取出并交给各个输出端，
+ * 输出端再慢也只会导致缓冲区写满后按背压策略丢弃，不会增加业务方法的耗时
+ */
+public final class EventPipeline {
+
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static volatile EventPipeline instance;
+
+    private final CallEventRingBuffer ringBuffer;
+    private final EventBatch batch;
+    private final List<EventSink> sinks = new CopyOnWriteArrayList<>();
+    private final LongAdder sinkErrors = new LongAdder();
+    private final Thread consumer;
+    private volatile boolean running = true;
+    private volatile long delivered;
+
+    private EventPipeline(int bufferSize, int batchSize, BackpressurePolicy policy, long blockTimeoutNanos) {
+        this.ringBuffer = new CallEventRingBuffer(bufferSize, policy, blockTimeoutNanos);
+        this.batch = new EventBatch(batchSize);
+        this.consumer = new Thread(this::consume, "Agent-Event-Pipeline");
+        this.consumer.setDaemon(true); // 设置为守护线程，避免阻止JVM退出
+    }
+
+    /**
+     * 根据探针参数启动管道，未配置 pipelineSinks 时不启动
+     * 参数示例: pipelineSinks=console,file,http&pipelineFile=/tmp/agent-events.csv&pipelineHttpUrl=http://monitor:8080/events
+     */
+    public static synchronized void start(AgentArgs args) {
+        List<String> sinkNames = args.getList("pipelineSinks");
+        if (instance != null || sinkNames.isEmpty()) {
+            return;
+        }
+        BackpressurePolicy policy = BackpressurePolicy.of(args.get("pipelineBackpressure", "drop"));
+        EventPipeline pipeline = new EventPipeline(
+                args.getInt("pipelineBufferSize", 65536),
+                args.getInt("pipelineBatchSize", 512),
+                policy,
+                TimeUnit.MILLISECONDS.toNanos(args.getLong("pipelineBlockTimeout", 10)));
+        for (String sinkName : sinkNames) {
+            try {
+                pipeline.addSink(createSink(sinkName, args));
+            } catch (Exception e) {
+                System.err.println("[Pipeline] 创建输出端 " + sinkName + " 失败: " + e.getMessage());
+            }
+        }
+        pipeline.consumer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(pipeline::shutdown, "Agent-Event-Pipeline-Shutdown"));
+        instance = pipeline;
+
+        System.out.println("[Agent] 事件管道已启动，输出端: " + sinkNames
+                + "，缓冲区: " + pipeline.ringBuffer.capacity() + "，背压策略: " + policy);
+    }
+
+    private static EventSink createSink(String name, AgentArgs args) throws Exception {
+        switch (name) {
+            case "console":
+                return new ConsoleEventSink();
+            case "file":
+                return new FileEventSink(Paths.get(args.get("pipelineFile", "agent-events.csv")));
+            case "http":
+                String url = args.get("pipelineHttpUrl", null);
+                if (url == null) {
+                    throw new IllegalArgumentException("缺少参数 pipelineHttpUrl");
+                }
+                return new HttpEventSink(url);
+            case "trace":
+                return new MappedTraceSink(Paths.get(args.get("traceDir", "agent-trace")),
+                        args.getInt("traceSegmentSize", 64 * 1024 * 1024),
+                        args.getLong("traceSegmentMaxAge", 300),
+                        args.getInt("traceMaxSegments", 20));
+            default:
+                // 其它输出端通过全限定类名加载，要求有无参构造方法
+                return (EventSink) Class.forName(name).getDeclaredConstructor().newInstance();
+        }
+    }
+
+    /**
+     * 发布一个调用事件，管道未启动时直接返回
+     * @param methodId 方法 ID
+     * @param startNanos 开始时间
+     * @param endNanos 结束时间
+     * @param thrown 是否异常退出
+     */
+    public static void publish(int methodId, long startNanos, long endNanos, boolean thrown) {
+        EventPipeline pipeline = instance;
+        if (pipeline != null) {
+            pipeline.ringBuffer.offer(methodId, startNanos, endNanos, Thread.currentThread().threadId(),
+                    thrown ? CallEvent.OUTCOME_THROWN : CallEvent.OUTCOME_RETURN, 0, 0, 0, 0);
+        }
+    }
+
+    /**
+     * 发布一个带调用链标识的调用事件，管道未启动时直接返回
+     * @param trace 当前线程的调用链上下文（处于本次调用的 span 中），为 null 时不带调用链标识
+     * @param parentSpanId 父 span ID
+     */
+    public static void publish(int methodId, long startNanos, long endNanos, boolean thrown,
+                               TraceContext trace, long parentSpanId) {
+        if (trace == null) {
+            publish(methodId, startNanos, endNanos, thrown);
+            return;
+        }
+        EventPipeline pipeline = instance;
+        if (pipeline != null) {
+            pipeline.ringBuffer.offer(methodId, startNanos, endNanos, Thread.currentThread().threadId(),
+                    thrown ? CallEvent.OUTCOME_THROWN : CallEvent.OUTCOME_RETURN,
+                    trace.traceIdHigh(), trace.traceIdLow(), trace.spanId(), parentSpanId);
+        }
+    }
+
+    /**
+     * 当前运行中的管道，未启动时为 null
+     */
+    public static EventPipeline current() {
+        return instance;
+    }
+
+    public void addSink(EventSink sink) {
+        sinks.add(sink);
+    }
+
+    public long dropped() {
+        return ringBuffer.dropped();
+    }
+
+    public long blocked() {
+        return ringBuffer.blocked();
+    }
+
+    public long delivered() {
+        return delivered;
+    }
+
+    public long sinkErrors() {
+        return sinkErrors.sum();
+    }
+
+    public long pending() {
+        return ringBuffer.size();
+    }
+
+    private void consume() {
+        long idleParkNanos = 1_000;
+        boolean dirty = false;
+        while (running || ringBuffer.size() > 0) {
+            int count = ringBuffer.drainTo(batch);
+            if (count > 0) {
+                deliver();
+                dirty = true;
+                idleParkNanos = 1_000;
+                continue;
+            }
+            if (dirty) {
+                // 缓冲区已清空，让输出端刷新一次
+                flushSinks();
+                dirty = false;
+            }
+            LockSupport.parkNanos(idleParkNanos);
+            idleParkNanos = Math.min(idleParkNanos * 2, MAX_IDLE_PARK_NANOS);
+        }
+        flushSinks();
+        for (EventSink sink : sinks) {
+            try {
+                sink.close();
+            } catch (Exception e) {
+                System.err.println("[Pipeline] 关闭输出端 " + sink.name() + " 失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private void deliver() {
+        delivered += batch.size();
+        for (EventSink sink : sinks) {
+            try {
+                sink.onBatch(batch);
+            } catch (Exception e) {
+                // 输出失败不影响主应用，也不影响其它输出端
+                sinkErrors.increment();
+                System.err.println("[Pipeline] 输出端 " + sink.name() + " 处理失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private void flushSinks() {
+        for (EventSink sink : sinks) {
+            try {
+                sink.flush();
+            } catch (Exception e) {
+                sinkErrors.increment();
+                System.err.println("[Pipeline] 输出端 " + sink.name() + " 刷新失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private void shutdown() {
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(3));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dropped() > 0) {
+            System.err.println("[Pipeline] 缓冲区已满丢弃事件数: " + dropped());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.agent.pipeline;
+
+/**
+ * 事件输出端
+ * 所有方法都只在管道的消费线程中调用，实现类不需要考虑并发
+ */
+public interface EventSink {
+
+    /**
+     * 输出端名称，用于日志和统计
+     */
+    String name();
+
+    /**
+     * 处理一批事件，批次对象会被复用，不能在方法返回后继续持有
+     */
+    void onBatch(EventBatch batch) throws Exception;
+
+    /**
+     * 管道空闲时调用，可用于刷新缓冲区
+     */
+    default void flush() throws Exception {
+    }
+
+    /**
+     * 管道关闭时调用
+     */
+    default void close() throws Exception {
+    }
+}
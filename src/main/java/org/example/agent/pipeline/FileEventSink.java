@@ -0,0 +1,78 @@
+package org.example.agent.pipeline;
+
+import org.example.agent.registry.MethodRegistry;
+import org.example.agent.trace.bootstrap.TraceContext;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文本文件输出端，按 CSV 行追加写入:
+ * methodId,method,startNanos,endNanos,threadId,outcome,traceId,spanId,parentSpanId
+ * 未启用调用链追踪时最后三列为空
+ */
+public class FileEventSink implements EventSink {
+
+    private final Path path;
+    private final BufferedWriter writer;
+
+    public FileEventSink(Path path) throws IOException {
+        this.path = path;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public String name() {
+        return "file:" + path;
+    }
+
+    @Override
+    public void onBatch(EventBatch batch) throws IOException {
+        for (int i = 0; i < batch.size(); i++) {
+            int methodId = batch.methodId(i);
+            writer.write(Integer.toString(methodId));
+            writer.write(',');
+            writer.write(MethodRegistry.nameOf(methodId));
+            writer.write(',');
+            writer.write(Long.toString(batch.startNanos(i)));
+            writer.write(',');
+            writer.write(Long.toString(batch.endNanos(i)));
+            writer.write(',');
+            writer.write(Long.toString(batch.threadId(i)));
+            writer.write(',');
+            writer.write(CallEvent.outcomeName(batch.outcome(i)));
+            writer.write(',');
+            if (batch.spanId(i) != 0) {
+                writer.write(TraceContext.traceId(batch.traceIdHigh(i), batch.traceIdLow(i)));
+                writer.write(',');
+                writer.write(TraceContext.spanId(batch.spanId(i)));
+                writer.write(',');
+                if (batch.parentSpanId(i) != 0) {
+                    writer.write(TraceContext.spanId(batch.parentSpanId(i)));
+                }
+            } else {
+                writer.write(',');
+            }
+            writer.newLine();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
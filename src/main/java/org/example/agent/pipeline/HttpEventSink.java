@@ -0,0 +1,70 @@
+package org.example.agent.pipeline;
+
+import org.example.agent.registry.MethodRegistry;
+import org.example.agent.trace.bootstrap.TraceContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HTTP 输出端，每批事件以 JSON 数组 POST 到指定地址
+ * 请求在管道消费线程中同步发送，发送过慢时由环形缓冲区的背压策略兜底，不会影响业务线程
+ */
+public class HttpEventSink implements EventSink {
+
+    private final String url;
+    private final StringBuilder json = new StringBuilder(16 * 1024);
+
+    public HttpEventSink(String url) {
+        this.url = url;
+    }
+
+    @Override
+    public String name() {
+        return "http:" + url;
+    }
+
+    @Override
+    public void onBatch(EventBatch batch) throws IOException {
+        json.setLength(0);
+        json.append('[');
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            int methodId = batch.methodId(i);
+            json.append("{\"methodId\":").append(methodId)
+                    .append(",\"method\":\"").append(MethodRegistry.nameOf(methodId)).append('"')
+                    .append(",\"startNanos\":").append(batch.startNanos(i))
+                    .append(",\"endNanos\":").append(batch.endNanos(i))
+                    .append(",\"threadId\":").append(batch.threadId(i))
+                    .append(",\"outcome\":\"").append(CallEvent.outcomeName(batch.outcome(i))).append('"');
+            if (batch.spanId(i) != 0) {
+                json.append(",\"traceId\":\"").append(TraceContext.traceId(batch.traceIdHigh(i), batch.traceIdLow(i))).append('"')
+                        .append(",\"spanId\":\"").append(TraceContext.spanId(batch.spanId(i))).append('"');
+                if (batch.parentSpanId(i) != 0) {
+                    json.append(",\"parentSpanId\":\"").append(TraceContext.spanId(batch.parentSpanId(i))).append('"');
+                }
+            }
+            json.append('}');
+        }
+        json.append(']');
+
+        HttpURLConnection conn = (HttpURLConnection) URI.create(url).toURL().openConnection();
+        conn.setRequestMethod("POST");
+        conn.setRequestProperty("Content-Type", "application/json");
+        conn.setConnectTimeout(3000);
+        conn.setReadTimeout(3000);
+        conn.setDoOutput(true);
+        try (OutputStream os = conn.getOutputStream()) {
+            os.write(json.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        int responseCode = conn.getResponseCode();
+        if (responseCode < 200 || responseCode >= 300) {
+            throw new IOException("HTTP 响应码: " + responseCode);
+        }
+    }
+}
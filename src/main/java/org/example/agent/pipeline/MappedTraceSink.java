@@ -0,0 +1,163 @@
+package org.example.agent.pipeline;
+
+import org.example.agent.registry.MethodRegistry;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 内存映射二进制轨迹输出端
+ * 记录以 {@link TraceFormat} 定义的定长二进制格式写入 MappedByteBuffer，写入只是内存拷贝，没有系统调用；
+ * 段文件按大小或时间滚动，超过保留数量时删除最旧的段。
+ * 离线转换使用 {@link TraceDecoder}
+ */
+public class MappedTraceSink implements EventSink {
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxAgeNanos;
+    private final int maxSegments;
+    private final Deque<Path> segments = new ArrayDeque<>();
+
+    private Path currentPath;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long segmentCreatedNanos;
+    private int recordCount;
+    private int writtenMethods;
+    private int sequence;
+
+    /**
+     * @param directory 段文件目录
+     * @param segmentSize 单个段文件大小（字节）
+     * @param maxAgeSeconds 单个段文件最长写入时间（秒），小于等于 0 表示只按大小滚动
+     * @param maxSegments 最多保留的段文件数量，小于等于 0 表示不删除
+     */
+    public MappedTraceSink(Path directory, int segmentSize, long maxAgeSeconds, int maxSegments) throws IOException {
+        this.directory = directory;
+        this.segmentSize = Math.max(segmentSize, TraceFormat.HEADER_SIZE + TraceFormat.RECORD_SIZE * 1024);
+        this.maxAgeNanos = maxAgeSeconds > 0 ? TimeUnit.SECONDS.toNanos(maxAgeSeconds) : Long.MAX_VALUE;
+        this.maxSegments = maxSegments;
+        Files.createDirectories(directory);
+        try (Stream<Path> existing = Files.list(directory)) {
+            existing.filter(p -> p.getFileName().toString().endsWith(TraceFormat.SEGMENT_SUFFIX))
+                    .sorted()
+                    .forEach(segments::addLast);
+        }
+        openSegment();
+    }
+
+    @Override
+    public String name() {
+        return "trace:" + directory;
+    }
+
+    @Override
+    public void onBatch(EventBatch batch) throws IOException {
+        for (int i = 0; i < batch.size(); i++) {
+            if (buffer.remaining() < TraceFormat.RECORD_SIZE) {
+                rollSegment();
+            }
+            buffer.putInt(batch.methodId(i));
+            buffer.putLong(batch.startNanos(i));
+            buffer.putLong(batch.endNanos(i));
+            buffer.putLong(batch.threadId(i));
+            buffer.put(batch.outcome(i));
+            buffer.putLong(batch.traceIdHigh(i));
+            buffer.putLong(batch.traceIdLow(i));
+            buffer.putLong(batch.spanId(i));
+            buffer.putLong(batch.parentSpanId(i));
+            recordCount++;
+        }
+        buffer.putInt(TraceFormat.OFFSET_RECORD_COUNT, recordCount);
+        if (System.nanoTime() - segmentCreatedNanos >= maxAgeNanos) {
+            rollSegment();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        buffer.putInt(TraceFormat.OFFSET_RECORD_COUNT, recordCount);
+        if (MethodRegistry.size() != writtenMethods) {
+            writeMethods(currentPath);
+        }
+        if (System.nanoTime() - segmentCreatedNanos >= maxAgeNanos && recordCount > 0) {
+            rollSegment();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+
+    private void openSegment() throws IOException {
+        String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        currentPath = directory.resolve(String.format("trace-%s-%d-%04d%s",
+                timestamp, ProcessHandle.current().pid(), sequence++, TraceFormat.SEGMENT_SUFFIX));
+        channel = FileChannel.open(currentPath, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        segmentCreatedNanos = System.nanoTime();
+        recordCount = 0;
+        writtenMethods = 0;
+
+        buffer.putInt(TraceFormat.MAGIC);
+        buffer.putShort(TraceFormat.VERSION);
+        buffer.putShort((short) TraceFormat.RECORD_SIZE);
+        buffer.putLong(System.currentTimeMillis());
+        buffer.putLong(segmentCreatedNanos);
+        buffer.putInt(0);
+        buffer.putInt(0);
+
+        segments.addLast(currentPath);
+        while (maxSegments > 0 && segments.size() > maxSegments) {
+            Path oldest = segments.removeFirst();
+            Files.deleteIfExists(oldest);
+            Files.deleteIfExists(methodsPathOf(oldest));
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        closeSegment();
+        openSegment();
+    }
+
+    private void closeSegment() throws IOException {
+        buffer.putInt(TraceFormat.OFFSET_RECORD_COUNT, recordCount);
+        buffer.force();
+        channel.close();
+        writeMethods(currentPath);
+    }
+
+    private void writeMethods(Path segment) throws IOException {
+        int size = MethodRegistry.size();
+        try (BufferedWriter writer = Files.newBufferedWriter(methodsPathOf(segment), StandardCharsets.UTF_8)) {
+            for (int id = 0; id < size; id++) {
+                writer.write(id + "\t" + MethodRegistry.nameOf(id));
+                writer.newLine();
+            }
+        }
+        writtenMethods = size;
+    }
+
+    static Path methodsPathOf(Path segment) {
+        String fileName = segment.getFileName().toString();
+        String base = fileName.substring(0, fileName.length() - TraceFormat.SEGMENT_SUFFIX.length());
+        return segment.resolveSibling(base + TraceFormat.METHODS_SUFFIX);
+    }
+}
@@ -0,0 +1,168 @@
+package org.example.agent.pipeline;
+
+import org.example.agent.trace.bootstrap.TraceContext;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 轨迹段文件离线解码工具
+ * 用法:
+ * <pre>
+ * java -cp bytebuddy_agent-1.0-SNAPSHOT.jar org.example.agent.pipeline.TraceDecoder [--format csv|json] [--out 文件] 段文件或目录...
+ * </pre>
+ */
+public class TraceDecoder {
+
+    public static void main(String[] args) throws IOException {
+        String format = "csv";
+        Path out = null;
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("--format".equals(args[i]) && i + 1 < args.length) {
+                format = args[++i];
+            } else if ("--out".equals(args[i]) && i + 1 < args.length) {
+                out = Paths.get(args[++i]);
+            } else {
+                inputs.add(Paths.get(args[i]));
+            }
+        }
+        if (inputs.isEmpty() || !("csv".equals(format) || "json".equals(format))) {
+            System.err.println("用法: TraceDecoder [--format csv|json] [--out 文件] 段文件或目录...");
+            System.exit(1);
+        }
+
+        List<Path> segments = new ArrayList<>();
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                try (Stream<Path> files = Files.list(input)) {
+                    segments.addAll(files.filter(p -> p.getFileName().toString().endsWith(TraceFormat.SEGMENT_SUFFIX))
+                            .sorted()
+                            .collect(Collectors.toList()));
+                }
+            } else {
+                segments.add(input);
+            }
+        }
+
+        Writer writer = out != null
+                ? Files.newBufferedWriter(out, StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        try {
+            boolean json = "json".equals(format);
+            if (json) {
+                writer.write("[\n");
+            } else {
+                writer.write("segment,methodId,method,startTime,startNanos,endNanos,durationNanos,threadId,outcome,traceId,spanId,parentSpanId\n");
+            }
+            boolean first = true;
+            for (Path segment : segments) {
+                first = decode(segment, json, first, writer);
+            }
+            if (json) {
+                writer.write("\n]\n");
+            }
+        } finally {
+            writer.flush();
+            if (out != null) {
+                writer.close();
+            }
+        }
+    }
+
+    private static boolean decode(Path segment, boolean json, boolean first, Writer writer) throws IOException {
+        Map<Integer, String> methods = readMethods(MappedTraceSink.methodsPathOf(segment));
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(TraceFormat.OFFSET_MAGIC) != TraceFormat.MAGIC) {
+                System.err.println("[TraceDecoder] 不是轨迹段文件，跳过: " + segment);
+                return first;
+            }
+            short version = buffer.getShort(TraceFormat.OFFSET_VERSION);
+            if (version != TraceFormat.VERSION && version != TraceFormat.VERSION_1) {
+                System.err.println("[TraceDecoder] 不支持的格式版本 " + version + "，跳过: " + segment);
+                return first;
+            }
+            int recordSize = buffer.getShort(TraceFormat.OFFSET_RECORD_SIZE);
+            long createdMillis = buffer.getLong(TraceFormat.OFFSET_CREATED_MILLIS);
+            long createdNanos = buffer.getLong(TraceFormat.OFFSET_CREATED_NANOS);
+            int recordCount = buffer.getInt(TraceFormat.OFFSET_RECORD_COUNT);
+            String segmentName = segment.getFileName().toString();
+
+            for (int i = 0; i < recordCount; i++) {
+                int offset = TraceFormat.HEADER_SIZE + i * recordSize;
+                if (offset + recordSize > buffer.limit()) {
+                    break;
+                }
+                int methodId = buffer.getInt(offset);
+                long startNanos = buffer.getLong(offset + 4);
+                long endNanos = buffer.getLong(offset + 12);
+                long threadId = buffer.getLong(offset + 20);
+                byte outcome = buffer.get(offset + 28);
+                // 版本 1 没有调用链字段
+                String traceId = "";
+                String spanId = "";
+                String parentSpanId = "";
+                if (version != TraceFormat.VERSION_1 && buffer.getLong(offset + 45) != 0) {
+                    traceId = TraceContext.traceId(buffer.getLong(offset + 29), buffer.getLong(offset + 37));
+                    spanId = TraceContext.spanId(buffer.getLong(offset + 45));
+                    long parent = buffer.getLong(offset + 53);
+                    parentSpanId = parent != 0 ? TraceContext.spanId(parent) : "";
+                }
+                String method = methods.getOrDefault(methodId, "#" + methodId);
+                long startMicros = createdMillis * 1000 + (startNanos - createdNanos) / 1000;
+                String startTime = Instant.ofEpochSecond(0, startMicros * 1000).toString();
+
+                if (json) {
+                    writer.write(first ? "  " : ",\n  ");
+                    writer.write("{\"segment\":\"" + segmentName + "\",\"methodId\":" + methodId
+                            + ",\"method\":\"" + method.replace("\"", "\\\"") + "\",\"startTime\":\"" + startTime
+                            + "\",\"startNanos\":" + startNanos + ",\"endNanos\":" + endNanos
+                            + ",\"durationNanos\":" + (endNanos - startNanos) + ",\"threadId\":" + threadId
+                            + ",\"outcome\":\"" + CallEvent.outcomeName(outcome) + "\""
+                            + (spanId.isEmpty() ? "" : ",\"traceId\":\"" + traceId + "\",\"spanId\":\"" + spanId + "\"")
+                            + (parentSpanId.isEmpty() ? "" : ",\"parentSpanId\":\"" + parentSpanId + "\"") + "}");
+                } else {
+                    writer.write(segmentName + "," + methodId + "," + method + "," + startTime + ","
+                            + startNanos + "," + endNanos + "," + (endNanos - startNanos) + ","
+                            + threadId + "," + CallEvent.outcomeName(outcome) + ","
+                            + traceId + "," + spanId + "," + parentSpanId + "\n");
+                }
+                first = false;
+            }
+        }
+        return first;
+    }
+
+    private static Map<Integer, String> readMethods(Path path) throws IOException {
+        Map<Integer, String> methods = new HashMap<>();
+        if (!Files.exists(path)) {
+            return methods;
+        }
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            int tab = line.indexOf('\t');
+            if (tab > 0) {
+                methods.put(Integer.parseInt(line.substring(0, tab)), line.substring(tab + 1));
+            }
+        }
+        return methods;
+    }
+}
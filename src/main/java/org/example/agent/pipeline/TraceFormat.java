@@ -0,0 +1,50 @@
+package org.example.agent.pipeline;
+
+/**
+ * 二进制调用轨迹段文件格式（小端序）
+ * <pre>
+ * 文件头 32 字节:
+ *   int   magic           固定为 0x42425452 ("BBTR")
+ *   short version         格式版本
+ *   short recordSize      单条记录字节数
+ *   long  createdMillis   段文件创建时的 System.currentTimeMillis()
+ *   long  createdNanos    段文件创建时的 System.nanoTime()，用于把记录中的纳秒时间换算为墙上时间
+ *   int   recordCount     已写入的记录数
+ *   int   reserved
+ * 记录（按 recordSize 定长排列）:
+ *   int   methodId
+ *   long  startNanos
+ *   long  endNanos
+ *   long  threadId
+ *   byte  outcome
+ *   long  traceIdHigh     版本 2 起
+ *   long  traceIdLow      版本 2 起
+ *   long  spanId          版本 2 起，0 表示未启用调用链追踪
+ *   long  parentSpanId    版本 2 起，0 表示根 span
+ * </pre>
+ * 版本 1 的记录只有前 5 个字段（29 字节），解码时按文件头中的版本和记录大小读取
+ * 方法 ID 与方法名的对应关系写在同名的 .methods 文本文件中，每行 "id\tname"
+ */
+public final class TraceFormat {
+
+    public static final int MAGIC = 0x42425452;
+    public static final short VERSION = 2;
+    public static final short VERSION_1 = 1;
+
+    public static final int HEADER_SIZE = 32;
+    public static final int RECORD_SIZE_V1 = 4 + 8 + 8 + 8 + 1;
+    public static final int RECORD_SIZE = RECORD_SIZE_V1 + 8 + 8 + 8 + 8;
+
+    public static final int OFFSET_MAGIC = 0;
+    public static final int OFFSET_VERSION = 4;
+    public static final int OFFSET_RECORD_SIZE = 6;
+    public static final int OFFSET_CREATED_MILLIS = 8;
+    public static final int OFFSET_CREATED_NANOS = 16;
+    public static final int OFFSET_RECORD_COUNT = 24;
+
+    public static final String SEGMENT_SUFFIX = ".seg";
+    public static final String METHODS_SUFFIX = ".methods";
+
+    private TraceFormat() {
+    }
+}
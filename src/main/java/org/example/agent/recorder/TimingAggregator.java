@@ -0,0 +1,93 @@
+package org.example.agent.recorder;
+
+import org.example.agent.metrics.MetricsRegistry;
+
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 计时汇总器
+ * 在单个后台守护线程中周期性地消费所有线程的计时缓冲区，并汇总到 {@link MetricsRegistry}，
+ * 指标的输出由 {@link org.example.agent.metrics.MetricsReporter} 负责
+ */
+public final class TimingAggregator {
+
+    /**
+     * 缓冲区记录的消费者
+     */
+    interface Sink {
+        void accept(int methodId, long durationNanos, boolean thrown);
+    }
+
+    private static final long DROP_WARNING_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static ScheduledExecutorService aggregatorExecutor;
+    private static volatile long totalDropped;
+
+    private final Sink sink = MetricsRegistry::record;
+    private long removedDropped;
+    private long warnedDropped;
+    private long lastWarningNanos = System.nanoTime();
+
+    private TimingAggregator() {
+    }
+
+    /**
+     * 启动后台汇总线程
+     * @param drainIntervalMillis 消费缓冲区的间隔（毫秒）
+     */
+    public static synchronized void start(long drainIntervalMillis) {
+        if (aggregatorExecutor != null) {
+            return;
+        }
+        TimingAggregator aggregator = new TimingAggregator();
+        aggregatorExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Agent-Timing-Aggregator");
+            t.setDaemon(true); // 设置为守护线程，避免阻止JVM退出
+            return t;
+        });
+        aggregatorExecutor.scheduleWithFixedDelay(aggregator::drain,
+                drainIntervalMillis, drainIntervalMillis, TimeUnit.MILLISECONDS);
+
+        System.out.println("[Agent] 计时汇总已启动，消费间隔: " + drainIntervalMillis + "ms");
+    }
+
+    /**
+     * 因缓冲区已满而丢弃的记录总数
+     */
+    public static long dropped() {
+        return totalDropped;
+    }
+
+    private void drain() {
+        try {
+            long liveDropped = 0;
+            Iterator<TimingBuffer> iterator = TimingRecorder.BUFFERS.iterator();
+            while (iterator.hasNext()) {
+                TimingBuffer buffer = iterator.next();
+                buffer.drainTo(sink);
+                // 线程结束且数据已消费完，释放缓冲区
+                if (!buffer.isOwnerAlive() && buffer.isEmpty()) {
+                    removedDropped += buffer.dropped();
+                    iterator.remove();
+                } else {
+                    liveDropped += buffer.dropped();
+                }
+            }
+            long dropped = removedDropped + liveDropped;
+            totalDropped = dropped;
+            long now = System.nanoTime();
+            if (dropped > warnedDropped && now - lastWarningNanos >= DROP_WARNING_INTERVAL_NANOS) {
+                System.err.println("[Timing] 缓冲区已满丢弃记录数: " + (dropped - warnedDropped)
+                        + "，可适当调大 timingBufferSize");
+                warnedDropped = dropped;
+                lastWarningNanos = now;
+            }
+        } catch (Throwable t) {
+            // 汇总失败不影响主应用
+            System.err.println("[Timing] 汇总失败: " + t.getMessage());
+        }
+    }
+}
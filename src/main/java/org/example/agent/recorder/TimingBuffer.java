@@ -0,0 +1,98 @@
+package org.example.agent.recorder;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+
+/**
+ * 线程私有的计时缓冲区（单生产者单消费者环形队列）
+ * 生产者是业务线程，消费者是后台汇总线程，只使用基本类型数组，写入时不分配内存
+ */
+final class TimingBuffer {
+
+    private static final VarHandle WRITE_INDEX;
+    private static final VarHandle READ_INDEX;
+    private static final VarHandle DROPPED;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            WRITE_INDEX = lookup.findVarHandle(TimingBuffer.class, "writeIndex", long.class);
+            READ_INDEX = lookup.findVarHandle(TimingBuffer.class, "readIndex", long.class);
+            DROPPED = lookup.findVarHandle(TimingBuffer.class, "dropped", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final WeakReference<Thread> owner;
+    private final int[] methodIds;
+    private final long[] durations;
+    private final int mask;
+
+    // 只由生产者写入
+    private long writeIndex;
+    private long dropped;
+    // 只由消费者写入
+    private long readIndex;
+
+    TimingBuffer(Thread owner, int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.owner = new WeakReference<>(owner);
+        this.methodIds = new int[size];
+        this.durations = new long[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * 写入一条记录，缓冲区满时丢弃并计数，不阻塞业务线程
+     * 异常退出的记录使用按位取反的方法 ID 标识
+     */
+    void offer(int methodId, long durationNanos, boolean thrown) {
+        long write = writeIndex;
+        if (write - (long) READ_INDEX.getAcquire(this) > mask) {
+            DROPPED.setOpaque(this, dropped + 1);
+            return;
+        }
+        int slot = (int) write & mask;
+        methodIds[slot] = thrown ? ~methodId : methodId;
+        durations[slot] = durationNanos;
+        WRITE_INDEX.setRelease(this, write + 1);
+    }
+
+    /**
+     * 消费缓冲区中已发布的记录
+     * @return 本次消费的记录数
+     */
+    int drainTo(TimingAggregator.Sink sink) {
+        long read = readIndex;
+        long write = (long) WRITE_INDEX.getAcquire(this);
+        if (read == write) {
+            return 0;
+        }
+        for (long i = read; i < write; i++) {
+            int slot = (int) i & mask;
+            int id = methodIds[slot];
+            if (id < 0) {
+                sink.accept(~id, durations[slot], true);
+            } else {
+                sink.accept(id, durations[slot], false);
+            }
+        }
+        READ_INDEX.setRelease(this, write);
+        return (int) (write - read);
+    }
+
+    long dropped() {
+        return (long) DROPPED.getOpaque(this);
+    }
+
+    boolean isOwnerAlive() {
+        Thread thread = owner.get();
+        return thread != null && thread.isAlive();
+    }
+
+    boolean isEmpty() {
+        return readIndex == (long) WRITE_INDEX.getAcquire(this);
+    }
+}
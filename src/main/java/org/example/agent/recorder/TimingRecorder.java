@@ -0,0 +1,80 @@
+package org.example.agent.recorder;
+
+import org.example.agent.metrics.MetricsRegistry;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 计时记录入口
+ * 被 {@link org.example.agent.interceptor.TimingAdvice} 内联到业务方法中调用，
+ * 每个平台线程第一次调用时创建自己的缓冲区，之后的写入都不分配内存。
+ * 虚拟线程数量可能达到百万级，每个线程一个缓冲区会耗尽内存，因此虚拟线程不使用缓冲区，
+ * 直接写入按条带分散、内存固定的 {@link MetricsRegistry}
+ */
+public final class TimingRecorder {
+
+    static final ConcurrentLinkedQueue<TimingBuffer> BUFFERS = new ConcurrentLinkedQueue<>();
+
+    private static volatile int bufferCapacity = 4096;
+
+    private static final ThreadLocal<TimingBuffer> LOCAL = ThreadLocal.withInitial(() -> {
+        TimingBuffer buffer = new TimingBuffer(Thread.currentThread(), bufferCapacity);
+        BUFFERS.add(buffer);
+        return buffer;
+    });
+
+    private TimingRecorder() {
+    }
+
+    /**
+     * 记录一次方法调用
+     * @param methodId 方法 ID
+     * @param durationNanos 耗时（纳秒）
+     * @param thrown 是否异常退出
+     */
+    public static void record(int methodId, long durationNanos, boolean thrown) {
+        if (Thread.currentThread().isVirtual()) {
+            MetricsRegistry.record(methodId, durationNanos, thrown);
+            return;
+        }
+        LOCAL.get().offer(methodId, durationNanos, thrown);
+    }
+
+    /**
+     * 估算 TimingAdvice 每次调用的固定开销：两次 System.nanoTime() 加一次缓冲区写入
+     * 使用独立的缓冲区，不影响业务线程的记录；取多轮中最快的一轮，对应 JIT 编译后的稳定状态。
+     * 优先使用线程 CPU 时间计量，避免 CPU 繁忙时被其他线程抢占的时间计入开销
+     * @param iterations 每轮的调用次数
+     * @return 每次调用的开销（纳秒）
+     */
+    public static long calibrate(int iterations) {
+        TimingBuffer buffer = new TimingBuffer(Thread.currentThread(), 1024);
+        TimingAggregator.Sink discard = (methodId, durationNanos, thrown) -> {
+        };
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean cpuTime = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long start = cpuTime ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                long enterTime = System.nanoTime();
+                buffer.offer(0, System.nanoTime() - enterTime, false);
+                if ((i & 511) == 511) {
+                    buffer.drainTo(discard);
+                }
+            }
+            long end = cpuTime ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+            best = Math.min(best, (end - start) / iterations);
+        }
+        return best;
+    }
+
+    /**
+     * 设置每个线程缓冲区的容量（会向上取整为 2 的幂），只影响之后新建的缓冲区
+     */
+    public static void setBufferCapacity(int capacity) {
+        bufferCapacity = capacity;
+    }
+}
@@ -0,0 +1,192 @@
+package org.example.agent.registry;
+
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.description.type.TypeList;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 方法的静态元数据
+ * 在类转换时由 ByteBuddy 的方法描述一次性计算，运行时拦截器直接读取，不再调用反射 API
+ */
+public final class MethodMetadata {
+
+    private final int id;
+    private final String className;
+    private final String simpleClassName;
+    private final String packageName;
+    private final String methodName;
+    private final String genericSignature;
+    private final String descriptor;
+    private final String returnTypeName;
+    private final String[] parameterTypeNames;
+    private final String[] parameterSimpleNames;
+    private final String classLoaderName;
+    private final String displayName;
+
+    MethodMetadata(int id, MethodDescription method, ClassLoader classLoader) {
+        TypeDescription declaringType = method.getDeclaringType().asErasure();
+        this.id = id;
+        this.className = declaringType.getName();
+        this.simpleClassName = declaringType.getSimpleName();
+        int lastDot = className.lastIndexOf('.');
+        this.packageName = lastDot > 0 ? className.substring(0, lastDot) : "";
+        this.methodName = method.getInternalName();
+        this.genericSignature = method.toGenericString();
+        this.descriptor = method.getDescriptor();
+        this.returnTypeName = method.getReturnType().asErasure().getName();
+        TypeList parameterTypes = method.getParameters().asTypeList().asErasures();
+        this.parameterTypeNames = new String[parameterTypes.size()];
+        this.parameterSimpleNames = new String[parameterTypes.size()];
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            parameterTypeNames[i] = parameterTypes.get(i).getName();
+            parameterSimpleNames[i] = parameterTypes.get(i).getSimpleName();
+        }
+        this.classLoaderName = classLoader != null ? classLoader.getClass().getName() : "Bootstrap ClassLoader";
+        this.displayName = simpleClassName + "." + methodName;
+    }
+
+    private MethodMetadata(int id, String className, String simpleClassName, String methodName, String genericSignature,
+                           String descriptor, String returnTypeName, String[] parameterTypeNames,
+                           String[] parameterSimpleNames, String classLoaderName) {
+        this.id = id;
+        this.className = className;
+        this.simpleClassName = simpleClassName;
+        int lastDot = className.lastIndexOf('.');
+        this.packageName = lastDot > 0 ? className.substring(0, lastDot) : "";
+        this.methodName = methodName;
+        this.genericSignature = genericSignature;
+        this.descriptor = descriptor;
+        this.returnTypeName = returnTypeName;
+        this.parameterTypeNames = parameterTypeNames;
+        this.parameterSimpleNames = parameterSimpleNames;
+        this.classLoaderName = classLoaderName;
+        this.displayName = simpleClassName + "." + methodName;
+    }
+
+    /**
+     * 复制一份使用指定 ID 的元数据，注册时先在锁外计算元数据再分配 ID
+     */
+    MethodMetadata withId(int id) {
+        return new MethodMetadata(id, className, simpleClassName, methodName, genericSignature, descriptor,
+                returnTypeName, parameterTypeNames, parameterSimpleNames, classLoaderName);
+    }
+
+    /**
+     * 写出元数据（不含 ID，ID 由写出顺序决定），用于持久化方法注册表
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(className);
+        out.writeUTF(simpleClassName);
+        out.writeUTF(methodName);
+        out.writeUTF(genericSignature);
+        out.writeUTF(descriptor);
+        out.writeUTF(returnTypeName);
+        out.writeInt(parameterTypeNames.length);
+        for (int i = 0; i < parameterTypeNames.length; i++) {
+            out.writeUTF(parameterTypeNames[i]);
+            out.writeUTF(parameterSimpleNames[i]);
+        }
+        out.writeUTF(classLoaderName);
+    }
+
+    static MethodMetadata readFrom(int id, DataInput in) throws IOException {
+        String className = in.readUTF();
+        String simpleClassName = in.readUTF();
+        String methodName = in.readUTF();
+        String genericSignature = in.readUTF();
+        String descriptor = in.readUTF();
+        String returnTypeName = in.readUTF();
+        int parameterCount = in.readInt();
+        if (parameterCount < 0 || parameterCount > 255) {
+            throw new IOException("参数个数不合法: " + parameterCount);
+        }
+        String[] parameterTypeNames = new String[parameterCount];
+        String[] parameterSimpleNames = new String[parameterCount];
+        for (int i = 0; i < parameterCount; i++) {
+            parameterTypeNames[i] = in.readUTF();
+            parameterSimpleNames[i] = in.readUTF();
+        }
+        String classLoaderName = in.readUTF();
+        return new MethodMetadata(id, className, simpleClassName, methodName, genericSignature, descriptor,
+                returnTypeName, parameterTypeNames, parameterSimpleNames, classLoaderName);
+    }
+
+    public int id() {
+        return id;
+    }
+
+    /**
+     * 完整类名，例如 com.foo.controller.OrderController
+     */
+    public String className() {
+        return className;
+    }
+
+    public String simpleClassName() {
+        return simpleClassName;
+    }
+
+    /**
+     * 包名，默认包时为空字符串
+     */
+    public String packageName() {
+        return packageName;
+    }
+
+    public String methodName() {
+        return methodName;
+    }
+
+    /**
+     * 与 Method.toGenericString() 格式一致的完整方法签名
+     */
+    public String genericSignature() {
+        return genericSignature;
+    }
+
+    /**
+     * JVM 方法描述符，例如 (Ljava/lang/String;)V
+     */
+    public String descriptor() {
+        return descriptor;
+    }
+
+    public String returnTypeName() {
+        return returnTypeName;
+    }
+
+    public int parameterCount() {
+        return parameterTypeNames.length;
+    }
+
+    public String parameterTypeName(int index) {
+        return parameterTypeNames[index];
+    }
+
+    public String parameterSimpleName(int index) {
+        return parameterSimpleNames[index];
+    }
+
+    /**
+     * 首次注册该方法时所在类加载器的类名
+     */
+    public String classLoaderName() {
+        return classLoaderName;
+    }
+
+    /**
+     * 展示名，例如 OrderController.list
+     */
+    public String displayName() {
+        return displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,163 @@
+package org.example.agent.registry;
+
+import net.bytebuddy.description.method.MethodDescription;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 方法注册表
+ * 在类转换阶段为每个被增强的方法分配一个连续的 int ID 并预先计算 {@link MethodMetadata}，
+ * 运行时只传递 ID，避免在热路径上拼接方法名字符串或调用反射 API
+ *
+ * 注意：同名类在不同类加载器中会共享同一个 ID，元数据以首次注册为准
+ */
+public final class MethodRegistry {
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int MAX_CHUNKS = 1024;
+
+    private static final ConcurrentHashMap<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+    private static final AtomicReferenceArray<AtomicReferenceArray<MethodMetadata>> METADATA =
+            new AtomicReferenceArray<>(MAX_CHUNKS);
+
+    private MethodRegistry() {
+    }
+
+    /**
+     * 注册方法（转换阶段调用），同一个方法重复注册返回相同的 ID
+     * @param method ByteBuddy 方法描述
+     * @return 方法 ID
+     */
+    public static int register(MethodDescription method) {
+        return register(method, null);
+    }
+
+    /**
+     * 注册方法（转换阶段调用），同一个方法重复注册返回相同的 ID
+     * @param method ByteBuddy 方法描述
+     * @param classLoader 被增强类的类加载器，未知时为 null
+     * @return 方法 ID
+     */
+    public static int register(MethodDescription method, ClassLoader classLoader) {
+        String key = keyOf(method);
+        Integer id = IDS.get(key);
+        if (id != null) {
+            return id;
+        }
+        // 元数据在 computeIfAbsent 之外计算：toGenericString 等可能触发类型解析，不能在持有桶锁时进行，
+        // 否则并行加载的其它类在同一个桶上注册时会被阻塞。并发注册同一个方法时只有一个线程分配 ID，其余的计算结果丢弃
+        MethodMetadata prepared = new MethodMetadata(-1, method, classLoader);
+        return IDS.computeIfAbsent(key, k -> allocate(prepared));
+    }
+
+    /**
+     * 查找已注册方法的 ID，不会分配新的 ID
+     * @return 方法 ID，未注册时为 -1
+     */
+    public static int find(MethodDescription method) {
+        Integer id = IDS.get(keyOf(method));
+        return id != null ? id : -1;
+    }
+
+    private static String keyOf(MethodDescription method) {
+        return keyOf(method.getDeclaringType().asErasure().getName(), method.getInternalName(), method.getDescriptor());
+    }
+
+    private static String keyOf(String className, String methodName, String descriptor) {
+        return className + "." + methodName + descriptor;
+    }
+
+    private static int allocate(MethodMetadata prepared) {
+        int id = NEXT_ID.getAndIncrement();
+        int chunkIndex = id >>> CHUNK_BITS;
+        if (chunkIndex >= MAX_CHUNKS) {
+            throw new IllegalStateException("方法注册数量超过上限: " + (MAX_CHUNKS * CHUNK_SIZE));
+        }
+        AtomicReferenceArray<MethodMetadata> chunk = METADATA.get(chunkIndex);
+        if (chunk == null) {
+            METADATA.compareAndSet(chunkIndex, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+            chunk = METADATA.get(chunkIndex);
+        }
+        chunk.set(id & (CHUNK_SIZE - 1), prepared.withId(id));
+        return id;
+    }
+
+    /**
+     * 按 ID 顺序写出当前所有已注册方法的元数据，用于持久化字节码缓存中的方法 ID
+     */
+    public static void writeTo(DataOutput out) throws IOException {
+        int size = NEXT_ID.get();
+        out.writeInt(size);
+        for (int id = 0; id < size; id++) {
+            MethodMetadata metadata = metadata(id);
+            if (metadata == null) {
+                // ID 已分配但元数据还没有写入（并发注册中），不写出不完整的注册表
+                throw new IOException("方法 " + id + " 正在注册中");
+            }
+            metadata.writeTo(out);
+        }
+    }
+
+    /**
+     * 恢复 {@link #writeTo} 写出的注册表，恢复后方法的 ID 与写出时完全一致。
+     * 只能在还没有注册任何方法时调用（转换开始之前），否则 ID 会冲突，返回 false 且不做任何修改
+     * @return 是否已恢复
+     */
+    public static boolean restore(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0 || size > MAX_CHUNKS * CHUNK_SIZE) {
+            throw new IOException("方法数量不合法: " + size);
+        }
+        // 先完整读出，文件损坏时不会留下一半的注册表
+        MethodMetadata[] restored = new MethodMetadata[size];
+        for (int id = 0; id < size; id++) {
+            restored[id] = MethodMetadata.readFrom(id, in);
+        }
+        // 先占用 [0, size) 的 ID，之后并发注册的新方法从 size 开始分配
+        if (!NEXT_ID.compareAndSet(0, size)) {
+            return size == 0;
+        }
+        for (MethodMetadata metadata : restored) {
+            int id = metadata.id();
+            int chunkIndex = id >>> CHUNK_BITS;
+            METADATA.compareAndSet(chunkIndex, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+            METADATA.get(chunkIndex).set(id & (CHUNK_SIZE - 1), metadata);
+            IDS.putIfAbsent(keyOf(metadata.className(), metadata.methodName(), metadata.descriptor()), id);
+        }
+        return true;
+    }
+
+    /**
+     * 根据 ID 获取方法元数据
+     * @return 元数据，ID 未注册时为 null
+     */
+    public static MethodMetadata metadata(int id) {
+        if (id < 0 || id >= NEXT_ID.get()) {
+            return null;
+        }
+        AtomicReferenceArray<MethodMetadata> chunk = METADATA.get(id >>> CHUNK_BITS);
+        return chunk != null ? chunk.get(id & (CHUNK_SIZE - 1)) : null;
+    }
+
+    /**
+     * 根据 ID 获取方法展示名，例如 OrderController.list
+     */
+    public static String nameOf(int id) {
+        MethodMetadata metadata = metadata(id);
+        return metadata != null ? metadata.displayName() : "#" + id;
+    }
+
+    /**
+     * 已注册的方法数量，ID 范围为 [0, size)
+     */
+    public static int size() {
+        return NEXT_ID.get();
+    }
+}
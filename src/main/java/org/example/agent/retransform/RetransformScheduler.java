@@ -0,0 +1,259 @@
+package org.example.agent.retransform;
+
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.agent.builder.ResettableClassFileTransformer;
+import org.example.agent.config.AgentArgs;
+import org.example.agent.listener.ClassLoadListener;
+
+import java.lang.instrument.IllegalClassFormatException;
+import java.lang.instrument.Instrumentation;
+import java.security.ProtectionDomain;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 分批重转换调度器
+ * 一次 retransformClasses 调用处理的类越多，JVM 停顿越长。调度器把需要重转换的类拆成多批，
+ * 根据上一批的实际耗时调整下一批的大小：超过目标耗时就缩小批次并按耗时加大批次间隔（退避），
+ * 低于目标耗时就逐步放大批次、缩短间隔，让每一批的停顿都控制在目标以内。
+ *
+ * retransformClasses 调用中，转换器生成字节码发生在调用线程上、不会暂停应用线程，真正的停顿是 JVM 替换类定义的安全点。
+ * 调度器通过 decorator() 包装转换器，统计调用线程在转换器中花费的时间，以“调用耗时 - 转换耗时”估算停顿并据此调整批次。
+ *
+ * 每次安全点还有一部分与批次大小无关的固定开销（JVM 需要遍历已加载的类），类很多时单个类的停顿也可能超过目标。
+ * 这种情况下继续缩小批次只会增加安全点次数，调度器把本次的目标放宽为“固定开销 + 目标停顿”。
+ *
+ * 同时作为 ByteBuddy 的 BatchAllocator 和 RedefinitionStrategy.Listener 使用，
+ * 也可以通过 {@link #retransform} 直接重转换一组已知的类（例如自适应降级后只重转换受影响的类），批次和间隔的调整方式相同。
+ * 每批的耗时通过 ClassLoadListener 输出。一次只能用于一个重转换过程（AgentControl 中的调用是串行的）
+ *
+ * 支持的参数:
+ * retransformBatchSize=50         第一批的类数量
+ * retransformMaxBatchSize=1000    单批类数量上限
+ * retransformTargetPause=10       单批目标停顿（毫秒）
+ * retransformBatchDelay=5         批次之间的最小间隔（毫秒）
+ * retransformMaxDelay=1000        批次之间的最大间隔（毫秒）
+ */
+public final class RetransformScheduler implements AgentBuilder.RedefinitionStrategy.BatchAllocator,
+        AgentBuilder.RedefinitionStrategy.Listener {
+
+    private static volatile int initialBatchSize = 50;
+    private static volatile int maxBatchSize = 1000;
+    private static volatile long targetPauseNanos = 10_000_000L;
+    private static volatile long baseDelayMillis = 5;
+    private static volatile long maxDelayMillis = 1000;
+
+    private final ClassLoadListener listener;
+
+    private int batchSize;
+    private long delayMillis;
+    private long batchStart;
+    private volatile Thread runThread;
+    private long transformNanos;
+    private int currentBatchSize;
+    private int completed;
+    private int total;
+    private int batches;
+    private int failedBatches;
+    private long maxPauseNanos;
+    private long runStart;
+    private long effectiveTargetNanos;
+
+    public RetransformScheduler(ClassLoadListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 读取调度参数，需要在安装增强规则之前调用
+     */
+    public static void configure(AgentArgs args) {
+        initialBatchSize = Math.max(1, args.getInt("retransformBatchSize", 50));
+        maxBatchSize = Math.max(initialBatchSize, args.getInt("retransformMaxBatchSize", 1000));
+        targetPauseNanos = Math.max(1, args.getLong("retransformTargetPause", 10)) * 1_000_000L;
+        baseDelayMillis = Math.max(0, args.getLong("retransformBatchDelay", 5));
+        maxDelayMillis = Math.max(baseDelayMillis, args.getLong("retransformMaxDelay", 1000));
+    }
+
+    @Override
+    public Iterable<? extends List<Class<?>>> batch(List<Class<?>> types) {
+        batchSize = initialBatchSize;
+        delayMillis = baseDelayMillis;
+        batchStart = 0;
+        completed = 0;
+        total = types.size();
+        batches = 0;
+        failedBatches = 0;
+        maxPauseNanos = 0;
+        effectiveTargetNanos = targetPauseNanos;
+        runStart = System.nanoTime();
+        runThread = Thread.currentThread();
+        // 批次按需切分：上一批完成后才决定下一批的大小
+        return () -> new Iterator<List<Class<?>>>() {
+
+            private int offset;
+
+            @Override
+            public boolean hasNext() {
+                finishBatch(false);
+                return offset < types.size();
+            }
+
+            @Override
+            public List<Class<?>> next() {
+                finishBatch(false);
+                if (offset >= types.size()) {
+                    throw new NoSuchElementException();
+                }
+                int end = Math.min(types.size(), offset + batchSize);
+                List<Class<?>> batch = types.subList(offset, end);
+                offset = end;
+                return batch;
+            }
+        };
+    }
+
+    @Override
+    public void onBatch(int index, List<Class<?>> batch, List<Class<?>> types) {
+        if (index > 0 && delayMillis > 0) {
+            try {
+                // 批次之间让出时间，应用线程可以在两次停顿之间正常运行
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        currentBatchSize = batch.size();
+        transformNanos = 0;
+        batchStart = System.nanoTime();
+    }
+
+    @Override
+    public Iterable<? extends List<Class<?>>> onError(int index, List<Class<?>> batch, Throwable throwable, List<Class<?>> types) {
+        finishBatch(true);
+        System.err.println("[Agent] 重转换批次 #" + index + " 失败: " + throwable.getMessage());
+        // 失败的批次不重试，避免同一批类反复触发停顿
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void onComplete(int amount, List<Class<?>> types, Map<List<Class<?>>, Throwable> failures) {
+        finishBatch(false);
+        runThread = null;
+        if (total > 0) {
+            listener.onRetransformComplete(total, batches, maxPauseNanos, System.nanoTime() - runStart, failedBatches);
+        }
+    }
+
+    /**
+     * 按调度器的批次和间隔重转换指定的类，不经过 ByteBuddy 的类发现和匹配
+     * 转换器需要已经通过 {@link #decorator()} 包装，才能从停顿估算中去掉生成字节码的时间。失败的批次不重试
+     * @return 成功重转换的类数量
+     */
+    public int retransform(Instrumentation instrumentation, List<Class<?>> types) {
+        int index = 0;
+        int succeeded = 0;
+        Map<List<Class<?>>, Throwable> failures = new LinkedHashMap<>();
+        for (List<Class<?>> batch : batch(types)) {
+            onBatch(index, batch, types);
+            try {
+                instrumentation.retransformClasses(batch.toArray(new Class<?>[0]));
+                succeeded += batch.size();
+            } catch (Throwable t) {
+                failures.put(batch, t);
+                onError(index, batch, t, types);
+            }
+            index++;
+        }
+        onComplete(succeeded, types, failures);
+        return succeeded;
+    }
+
+    /**
+     * 记录刚完成的一批，并根据其耗时调整下一批的大小和间隔
+     */
+    private void finishBatch(boolean failed) {
+        if (batchStart == 0) {
+            return;
+        }
+        long elapsed = System.nanoTime() - batchStart;
+        // 估算的停顿：调用耗时中去掉在转换器里生成字节码的时间
+        long pause = Math.max(0, elapsed - transformNanos);
+        batchStart = 0;
+        batches++;
+        completed += currentBatchSize;
+        maxPauseNanos = Math.max(maxPauseNanos, pause);
+        if (failed) {
+            failedBatches++;
+        }
+        listener.onRetransformBatch(batches - 1, currentBatchSize, completed, total, elapsed, pause, failed);
+
+        if (pause > effectiveTargetNanos && currentBatchSize == 1) {
+            // 单个类也超过目标，说明超出的是安全点的固定开销，在此基础上再留出目标停顿的余量
+            if (effectiveTargetNanos == targetPauseNanos) {
+                System.out.println("[Agent] 单个类的重转换停顿约 " + String.format("%.2f", pause / 1_000_000.0)
+                        + "ms，超过目标 " + targetPauseNanos / 1_000_000L + "ms，本次按固定开销放宽目标");
+            }
+            effectiveTargetNanos = pause + targetPauseNanos;
+        }
+        long target = effectiveTargetNanos;
+        if (pause > target) {
+            // 超过目标：按比例缩小批次并留出余量；间隔取本批耗时的两倍，应用线程至少能得到三分之二的时间
+            batchSize = Math.max(1, (int) (currentBatchSize * ((double) target / pause) * 0.8));
+            delayMillis = Math.min(maxDelayMillis, Math.max(baseDelayMillis, elapsed * 2 / 1_000_000L));
+        } else {
+            // 低于目标：最多放大一倍，间隔减半
+            double ratio = Math.min(2.0, (double) target / Math.max(pause, 1));
+            batchSize = Math.min(maxBatchSize, Math.max(currentBatchSize + 1, (int) (currentBatchSize * ratio)));
+            delayMillis = Math.max(baseDelayMillis, delayMillis / 2);
+        }
+    }
+
+    /**
+     * 包装转换器，统计重转换线程花在转换器中的时间
+     */
+    public AgentBuilder.TransformerDecorator decorator() {
+        return transformer -> new Timing(transformer, this);
+    }
+
+    private static final class Timing extends ResettableClassFileTransformer.WithDelegation {
+
+        private final RetransformScheduler scheduler;
+
+        Timing(ResettableClassFileTransformer classFileTransformer, RetransformScheduler scheduler) {
+            super(classFileTransformer);
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                                ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
+            if (scheduler.runThread != Thread.currentThread()) {
+                return classFileTransformer.transform(loader, className, classBeingRedefined, protectionDomain, classfileBuffer);
+            }
+            long start = System.nanoTime();
+            try {
+                return classFileTransformer.transform(loader, className, classBeingRedefined, protectionDomain, classfileBuffer);
+            } finally {
+                scheduler.transformNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public byte[] transform(Module module, ClassLoader loader, String className, Class<?> classBeingRedefined,
+                                ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
+            if (scheduler.runThread != Thread.currentThread()) {
+                return classFileTransformer.transform(module, loader, className, classBeingRedefined, protectionDomain, classfileBuffer);
+            }
+            long start = System.nanoTime();
+            try {
+                return classFileTransformer.transform(module, loader, className, classBeingRedefined, protectionDomain, classfileBuffer);
+            } finally {
+                scheduler.transformNanos += System.nanoTime() - start;
+            }
+        }
+    }
+}
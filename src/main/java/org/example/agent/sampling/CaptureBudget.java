@@ -0,0 +1,60 @@
+package org.example.agent.sampling;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按方法限制每秒完整采集次数
+ * 时间窗口用 System.nanoTime() 右移 30 位近似为 1 秒，窗口切换时用 CAS 重置计数，不加锁
+ */
+final class CaptureBudget {
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int MAX_CHUNKS = 1024;
+    private static final int WINDOW_SHIFT = 30;
+
+    private final int maxPerSecond;
+    private final AtomicReferenceArray<AtomicReferenceArray<Window>> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+
+    CaptureBudget(int maxPerSecond) {
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    /**
+     * 尝试占用一次采集额度
+     * @return 本秒内该方法的额度未用完时返回 true
+     */
+    boolean tryAcquire(int methodId) {
+        Window window = window(methodId);
+        long current = System.nanoTime() >>> WINDOW_SHIFT;
+        long start = window.start.get();
+        if (start != current && window.start.compareAndSet(start, current)) {
+            window.count.set(0);
+        }
+        // 额度用完后不再递增，避免计数溢出
+        return window.count.get() < maxPerSecond && window.count.incrementAndGet() <= maxPerSecond;
+    }
+
+    private Window window(int methodId) {
+        int chunkIndex = methodId >>> CHUNK_BITS;
+        AtomicReferenceArray<Window> chunk = chunks.get(chunkIndex);
+        if (chunk == null) {
+            chunks.compareAndSet(chunkIndex, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+            chunk = chunks.get(chunkIndex);
+        }
+        int index = methodId & (CHUNK_SIZE - 1);
+        Window window = chunk.get(index);
+        if (window == null) {
+            chunk.compareAndSet(index, null, new Window());
+            window = chunk.get(index);
+        }
+        return window;
+    }
+
+    private static final class Window {
+        final AtomicLong start = new AtomicLong(-1);
+        final AtomicInteger count = new AtomicInteger();
+    }
+}
@@ -0,0 +1,92 @@
+package org.example.agent.sampling;
+
+import org.example.agent.config.AgentArgs;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 完整上下文采集的采样器，组合三种策略:
+ * <ul>
+ *   <li>按比例: 每 N 次调用采集 1 次（sampleRate），使用线程本地随机数决策</li>
+ *   <li>按额度: 每个方法每秒最多采集 K 次（sampleMaxPerSecond）</li>
+ *   <li>按尾部延迟: 未被采样的调用耗时超过阈值时，在返回后补采完整上下文（sampleSlowThresholdMs）</li>
+ * </ul>
+ * 默认 sampleRate=1 且不限额度，即每次调用都完整采集，与未引入采样时的行为一致。
+ * 各决策的次数随方法指标输出，也导出到 Prometheus 端点（agent_sampling_*），用于核对实际采样率
+ */
+public final class Sampler {
+
+    private static volatile int rate = 1;
+    private static volatile CaptureBudget budget;
+    private static volatile long slowThresholdNanos;
+
+    private static final LongAdder HEAD_SAMPLED = new LongAdder();
+    private static final LongAdder TAIL_SAMPLED = new LongAdder();
+    private static final LongAdder UNSAMPLED = new LongAdder();
+
+    private Sampler() {
+    }
+
+    /**
+     * 根据探针参数配置采样策略
+     * 参数示例: sampleRate=100&sampleMaxPerSecond=5&sampleSlowThresholdMs=500
+     */
+    public static void configure(AgentArgs args) {
+        rate = Math.max(1, args.getInt("sampleRate", 1));
+        int maxPerSecond = args.getInt("sampleMaxPerSecond", 0);
+        budget = maxPerSecond > 0 ? new CaptureBudget(maxPerSecond) : null;
+        slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(args.getLong("sampleSlowThresholdMs", 0));
+
+        System.out.println("[Agent] 采样配置: 比例 1/" + rate
+                + "，每方法每秒上限: " + (maxPerSecond > 0 ? maxPerSecond : "不限")
+                + "，慢调用阈值: " + (slowThresholdNanos > 0 ? args.getLong("sampleSlowThresholdMs", 0) + "ms" : "关闭"));
+    }
+
+    /**
+     * 方法进入时决定是否完整采集
+     */
+    public static boolean sampleOnEntry(int methodId) {
+        int currentRate = rate;
+        if (currentRate > 1 && ThreadLocalRandom.current().nextInt(currentRate) != 0) {
+            UNSAMPLED.increment();
+            return false;
+        }
+        CaptureBudget currentBudget = budget;
+        if (currentBudget != null && !currentBudget.tryAcquire(methodId)) {
+            UNSAMPLED.increment();
+            return false;
+        }
+        HEAD_SAMPLED.increment();
+        return true;
+    }
+
+    /**
+     * 未在进入时采样的调用返回后，根据耗时决定是否补采
+     */
+    public static boolean sampleOnExit(int methodId, long durationNanos) {
+        long threshold = slowThresholdNanos;
+        if (threshold <= 0 || durationNanos < threshold) {
+            return false;
+        }
+        CaptureBudget currentBudget = budget;
+        if (currentBudget != null && !currentBudget.tryAcquire(methodId)) {
+            return false;
+        }
+        TAIL_SAMPLED.increment();
+        return true;
+    }
+
+    public static long headSampled() {
+        return HEAD_SAMPLED.sum();
+    }
+
+    public static long tailSampled() {
+        return TAIL_SAMPLED.sum();
+    }
+
+    public static long unsampled() {
+        return UNSAMPLED.sum();
+    }
+}
@@ -0,0 +1,66 @@
+package org.example.agent.startup;
+
+import net.bytebuddy.agent.builder.AgentBuilder;
+import org.example.agent.config.AgentArgs;
+import org.example.agent.listener.ClassLoadStatistics;
+import org.example.agent.listener.TransformationProfiler;
+import org.example.agent.matcher.CustomMatchers;
+
+import static net.bytebuddy.matcher.ElementMatchers.*;
+
+/**
+ * AgentBuilder 工厂
+ * 所有 AgentMain 共用的启动期优化配置都放在这里，保证各个示例的行为一致
+ */
+public final class AgentBuilderFactory {
+
+    private AgentBuilderFactory() {
+    }
+
+    /**
+     * 创建带有 ignore 配置和启动预过滤的 AgentBuilder
+     * 注意：调用 ignore(...) 会替换 ByteBuddy 默认的忽略规则，
+     * 因此这里把默认规则（启动/扩展类加载器、sun.reflect.、合成类）一并保留下来
+     * @param args 探针参数
+     * @return AgentBuilder
+     */
+    public static AgentBuilder create(AgentArgs args) {
+        AgentBuilder builder = new AgentBuilder.Default()
+                .ignore(any(), isBootstrapClassLoader().or(isExtensionClassLoader()))
+                .or(CustomMatchers.systemClasses()
+                        .or(nameStartsWith("sun.reflect."))
+                        .or(isSynthetic()));
+        if (args.getBoolean("classLoadStats", false)) {
+            // 统计装饰器先于预过滤加入，位于预过滤内侧，只统计通过预过滤的类
+            ClassLoadStatistics statistics = ClassLoadStatistics.get();
+            builder = builder.with((AgentBuilder.Listener) statistics)
+                    .with((AgentBuilder.TransformerDecorator) statistics);
+            ClassLoadStatistics.start(args);
+        }
+        AgentBuilder.PoolStrategy poolStrategy = AgentBuilder.PoolStrategy.Default.FAST;
+        TypePoolCache typePoolCache = TypePoolCache.fromArgs(args);
+        if (typePoolCache != null) {
+            // 按类加载器缓存解析过的类型；缓存的类型描述会引用 ClassFileLocator，因此只能弱引用类加载器
+            // 已加载的类（重转换）同样优先通过类型池描述，复用缓存而不是反射加载注解类型
+            poolStrategy = typePoolCache;
+            builder = builder.with(typePoolCache)
+                    .with(AgentBuilder.LocationStrategy.ForClassLoader.WEAK)
+                    .with(AgentBuilder.DescriptionStrategy.Default.POOL_FIRST);
+        }
+        if (args.getBoolean("transformProfile", false)) {
+            // 包装类型池和类型策略，按阶段统计每个类的转换耗时
+            // disableClassFormatChanges() 会替换类型策略，AgentControl 会在之后重新包装
+            TransformationProfiler profiler = TransformationProfiler.get();
+            builder = builder.with(profiler)
+                    .with(profiler.poolStrategy(poolStrategy))
+                    .with(profiler.typeStrategy(AgentBuilder.TypeStrategy.Default.REBASE));
+            TransformationProfiler.start(args);
+        }
+        StartupPreFilter preFilter = StartupPreFilter.fromArgs(args);
+        if (preFilter != null) {
+            // 预过滤作为最外层的转换器，先于 ByteBuddy 的类型解析执行
+            builder = builder.with(preFilter);
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,592 @@
+package org.example.agent.startup;
+
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.agent.builder.ResettableClassFileTransformer;
+import org.example.agent.config.AgentArgs;
+import org.example.agent.registry.MethodRegistry;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.IllegalClassFormatException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 转换结果的磁盘缓存
+ * 把 Advice 规则转换后的字节码按「类名 + 原始字节码哈希」保存到磁盘，下次启动时同一个类直接返回缓存的字节码，
+ * 不再经过 ByteBuddy 的类型解析、匹配和转换。缓存文件按「规则名 + 配置哈希」命名，配置哈希由探针参数、
+ * 探针 jar 的路径、大小和修改时间以及 Java 版本计算，探针或参数变化后自动使用新的缓存文件并删除旧文件；
+ * 应用的类变化后原始字节码哈希不同，不会命中旧的条目。
+ *
+ * 启动时把缓存文件映射到内存，类名索引是文件中的开放寻址哈希表（按 String.hashCode 定位，表项为条目在文件中的位置），
+ * 直接在映射区中查找，不在堆上建立索引；字节码在命中时才从映射区复制。
+ * 只有缓存中出现过的类名才计算原始字节码的 SHA-256，其它类只需要在映射区中探测几个表项。
+ * 本次新转换的类在写入磁盘之前暂存在堆上，写入后重新映射新文件并释放这部分内存。
+ *
+ * Advice 把方法 ID 作为常量写入字节码，ID 按注册顺序分配，每次启动都可能不同。
+ * 因此缓存文件同时保存方法注册表，必须在任何转换开始之前通过 {@link MethodRegistry#restore} 恢复，
+ * 恢复后同一个方法的 ID 与写入缓存时一致；无法恢复时（例如其它规则已经注册了方法）本次启动不使用缓存。
+ *
+ * 只缓存类加载时的转换。重转换（动态挂载、重新启用规则、自适应降级）的结果依赖运行时状态，总是交给 ByteBuddy 处理。
+ * MethodDelegation 规则依赖 ByteBuddy 在类加载后注入的拦截器字段和辅助类，只回放字节码无法工作，不支持缓存。
+ * 命中缓存的类不会触发 AgentBuilder 的监听器事件。
+ *
+ * 文件格式: MAGIC、索引位置、条目数、索引大小（2 的幂）、配置哈希、方法注册表、索引（每项一个 int）、
+ * 条目（类名哈希、类名、原始字节码哈希、原始长度、字节码长度、字节码）
+ *
+ * 支持的参数:
+ * bytecodeCacheDir=/path            缓存目录，配置后启用（AgentMain3）
+ * bytecodeCacheFlushDelay=60        启动后多少秒把新的转换结果写入磁盘，JVM 退出时还会再写一次
+ */
+public final class BytecodeCache implements AgentBuilder.TransformerDecorator {
+
+    private static final int MAGIC = 0x42424332;
+    private static final int HEADER_SIZE = 16;
+    private static final String SUFFIX = ".cache";
+
+    private final Path file;
+    private final String rule;
+    private final String configHash;
+    // 上一次写入（或启动时读取）的缓存文件，写入后替换为新文件的映射
+    private volatile Mapped mapped;
+    // 还没有写入磁盘的转换结果
+    private final Map<String, Entry[]> pending = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder transformed = new LongAdder();
+
+    private BytecodeCache(Path file, String rule, String configHash) {
+        this.file = file;
+        this.rule = rule;
+        this.configHash = configHash;
+    }
+
+    /**
+     * 根据探针参数打开缓存并恢复方法注册表，必须在安装任何规则之前调用
+     * @param rule 规则名称，用于缓存文件名
+     * @return 缓存，未配置 bytecodeCacheDir 或无法使用时返回 null
+     */
+    public static BytecodeCache fromArgs(AgentArgs args, String rule) {
+        String dir = args.get("bytecodeCacheDir", null);
+        if (dir == null) {
+            return null;
+        }
+        try {
+            Path directory = Paths.get(dir);
+            Files.createDirectories(directory);
+            String configHash = configHash(args, rule);
+            BytecodeCache cache = new BytecodeCache(directory.resolve(rule + "-" + configHash + SUFFIX), rule, configHash);
+            if (!cache.load()) {
+                return null;
+            }
+            cache.schedule(args.getLong("bytecodeCacheFlushDelay", 60));
+            System.out.println("[Agent] 字节码缓存已启用: " + cache.file + "，已缓存 " + cache.size() + " 个类");
+            return cache;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[Agent] 字节码缓存启用失败，目录: " + dir + "，原因: " + e);
+            return null;
+        }
+    }
+
+    @Override
+    public ResettableClassFileTransformer decorate(ResettableClassFileTransformer classFileTransformer) {
+        return new Caching(classFileTransformer, this);
+    }
+
+    /**
+     * 把新的转换结果与已有的缓存合并写入磁盘：先写临时文件再原子替换，其它进程读到的总是完整的文件。
+     * 写入后映射新文件，已写入的条目从堆上移除
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(file.getParent(), rule + "-", ".tmp");
+            Mapped current = mapped;
+            // 先复制条目再写出注册表：方法在转换过程中注册，早于条目写入缓存，注册表一定包含所有条目用到的 ID
+            List<Map.Entry<String, Entry[]>> snapshot = new ArrayList<>(pending.entrySet());
+            List<Record> records = new ArrayList<>();
+            if (current != null) {
+                current.forEach(records::add);
+            }
+            for (Map.Entry<String, Entry[]> e : snapshot) {
+                for (Entry entry : e.getValue()) {
+                    // 重新映射前后并发加载的同一个类可能已经在旧文件中
+                    if (current == null || current.locate(e.getKey(), entry.hash(), entry.originalLength()) < 0) {
+                        records.add(new Record(e.getKey().hashCode(), e.getKey().getBytes(StandardCharsets.UTF_8),
+                                entry.hash(), entry.originalLength(), ByteBuffer.wrap(entry.data())));
+                    }
+                }
+            }
+            write(temp, records);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            mapped = Mapped.of(map(file));
+            // 先切换映射再移除，查找时总能在其中一处找到；写入期间又有新条目的类名保留到下次写入
+            for (Map.Entry<String, Entry[]> e : snapshot) {
+                pending.remove(e.getKey(), e.getValue());
+            }
+            deleteStale();
+            System.out.println("[Agent] 字节码缓存已写入: " + records.size() + " 个类，本次命中 " + hits.sum() + "，新转换 " + transformed.sum());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[Agent] 字节码缓存写入失败: " + e);
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // 临时文件删除失败不影响主应用
+                }
+            }
+        }
+    }
+
+    /**
+     * 已缓存的类条目数，包括还没有写入磁盘的
+     */
+    public int size() {
+        Mapped current = mapped;
+        int size = current != null ? current.count : 0;
+        for (Entry[] entries : pending.values()) {
+            size += entries.length;
+        }
+        return size;
+    }
+
+    private boolean load() throws IOException {
+        // 没有缓存文件时同样需要 ID 从 0 开始连续分配，写出的注册表才能在下次启动时恢复
+        if (MethodRegistry.size() != 0) {
+            System.err.println("[Agent] 已有方法注册，字节码缓存不可用");
+            return false;
+        }
+        if (!Files.exists(file)) {
+            return true;
+        }
+        ByteBuffer buffer = map(file);
+        try {
+            Mapped loaded = Mapped.of(buffer);
+            DataInputStream in = new DataInputStream(new BufferInput(buffer.position(HEADER_SIZE)));
+            if (!configHash.equals(in.readUTF())) {
+                throw new IOException("配置哈希不匹配");
+            }
+            if (!MethodRegistry.restore(in)) {
+                System.err.println("[Agent] 已有方法注册，字节码缓存不可用");
+                return false;
+            }
+            mapped = loaded;
+        } catch (IOException | RuntimeException e) {
+            // 文件损坏时不使用其中的条目，本次重新转换并在写入时覆盖。
+            // 注册表已经恢复时保留，新方法的 ID 从恢复的注册表之后分配，写出时一并保存
+            System.err.println("[Agent] 字节码缓存文件无效，将重新生成: " + file + "，原因: " + e);
+        }
+        return true;
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * 写出缓存文件，条目在文件中的位置在写出之前计算好，索引与条目一次写完
+     */
+    private void write(Path target, List<Record> records) throws IOException {
+        ByteArrayOutputStream meta = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(meta)) {
+            out.writeUTF(configHash);
+            MethodRegistry.writeTo(out);
+        }
+        int tableSize = tableSize(records.size());
+        long tableOffset = HEADER_SIZE + meta.size();
+        long offset = tableOffset + 4L * tableSize;
+        int[] table = new int[tableSize];
+        for (Record record : records) {
+            if (offset + record.size() > Integer.MAX_VALUE) {
+                throw new IOException("缓存文件超过 2GB");
+            }
+            int slot = record.nameHash() & (tableSize - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            table[slot] = (int) offset;
+            offset += record.size();
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target)))) {
+            out.writeInt(MAGIC);
+            out.writeInt((int) tableOffset);
+            out.writeInt(records.size());
+            out.writeInt(tableSize);
+            meta.writeTo(out);
+            for (int position : table) {
+                out.writeInt(position);
+            }
+            byte[] copy = new byte[8192];
+            for (Record record : records) {
+                out.writeInt(record.nameHash());
+                out.writeShort(record.name().length);
+                out.write(record.name());
+                out.writeLong(record.hash());
+                out.writeInt(record.originalLength());
+                ByteBuffer data = record.data().duplicate();
+                out.writeInt(data.remaining());
+                while (data.hasRemaining()) {
+                    int n = Math.min(copy.length, data.remaining());
+                    data.get(copy, 0, n);
+                    out.write(copy, 0, n);
+                }
+            }
+        }
+    }
+
+    /**
+     * 负载因子不超过 1/2，线性探测的平均探测次数保持在 2 次以内
+     */
+    private static int tableSize(int count) {
+        int size = 16;
+        while (size < count * 2) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private void schedule(long delay) {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "Agent-Bytecode-Cache-Shutdown"));
+        if (delay > 0) {
+            Thread t = new Thread(() -> {
+                try {
+                    TimeUnit.SECONDS.sleep(delay);
+                    flush();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "Agent-Bytecode-Cache");
+            t.setDaemon(true); // 设置为守护线程，避免阻止JVM退出
+            t.start();
+        }
+    }
+
+    /**
+     * 删除同一规则在其它配置下生成的缓存文件
+     */
+    private void deleteStale() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(file.getParent(), rule + "-*" + SUFFIX)) {
+            for (Path stale : files) {
+                if (!stale.equals(file)) {
+                    Files.deleteIfExists(stale);
+                }
+            }
+        }
+    }
+
+    private byte[] lookup(String className, byte[] original) {
+        Mapped current = mapped;
+        if (current != null) {
+            try {
+                byte[] cached = current.find(className, original);
+                if (cached != null) {
+                    return cached;
+                }
+            } catch (IndexOutOfBoundsException e) {
+                // 文件内容损坏时按未命中处理，写入时会整体覆盖
+            }
+        }
+        Entry[] entries = pending.get(className);
+        if (entries == null) {
+            return null;
+        }
+        long hash = hash(original);
+        for (Entry entry : entries) {
+            if (entry.hash() == hash && entry.originalLength() == original.length) {
+                return entry.data().clone();
+            }
+        }
+        return null;
+    }
+
+    private void store(String className, byte[] original, byte[] transformed) {
+        Entry entry = new Entry(hash(original), original.length, transformed);
+        pending.merge(className, new Entry[]{entry}, BytecodeCache::concat);
+    }
+
+    private static Entry[] concat(Entry[] existing, Entry[] added) {
+        for (Entry entry : existing) {
+            if (entry.hash() == added[0].hash() && entry.originalLength() == added[0].originalLength()) {
+                return existing;
+            }
+        }
+        Entry[] merged = new Entry[existing.length + 1];
+        System.arraycopy(existing, 0, merged, 0, existing.length);
+        merged[existing.length] = added[0];
+        return merged;
+    }
+
+    /**
+     * SHA-256 的前 8 个字节，与原始长度一起比较
+     */
+    private static long hash(byte[] bytes) {
+        byte[] digest = sha256().digest(bytes);
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    private static String configHash(AgentArgs args, String rule) {
+        MessageDigest digest = sha256();
+        StringBuilder config = new StringBuilder(rule).append('\n')
+                .append(args.raw() != null ? args.raw() : "").append('\n')
+                .append(System.getProperty("java.specification.version")).append('\n');
+        ProtectionDomain domain = BytecodeCache.class.getProtectionDomain();
+        URL location = domain.getCodeSource() != null ? domain.getCodeSource().getLocation() : null;
+        if (location != null) {
+            config.append(location);
+            try {
+                Path jar = Paths.get(location.toURI());
+                config.append('|').append(Files.size(jar)).append('|').append(Files.getLastModifiedTime(jar).toMillis());
+            } catch (Exception e) {
+                // 无法读取探针 jar 的属性时只使用路径
+            }
+        }
+        byte[] hash = digest.digest(config.toString().getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            hex.append(String.format("%02x", hash[i]));
+        }
+        return hex.toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 本次转换、还没有写入磁盘的条目
+     */
+    private record Entry(long hash, int originalLength, byte[] data) {
+    }
+
+    /**
+     * 写入文件的条目，data 来自旧文件的映射区或本次转换结果
+     */
+    private record Record(int nameHash, byte[] name, long hash, int originalLength, ByteBuffer data) {
+
+        long size() {
+            return 4 + 2 + name.length + 8 + 4 + 4 + data.remaining();
+        }
+    }
+
+    /**
+     * 映射到内存的缓存文件，所有读取都使用绝对位置，可以并发查找
+     */
+    private static final class Mapped {
+
+        private final ByteBuffer buffer;
+        private final int tableOffset;
+        private final int count;
+        private final int mask;
+
+        private Mapped(ByteBuffer buffer, int tableOffset, int count, int tableSize) {
+            this.buffer = buffer;
+            this.tableOffset = tableOffset;
+            this.count = count;
+            this.mask = tableSize - 1;
+        }
+
+        static Mapped of(ByteBuffer buffer) throws IOException {
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("文件头不匹配");
+            }
+            int tableOffset = buffer.getInt(4);
+            int count = buffer.getInt(8);
+            int tableSize = buffer.getInt(12);
+            if (tableSize <= 0 || Integer.bitCount(tableSize) != 1 || count < 0 || count >= tableSize
+                    || tableOffset < HEADER_SIZE || tableOffset + 4L * tableSize > buffer.limit()) {
+                throw new IOException("索引不合法");
+            }
+            return new Mapped(buffer, tableOffset, count, tableSize);
+        }
+
+        /**
+         * @return 转换后的字节码（从映射区复制），没有匹配的条目时返回 null
+         */
+        byte[] find(String className, byte[] original) {
+            // 先只按类名探测，缓存中没有的类不计算原始字节码的哈希
+            if (locate(className, 0, -1) < 0) {
+                return null;
+            }
+            int position = locate(className, hash(original), original.length);
+            if (position < 0) {
+                return null;
+            }
+            int data = position + 4 + 2 + (buffer.getShort(position + 4) & 0xFFFF) + 8 + 4;
+            byte[] bytes = new byte[buffer.getInt(data)];
+            buffer.get(data + 4, bytes);
+            return bytes;
+        }
+
+        /**
+         * 线性探测索引
+         * @param originalLength 为 -1 时只比较类名
+         * @return 条目在文件中的位置，没有时返回 -1
+         */
+        int locate(String className, long hash, int originalLength) {
+            int nameHash = className.hashCode();
+            byte[] name = null;
+            // 最多探测整张表，文件损坏时也不会无限循环
+            for (int slot = nameHash & mask, probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+                int position = buffer.getInt(tableOffset + 4 * slot);
+                if (position == 0) {
+                    return -1;
+                }
+                if (buffer.getInt(position) != nameHash) {
+                    continue;
+                }
+                if (name == null) {
+                    name = className.getBytes(StandardCharsets.UTF_8);
+                }
+                if (!nameEquals(position + 4, name)) {
+                    continue;
+                }
+                if (originalLength < 0) {
+                    return position;
+                }
+                int content = position + 4 + 2 + name.length;
+                if (buffer.getLong(content) == hash && buffer.getInt(content + 8) == originalLength) {
+                    return position;
+                }
+            }
+            return -1;
+        }
+
+        private boolean nameEquals(int position, byte[] name) {
+            if ((buffer.getShort(position) & 0xFFFF) != name.length) {
+                return false;
+            }
+            for (int i = 0; i < name.length; i++) {
+                if (buffer.get(position + 2 + i) != name[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 按文件中的顺序遍历所有条目，字节码不复制
+         */
+        void forEach(Consumer<Record> action) {
+            int position = tableOffset + 4 * (mask + 1);
+            for (int i = 0; i < count; i++) {
+                int nameHash = buffer.getInt(position);
+                byte[] name = new byte[buffer.getShort(position + 4) & 0xFFFF];
+                buffer.get(position + 6, name);
+                int content = position + 6 + name.length;
+                int length = buffer.getInt(content + 12);
+                action.accept(new Record(nameHash, name, buffer.getLong(content), buffer.getInt(content + 8),
+                        buffer.slice(content + 16, length)));
+                position = content + 16 + length;
+            }
+        }
+    }
+
+    /**
+     * 直接从映射区读取，不经过额外的缓冲，读取后 buffer 的位置就是下一个条目的位置
+     */
+    private static final class BufferInput extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+
+    /**
+     * 包装 ByteBuddy 的转换器：类加载时先查缓存，未命中时转换并记录结果
+     */
+    static final class Caching extends ResettableClassFileTransformer.WithDelegation {
+
+        private final BytecodeCache cache;
+
+        Caching(ResettableClassFileTransformer classFileTransformer, BytecodeCache cache) {
+            super(classFileTransformer);
+            this.cache = cache;
+        }
+
+        @Override
+        public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                                ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
+            if (classBeingRedefined != null || className == null) {
+                return classFileTransformer.transform(loader, className, classBeingRedefined, protectionDomain, classfileBuffer);
+            }
+            byte[] cached = cache.lookup(className, classfileBuffer);
+            if (cached != null) {
+                cache.hits.increment();
+                return cached;
+            }
+            byte[] result = classFileTransformer.transform(loader, className, null, protectionDomain, classfileBuffer);
+            record(className, classfileBuffer, result);
+            return result;
+        }
+
+        @Override
+        public byte[] transform(Module module, ClassLoader loader, String className, Class<?> classBeingRedefined,
+                                ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
+            if (classBeingRedefined != null || className == null) {
+                return classFileTransformer.transform(module, loader, className, classBeingRedefined, protectionDomain, classfileBuffer);
+            }
+            byte[] cached = cache.lookup(className, classfileBuffer);
+            if (cached != null) {
+                cache.hits.increment();
+                return cached;
+            }
+            byte[] result = classFileTransformer.transform(module, loader, className, null, protectionDomain, classfileBuffer);
+            record(className, classfileBuffer, result);
+            return result;
+        }
+
+        private void record(String className, byte[] original, byte[] result) {
+            if (result != null) {
+                cache.transformed.increment();
+                cache.store(className, original, result);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.example.agent.startup;
+
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.agent.builder.ResettableClassFileTransformer;
+import org.example.agent.config.AgentArgs;
+import org.example.agent.matcher.CustomMatchers;
+import org.example.agent.matcher.PrefixTrie;
+
+import java.lang.instrument.IllegalClassFormatException;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 启动预过滤
+ * 在 ByteBuddy 解析类型描述和注解之前，直接根据 JVM 传入的类名和类加载器过滤掉不需要增强的类。
+ * 被过滤的类不会进入 AgentBuilder 的类型匹配，也不会触发 TypePool 读取字节码，
+ * 启动时加载的大量 JDK 和第三方库类因此只需要一次前缀树查找
+ *
+ * 支持的参数:
+ * preFilter=false                 关闭预过滤
+ * preFilterInclude=com.foo,com.bar 只放行这些前缀，默认放行所有未被排除的类
+ * preFilterExclude=com.foo.gen     在系统包前缀之外额外排除的前缀
+ * preFilterExcludeLoaders=a.B,c.D  额外排除的类加载器类名
+ */
+public final class StartupPreFilter implements AgentBuilder.TransformerDecorator {
+
+    /**
+     * 默认排除的类加载器：反射生成访问器使用的类加载器和 Lambda 隐藏类使用的类加载器
+     */
+    private static final List<String> DEFAULT_EXCLUDED_LOADERS = Arrays.asList(
+            "jdk.internal.reflect.DelegatingClassLoader",
+            "sun.reflect.DelegatingClassLoader",
+            "jdk.internal.loader.ClassLoaders$PlatformClassLoader");
+
+    private static final LongAdder PASSED = new LongAdder();
+    private static final LongAdder SKIPPED = new LongAdder();
+
+    private final PrefixTrie include;
+    private final PrefixTrie exclude;
+    private final Set<String> excludedLoaders;
+    private final ClassLoader platformLoader;
+
+    StartupPreFilter(PrefixTrie include, PrefixTrie exclude, Set<String> excludedLoaders) {
+        this.include = include;
+        this.exclude = exclude;
+        this.excludedLoaders = excludedLoaders;
+        this.platformLoader = ClassLoader.getPlatformClassLoader();
+    }
+
+    /**
+     * 根据探针参数创建预过滤，参数 preFilter=false 时返回 null
+     */
+    public static StartupPreFilter fromArgs(AgentArgs args) {
+        if (!args.getBoolean("preFilter", true)) {
+            return null;
+        }
+        List<String> excludes = new ArrayList<>(CustomMatchers.SYSTEM_PACKAGE_PREFIXES);
+        excludes.addAll(args.getList("preFilterExclude"));
+        Set<String> loaders = new HashSet<>(DEFAULT_EXCLUDED_LOADERS);
+        loaders.addAll(args.getList("preFilterExcludeLoaders"));
+        StartupPreFilter filter = new StartupPreFilter(
+                PrefixTrie.of(args.getList("preFilterInclude")),
+                PrefixTrie.of(excludes),
+                Collections.unmodifiableSet(loaders));
+        System.out.println("[Agent] 启动预过滤已启用，排除前缀 " + filter.exclude.size() + " 个"
+                + (filter.include.isEmpty() ? "" : "，包含前缀 " + filter.include.size() + " 个"));
+        return filter;
+    }
+
+    /**
+     * 判断类是否可能需要增强
+     * @param className JVM 内部格式的类名，例如 com/foo/Bar
+     * @param loader 类加载器，null 表示启动类加载器
+     */
+    public boolean accepts(String className, ClassLoader loader) {
+        if (className == null) {
+            // 匿名隐藏类等没有名称，交给 ByteBuddy 自己判断
+            return true;
+        }
+        if (loader == null || loader == platformLoader
+                || excludedLoaders.contains(loader.getClass().getName())) {
+            return false;
+        }
+        if (exclude.matches(className)) {
+            return false;
+        }
+        return include.isEmpty() || include.matches(className);
+    }
+
+    @Override
+    public ResettableClassFileTransformer decorate(ResettableClassFileTransformer classFileTransformer) {
+        return new Filtering(classFileTransformer, this);
+    }
+
+    /**
+     * 通过预过滤交给 ByteBuddy 处理的类数量
+     */
+    public static long passed() {
+        return PASSED.sum();
+    }
+
+    /**
+     * 被预过滤直接跳过的类数量
+     */
+    public static long skipped() {
+        return SKIPPED.sum();
+    }
+
+    /**
+     * 包装 ByteBuddy 的转换器，未通过预过滤的类直接返回 null（不修改字节码）
+     */
+    static final class Filtering extends ResettableClassFileTransformer.WithDelegation {
+
+        private final StartupPreFilter filter;
+
+        Filtering(ResettableClassFileTransformer classFileTransformer, StartupPreFilter filter) {
+            super(classFileTransformer);
+            this.filter = filter;
+        }
+
+        @Override
+        public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                                ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
+            if (!filter.accepts(className, loader)) {
+                SKIPPED.increment();
+                return null;
+            }
+            PASSED.increment();
+            return classFileTransformer.transform(loader, className, classBeingRedefined, protectionDomain, classfileBuffer);
+        }
+
+        @Override
+        public byte[] transform(Module module, ClassLoader loader, String className, Class<?> classBeingRedefined,
+                                ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
+            if (!filter.accepts(className, loader)) {
+                SKIPPED.increment();
+                return null;
+            }
+            PASSED.increment();
+            return classFileTransformer.transform(module, loader, className, classBeingRedefined, protectionDomain, classfileBuffer);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package org.example.agent.startup;
+
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.pool.TypePool;
+import org.example.agent.config.AgentArgs;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按类加载器缓存的类型池
+ * ByteBuddy 默认每处理一个类都新建一个类型池，isAnnotatedWith 等匹配器用到的父类、接口和注解类型每次都重新读取和解析。
+ * 这里为每个类加载器保留一个有界的 {@link TypePool.CacheProvider}，同一个类加载器中解析过的类型直接复用。
+ * <ul>
+ *   <li>类加载器作为弱引用键，类加载器被回收后对应的缓存一起释放。查找不加锁，并行加载的多个类加载器之间互不阻塞。缓存的类型描述会引用创建它的类型池及其 ClassFileLocator，
+ *   因此必须配合 {@link AgentBuilder.LocationStrategy.ForClassLoader#WEAK} 使用，否则缓存会通过 ClassFileLocator 强引用类加载器</li>
+ *   <li>java.* 只能由启动类加载器和平台类加载器定义，所有类加载器共用一个基于平台类加载器的类型池，不再按类加载器重复解析</li>
+ *   <li>每个类加载器最多缓存 typePoolCacheSize 个类型，超出后新的类型不再缓存（仍然正常解析）</li>
+ *   <li>正在转换的类本身不进入共享缓存（由 ByteBuddy 区分），其字节码可能与缓存中的不同</li>
+ * </ul>
+ * 命中率和缓存占用随方法指标一起输出。占用按缓存条目数乘以平均类文件大小估算，解析后的类型描述通常小于类文件
+ *
+ * 支持的参数:
+ * typePoolCache=true          是否启用
+ * typePoolCacheSize=4096      每个类加载器最多缓存的类型数
+ */
+public final class TypePoolCache extends AgentBuilder.PoolStrategy.WithTypePoolCache {
+
+    private static final String JAVA_PREFIX = "java.";
+
+    private static final LongAdder HITS = new LongAdder();
+    // 延迟解析的类型池对一个新类型会查找两次缓存，因此按实际解析（注册）的次数统计未命中
+    private static final LongAdder PARSED = new LongAdder();
+    private static final LongAdder REJECTED = new LongAdder();
+    private static final LongAdder LOCATED_CLASSES = new LongAdder();
+    private static final LongAdder LOCATED_BYTES = new LongAdder();
+
+    /**
+     * 所有启用的实例，用于汇总输出；通常只有一个。父类按读取模式实现 equals，这里不能用 Set
+     */
+    private static final List<TypePoolCache> INSTANCES = new CopyOnWriteArrayList<>();
+
+    private final int maxSize;
+    private final Map<Object, LoaderCache> caches = new ConcurrentHashMap<>();
+    private final ReferenceQueue<ClassLoader> released = new ReferenceQueue<>();
+    private final LoaderCache bootstrap = new LoaderCache();
+    private final TypePool javaTypes;
+
+    TypePoolCache(int maxSize) {
+        super(TypePool.Default.ReaderMode.FAST);
+        this.maxSize = maxSize;
+        this.javaTypes = new TypePool.Default.WithLazyResolution(new TypePool.CacheProvider.Simple() {
+            @Override
+            public TypePool.Resolution register(String name, TypePool.Resolution resolution) {
+                PARSED.increment();
+                return super.register(name, resolution);
+            }
+        },
+                new Counting(ClassFileLocator.ForClassLoader.ofPlatformLoader()), TypePool.Default.ReaderMode.FAST);
+    }
+
+    /**
+     * 根据探针参数创建类型池缓存，参数 typePoolCache=false 时返回 null
+     */
+    public static TypePoolCache fromArgs(AgentArgs args) {
+        if (!args.getBoolean("typePoolCache", true)) {
+            return null;
+        }
+        TypePoolCache cache = new TypePoolCache(Math.max(16, args.getInt("typePoolCacheSize", 4096)));
+        INSTANCES.add(cache);
+        System.out.println("[Agent] 类型池缓存已启用，每个类加载器最多缓存 " + cache.maxSize + " 个类型");
+        return cache;
+    }
+
+    @Override
+    public TypePool typePool(ClassFileLocator classFileLocator, ClassLoader classLoader) {
+        return super.typePool(new Counting(classFileLocator), classLoader);
+    }
+
+    @Override
+    public TypePool typePool(ClassFileLocator classFileLocator, ClassLoader classLoader, String name) {
+        return super.typePool(new Counting(classFileLocator), classLoader, name);
+    }
+
+    @Override
+    protected TypePool.CacheProvider locate(ClassLoader classLoader) {
+        if (classLoader == null) {
+            return bootstrap;
+        }
+        LoaderCache cache = caches.get(new Lookup(classLoader));
+        if (cache != null) {
+            return cache;
+        }
+        expunge();
+        return caches.computeIfAbsent(new LoaderKey(classLoader, released), key -> new LoaderCache());
+    }
+
+    /**
+     * 移除已被回收的类加载器的缓存
+     */
+    private void expunge() {
+        Reference<? extends ClassLoader> reference;
+        while ((reference = released.poll()) != null) {
+            caches.remove(reference);
+        }
+    }
+
+    /**
+     * 所有类型池缓存的汇总，未启用或还没有使用时返回 null
+     */
+    public static String summary() {
+        long hits = HITS.sum();
+        long parsed = PARSED.sum();
+        if (hits + parsed == 0) {
+            return null;
+        }
+        int loaders = 0;
+        long entries = 0;
+        for (TypePoolCache cache : INSTANCES) {
+            cache.expunge();
+            loaders += cache.caches.size();
+            for (LoaderCache loaderCache : cache.caches.values()) {
+                entries += loaderCache.resolutions.size();
+            }
+            if (!cache.bootstrap.resolutions.isEmpty()) {
+                loaders++;
+                entries += cache.bootstrap.resolutions.size();
+            }
+        }
+        long located = LOCATED_CLASSES.sum();
+        long estimatedBytes = located > 0 ? entries * (LOCATED_BYTES.sum() / located) : 0;
+        return "类型池缓存 | 类加载器: " + loaders + " | 条目: " + entries
+                + " | 命中: " + hits + " | 解析: " + parsed
+                + String.format(" | 命中率: %.1f%%", hits * 100.0 / (hits + parsed))
+                + (REJECTED.sum() > 0 ? " | 已满未缓存: " + REJECTED.sum() : "")
+                + " | 读取类文件: " + located + " 个 / " + LOCATED_BYTES.sum() / 1024 + "KB"
+                + " | 估算占用: " + estimatedBytes / 1024 + "KB";
+    }
+
+    /**
+     * 单个类加载器的缓存，java.* 转到共享的类型池
+     */
+    private final class LoaderCache implements TypePool.CacheProvider {
+
+        final Map<String, TypePool.Resolution> resolutions = new ConcurrentHashMap<>();
+
+        @Override
+        public TypePool.Resolution find(String name) {
+            TypePool.Resolution resolution = name.startsWith(JAVA_PREFIX) ? javaType(name) : resolutions.get(name);
+            if (resolution != null) {
+                HITS.increment();
+            }
+            return resolution;
+        }
+
+        @Override
+        public TypePool.Resolution register(String name, TypePool.Resolution resolution) {
+            PARSED.increment();
+            if (name.startsWith(JAVA_PREFIX)) {
+                return resolution;
+            }
+            if (resolutions.size() >= maxSize) {
+                REJECTED.increment();
+                return resolution;
+            }
+            TypePool.Resolution previous = resolutions.putIfAbsent(name, resolution);
+            return previous != null ? previous : resolution;
+        }
+
+        @Override
+        public void clear() {
+            resolutions.clear();
+        }
+
+        /**
+         * 平台类加载器中找不到的 java.* 类型返回 null，由当前类加载器的类型池自行解析
+         */
+        private TypePool.Resolution javaType(String name) {
+            TypePool.Resolution resolution = javaTypes.describe(name);
+            return resolution.isResolved() ? resolution : null;
+        }
+    }
+
+    /**
+     * 类加载器的弱引用键，按类加载器的同一性比较；被回收后只与自身相等，用于从缓存中移除
+     */
+    private static final class LoaderKey extends WeakReference<ClassLoader> {
+
+        private final int hash;
+
+        LoaderKey(ClassLoader classLoader, ReferenceQueue<ClassLoader> queue) {
+            super(classLoader, queue);
+            this.hash = System.identityHashCode(classLoader);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            ClassLoader classLoader = get();
+            return classLoader != null && o instanceof LoaderKey other && other.get() == classLoader;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * 查找用的临时键，不创建弱引用
+     */
+    private static final class Lookup {
+
+        private final ClassLoader classLoader;
+
+        Lookup(ClassLoader classLoader) {
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof LoaderKey key && key.get() == classLoader;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(classLoader);
+        }
+    }
+
+    /**
+     * 统计读取的类文件数量和大小，用于估算缓存占用
+     */
+    private static final class Counting implements ClassFileLocator {
+
+        private final ClassFileLocator delegate;
+
+        Counting(ClassFileLocator delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Resolution locate(String name) throws IOException {
+            Resolution resolution = delegate.locate(name);
+            if (resolution.isResolved()) {
+                LOCATED_CLASSES.increment();
+                LOCATED_BYTES.add(resolution.resolve().length);
+            }
+            return resolution;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.example.agent.trace;
+
+import net.bytebuddy.asm.Advice;
+import org.example.agent.trace.bootstrap.TracedCallable;
+import org.example.agent.trace.bootstrap.TracedRunnable;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 线程池提交方法的 Advice，把第一个参数替换为携带当前调用链上下文的任务
+ * 代码会内联到 java.util.concurrent 的类中，因此只能引用已注入启动类加载器的 trace.bootstrap 包
+ */
+public final class ExecutorAdvice {
+
+    private ExecutorAdvice() {
+    }
+
+    /**
+     * 用于 execute(Runnable) / schedule(Runnable, long, TimeUnit) / ThreadPerTaskExecutor.newThread(Runnable)
+     */
+    public static class WrapRunnable {
+
+        @Advice.OnMethodEnter
+        public static void onEnter(@Advice.Argument(value = 0, readOnly = false) Runnable task) {
+            task = TracedRunnable.wrap(task);
+        }
+    }
+
+    /**
+     * 用于 schedule(Callable, long, TimeUnit)
+     */
+    public static class WrapCallable {
+
+        @Advice.OnMethodEnter
+        public static void onEnter(@Advice.Argument(value = 0, readOnly = false) Callable<?> task) {
+            task = TracedCallable.wrap(task);
+        }
+    }
+}
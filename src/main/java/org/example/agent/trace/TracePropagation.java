@@ -0,0 +1,138 @@
+package org.example.agent.trace;
+
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.dynamic.loading.ClassInjector;
+import net.bytebuddy.utility.JavaModule;
+import org.example.agent.config.AgentArgs;
+import org.example.agent.trace.bootstrap.TraceContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static net.bytebuddy.matcher.ElementMatchers.*;
+
+/**
+ * 调用链追踪的安装入口
+ * 启用后 Advice 在方法进入时开启 span（见 {@link TraceContext}），调用事件中带上 trace ID / span ID / 父 span ID；
+ * 同时增强 ThreadPoolExecutor、ScheduledThreadPoolExecutor、ForkJoinPool、ThreadPerTaskExecutor（虚拟线程执行器）等执行器的提交方法，
+ * 把任务包装为携带提交线程上下文的任务，ExecutorService.submit 和 CompletableFuture 的异步方法都经由这些方法提交。
+ *
+ * 线程池是启动类加载器加载的，增强后的代码需要能访问上下文类，
+ * 因此会先把 trace.bootstrap 包注入启动类加载器，必须在其它探针类引用 TraceContext 之前调用 {@link #install}
+ *
+ * 支持的参数:
+ * tracing=false               是否启用调用链追踪
+ * tracePropagation=true       是否在线程池之间传递上下文
+ *
+ * 注意：被包装的任务在 ThreadPoolExecutor.remove / shutdownNow 中看到的是包装后的对象
+ */
+public final class TracePropagation {
+
+    private static final String[] BOOTSTRAP_CLASSES = {
+            "org.example.agent.trace.bootstrap.TraceContext",
+            "org.example.agent.trace.bootstrap.TracedRunnable",
+            "org.example.agent.trace.bootstrap.TracedCallable"};
+
+    private static boolean installed;
+
+    private TracePropagation() {
+    }
+
+    /**
+     * 根据探针参数启用调用链追踪，未配置 tracing=true 时不做任何事
+     */
+    public static synchronized void install(AgentArgs args, Instrumentation inst) {
+        if (installed || !args.getBoolean("tracing", false)) {
+            return;
+        }
+        installed = true;
+        boolean propagation = args.getBoolean("tracePropagation", true);
+        if (propagation) {
+            try {
+                injectBootstrapClasses(inst);
+            } catch (Exception e) {
+                // 注入失败时只在单个线程内追踪
+                propagation = false;
+                System.err.println("[Agent] 调用链上下文注入启动类加载器失败，不在线程池之间传递: " + e.getMessage());
+            }
+        }
+        TraceContext.enable();
+        if (propagation) {
+            installExecutorInstrumentation(inst);
+        }
+        System.out.println("[Agent] 调用链追踪已启用，线程池传递: " + (propagation ? "已启用" : "未启用"));
+    }
+
+    private static void injectBootstrapClasses(Instrumentation inst) throws IOException, ClassNotFoundException {
+        ClassLoader agentLoader = TracePropagation.class.getClassLoader();
+        ClassFileLocator locator = ClassFileLocator.ForClassLoader.of(agentLoader);
+        Map<String, byte[]> types = new LinkedHashMap<>();
+        for (String name : BOOTSTRAP_CLASSES) {
+            types.put(name, locator.locate(name).resolve());
+        }
+        File folder = Files.createTempDirectory("agent-trace-bootstrap").toFile();
+        folder.deleteOnExit();
+        ClassInjector.UsingInstrumentation.of(folder, ClassInjector.UsingInstrumentation.Target.BOOTSTRAP, inst)
+                .injectRaw(types);
+        File[] jars = folder.listFiles();
+        if (jars != null) {
+            for (File jar : jars) {
+                jar.deleteOnExit();
+            }
+        }
+
+        // 探针类加载器优先委派给启动类加载器，之后所有对上下文类的引用都指向同一份
+        Class<?> context = Class.forName(BOOTSTRAP_CLASSES[0], false, agentLoader);
+        if (context.getClassLoader() != null) {
+            throw new IllegalStateException("TraceContext 已被探针类加载器加载");
+        }
+        // java.base 需要能读取启动类加载器的未命名模块，增强后的线程池才能链接到上下文类
+        JavaModule javaBase = JavaModule.ofType(Object.class);
+        JavaModule bootstrapUnnamed = JavaModule.ofType(context);
+        if (!javaBase.canRead(bootstrapUnnamed)) {
+            inst.redefineModule((Module) javaBase.unwrap(), Collections.singleton((Module) bootstrapUnnamed.unwrap()),
+                    Collections.emptyMap(), Collections.emptyMap(), Collections.emptySet(), Collections.emptyMap());
+        }
+    }
+
+    private static void installExecutorInstrumentation(Instrumentation inst) {
+        Advice wrapRunnable = Advice.to(ExecutorAdvice.WrapRunnable.class);
+        Advice wrapCallable = Advice.to(ExecutorAdvice.WrapCallable.class);
+        new AgentBuilder.Default()
+                // 线程池类通常在探针启动前就已加载，需要重转换；重转换不能增加字段或方法
+                .disableClassFormatChanges()
+                .with(AgentBuilder.RedefinitionStrategy.RETRANSFORMATION)
+                // 默认规则会忽略启动类加载器的类，这里只放行 java.util.concurrent
+                .ignore(not(nameStartsWith("java.util.concurrent.")))
+                .type(namedOneOf("java.util.concurrent.ThreadPoolExecutor", "java.util.concurrent.ForkJoinPool",
+                        // 公共池并行度不足 2 时 CompletableFuture 的默认异步执行器
+                        "java.util.concurrent.CompletableFuture$ThreadPerTaskExecutor"))
+                .transform((builder, type, classLoader, module, protectionDomain) -> builder
+                        .visit(wrapRunnable.on(named("execute").and(takesArguments(Runnable.class)))))
+                // Executors.newVirtualThreadPerTaskExecutor / newThreadPerTaskExecutor：submit 不经过 execute，
+                // 两者都在提交线程中调用私有的 newThread(Runnable) 创建线程，只增强这一处，避免重复包装
+                .type(named("java.util.concurrent.ThreadPerTaskExecutor"))
+                .transform((builder, type, classLoader, module, protectionDomain) -> builder
+                        .visit(wrapRunnable.on(named("newThread").and(takesArguments(Runnable.class)))))
+                .type(named("java.util.concurrent.ScheduledThreadPoolExecutor"))
+                .transform((builder, type, classLoader, module, protectionDomain) -> builder
+                        .visit(wrapRunnable.on(named("schedule").and(takesArguments(Runnable.class, long.class, TimeUnit.class))))
+                        .visit(wrapCallable.on(named("schedule").and(takesArguments(Callable.class, long.class, TimeUnit.class)))))
+                .with(new AgentBuilder.Listener.Adapter() {
+                    @Override
+                    public void onError(String typeName, ClassLoader classLoader, JavaModule module, boolean loaded, Throwable throwable) {
+                        System.err.println("[Agent] 警告: 类 " + typeName + " 增强失败，该线程池不传递调用链: " + throwable.getMessage());
+                    }
+                })
+                .installOn(inst);
+    }
+}
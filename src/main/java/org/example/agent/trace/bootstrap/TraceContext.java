@@ -0,0 +1,216 @@
+package org.example.agent.trace.bootstrap;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 线程级调用链上下文，标识与 W3C Trace Context 兼容:
+ * traceparent = 00-{traceId 32 位十六进制}-{spanId 16 位十六进制}-{flags 2 位十六进制}
+ *
+ * 每个线程持有一个可变的上下文对象，Advice 进入方法时调用 {@link #enter()} 开启子 span（没有调用链时开启新的调用链），
+ * 退出时用 {@link #exit(long)} 恢复父 span，整个过程只读写 long 字段，没有内存分配。
+ * 提交到线程池的任务由 {@link TracedRunnable} / {@link TracedCallable} 携带提交时的上下文。
+ * 虚拟线程的上下文在调用链结束后立即从 ThreadLocal 中移除，大量虚拟线程不会各自保留一个上下文对象
+ *
+ * 注意：本包的类会被注入启动类加载器（见 TracePropagation），供增强后的 java.util.concurrent 类访问，
+ * 因此只能依赖 java.* 中的类
+ */
+public final class TraceContext {
+
+    /**
+     * traceparent 中的 sampled 标记
+     */
+    public static final byte FLAG_SAMPLED = 1;
+
+    private static final ThreadLocal<TraceContext> CURRENT = new ThreadLocal<>();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static volatile boolean enabled;
+
+    private final boolean virtual;
+    private long traceIdHigh;
+    private long traceIdLow;
+    private long spanId;
+    private byte flags;
+
+    private TraceContext(boolean virtual) {
+        this.virtual = virtual;
+    }
+
+    /**
+     * 启用调用链追踪，未启用时 {@link #current()} 始终返回 null
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 当前线程的上下文，不存在时创建
+     * @return 未启用追踪时返回 null
+     */
+    public static TraceContext current() {
+        if (!enabled) {
+            return null;
+        }
+        TraceContext context = CURRENT.get();
+        if (context == null) {
+            context = new TraceContext(Thread.currentThread().isVirtual());
+            CURRENT.set(context);
+        }
+        return context;
+    }
+
+    /**
+     * 当前线程处于某个 span 中时返回其上下文，否则返回 null，不会创建
+     */
+    public static TraceContext active() {
+        if (!enabled) {
+            return null;
+        }
+        TraceContext context = CURRENT.get();
+        return context != null && context.spanId != 0 ? context : null;
+    }
+
+    /**
+     * 开启一个 span，当前没有调用链时开启新的调用链
+     * @return 父 span ID，0 表示根 span，退出时传给 {@link #exit(long)}
+     */
+    public long enter() {
+        long parentSpanId = spanId;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (parentSpanId == 0) {
+            traceIdHigh = random.nextLong();
+            traceIdLow = nonZero(random);
+            flags = FLAG_SAMPLED;
+        }
+        spanId = nonZero(random);
+        return parentSpanId;
+    }
+
+    /**
+     * 结束当前 span，恢复父 span；根 span 结束后清空调用链
+     */
+    public void exit(long parentSpanId) {
+        if (parentSpanId == 0) {
+            clear();
+        } else {
+            spanId = parentSpanId;
+        }
+    }
+
+    /**
+     * 以上游传入的 traceparent 作为父 span，之后的 {@link #enter()} 都属于该调用链
+     * 处理完请求后需要调用 {@link #clear()}，避免线程复用时串到下一个请求
+     * @return traceparent 格式不合法时返回 false，上下文不变
+     */
+    public boolean continueTrace(String traceparent) {
+        // 00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01
+        if (traceparent == null || traceparent.length() < 55 || !traceparent.startsWith("00-")
+                || traceparent.charAt(35) != '-' || traceparent.charAt(52) != '-') {
+            return false;
+        }
+        try {
+            long high = Long.parseUnsignedLong(traceparent.substring(3, 19), 16);
+            long low = Long.parseUnsignedLong(traceparent.substring(19, 35), 16);
+            long parent = Long.parseUnsignedLong(traceparent.substring(36, 52), 16);
+            byte parsedFlags = (byte) Integer.parseInt(traceparent.substring(53, 55), 16);
+            if ((high == 0 && low == 0) || parent == 0) {
+                return false;
+            }
+            restore(high, low, parent, parsedFlags);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 清空当前线程的调用链
+     */
+    public void clear() {
+        restore(0, 0, 0, (byte) 0);
+    }
+
+    /**
+     * 当前 span 的 traceparent，不在 span 中时返回 null，可用于向下游传递
+     */
+    public String traceparent() {
+        return spanId != 0 ? traceparent(traceIdHigh, traceIdLow, spanId, flags) : null;
+    }
+
+    public long traceIdHigh() {
+        return traceIdHigh;
+    }
+
+    public long traceIdLow() {
+        return traceIdLow;
+    }
+
+    public long spanId() {
+        return spanId;
+    }
+
+    public byte flags() {
+        return flags;
+    }
+
+    /**
+     * 设置当前线程的调用链，span ID 为 0 时表示离开调用链，虚拟线程随之移除上下文对象
+     */
+    void restore(long traceIdHigh, long traceIdLow, long spanId, byte flags) {
+        this.traceIdHigh = traceIdHigh;
+        this.traceIdLow = traceIdLow;
+        this.spanId = spanId;
+        this.flags = flags;
+        if (spanId == 0 && virtual) {
+            CURRENT.remove();
+        }
+    }
+
+    public static String traceparent(long traceIdHigh, long traceIdLow, long spanId, byte flags) {
+        StringBuilder sb = new StringBuilder(55).append("00-");
+        appendHex(sb, traceIdHigh, 16);
+        appendHex(sb, traceIdLow, 16);
+        sb.append('-');
+        appendHex(sb, spanId, 16);
+        sb.append('-');
+        appendHex(sb, flags & 0xFF, 2);
+        return sb.toString();
+    }
+
+    /**
+     * 32 位十六进制的 trace ID
+     */
+    public static String traceId(long traceIdHigh, long traceIdLow) {
+        StringBuilder sb = new StringBuilder(32);
+        appendHex(sb, traceIdHigh, 16);
+        appendHex(sb, traceIdLow, 16);
+        return sb.toString();
+    }
+
+    /**
+     * 16 位十六进制的 span ID
+     */
+    public static String spanId(long spanId) {
+        StringBuilder sb = new StringBuilder(16);
+        appendHex(sb, spanId, 16);
+        return sb.toString();
+    }
+
+    private static void appendHex(StringBuilder sb, long value, int digits) {
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            sb.append(HEX[(int) (value >>> shift) & 0xF]);
+        }
+    }
+
+    private static long nonZero(ThreadLocalRandom random) {
+        long value;
+        do {
+            value = random.nextLong();
+        } while (value == 0);
+        return value;
+    }
+}
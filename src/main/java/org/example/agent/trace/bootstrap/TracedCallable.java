@@ -0,0 +1,57 @@
+package org.example.agent.trace.bootstrap;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 携带提交时调用链上下文的 Callable，用于 ScheduledThreadPoolExecutor.schedule(Callable, ...)
+ */
+public final class TracedCallable<V> implements Callable<V> {
+
+    private final Callable<V> delegate;
+    private final long traceIdHigh;
+    private final long traceIdLow;
+    private final long spanId;
+    private final byte flags;
+
+    private TracedCallable(Callable<V> delegate, TraceContext context) {
+        this.delegate = delegate;
+        this.traceIdHigh = context.traceIdHigh();
+        this.traceIdLow = context.traceIdLow();
+        this.spanId = context.spanId();
+        this.flags = context.flags();
+    }
+
+    /**
+     * 当前线程处于某个 span 中时包装任务，否则原样返回（不分配对象）
+     */
+    public static <V> Callable<V> wrap(Callable<V> task) {
+        if (task == null || task instanceof TracedCallable) {
+            return task;
+        }
+        TraceContext context = TraceContext.active();
+        return context != null ? new TracedCallable<>(task, context) : task;
+    }
+
+    @Override
+    public V call() throws Exception {
+        TraceContext context = TraceContext.current();
+        if (context == null) {
+            return delegate.call();
+        }
+        long previousHigh = context.traceIdHigh();
+        long previousLow = context.traceIdLow();
+        long previousSpan = context.spanId();
+        byte previousFlags = context.flags();
+        context.restore(traceIdHigh, traceIdLow, spanId, flags);
+        try {
+            return delegate.call();
+        } finally {
+            context.restore(previousHigh, previousLow, previousSpan, previousFlags);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+}
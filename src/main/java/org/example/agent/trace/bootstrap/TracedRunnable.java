@@ -0,0 +1,57 @@
+package org.example.agent.trace.bootstrap;
+
+/**
+ * 携带提交时调用链上下文的 Runnable
+ * 由增强后的线程池在 execute 时包装，任务在工作线程中执行期间恢复提交线程的 span，执行完后还原工作线程原来的上下文
+ */
+public final class TracedRunnable implements Runnable {
+
+    private final Runnable delegate;
+    private final long traceIdHigh;
+    private final long traceIdLow;
+    private final long spanId;
+    private final byte flags;
+
+    private TracedRunnable(Runnable delegate, TraceContext context) {
+        this.delegate = delegate;
+        this.traceIdHigh = context.traceIdHigh();
+        this.traceIdLow = context.traceIdLow();
+        this.spanId = context.spanId();
+        this.flags = context.flags();
+    }
+
+    /**
+     * 当前线程处于某个 span 中时包装任务，否则原样返回（不分配对象）
+     */
+    public static Runnable wrap(Runnable task) {
+        if (task == null || task instanceof TracedRunnable) {
+            return task;
+        }
+        TraceContext context = TraceContext.active();
+        return context != null ? new TracedRunnable(task, context) : task;
+    }
+
+    @Override
+    public void run() {
+        TraceContext context = TraceContext.current();
+        if (context == null) {
+            delegate.run();
+            return;
+        }
+        long previousHigh = context.traceIdHigh();
+        long previousLow = context.traceIdLow();
+        long previousSpan = context.spanId();
+        byte previousFlags = context.flags();
+        context.restore(traceIdHigh, traceIdLow, spanId, flags);
+        try {
+            delegate.run();
+        } finally {
+            context.restore(previousHigh, previousLow, previousSpan, previousFlags);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+}